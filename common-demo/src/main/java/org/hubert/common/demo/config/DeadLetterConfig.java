@@ -0,0 +1,39 @@
+package org.hubert.common.demo.config;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.hubert.common.demo.properties.DeadLetterProperties;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterStore;
+import org.hubert.common.demo.rocketmq.dlq.FileDeadLetterStore;
+import org.hubert.common.demo.rocketmq.dlq.TopicDeadLetterStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * Dead letter store configuration
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/6 11:40
+ */
+@Configuration
+@RequiredArgsConstructor
+public class DeadLetterConfig {
+
+    private final DeadLetterProperties properties;
+
+    @Bean(name = "deadLetterStore")
+    public DeadLetterStore deadLetterStore(@Qualifier("packageBindOpProducer") DefaultMQProducer producer) {
+        return switch (properties.getStoreType()) {
+            case FILE -> new FileDeadLetterStore("dead-letter", Paths.get(properties.getDirectory()),
+                    properties.getMaxSegmentBytes(), properties.getBufferCapacity(),
+                    properties.getBatchSize(), properties.getFlushIntervalMs());
+            case TOPIC -> new TopicDeadLetterStore("dead-letter", producer, properties.getTopic(),
+                    properties.getNameServer(), properties.getBufferCapacity(),
+                    properties.getBatchSize(), properties.getFlushIntervalMs());
+        };
+    }
+}
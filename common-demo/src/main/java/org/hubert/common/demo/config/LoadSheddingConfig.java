@@ -0,0 +1,56 @@
+package org.hubert.common.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.executor.ThreadPoolRegistry;
+import org.hubert.common.demo.filter.LoadSheddingFilter;
+import org.hubert.common.demo.limiter.SaturationMonitor;
+import org.hubert.common.demo.properties.LoadSheddingProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.Ordered;
+
+/**
+ * Load shedding configuration: watches the saturation of the configured pool and refuses the configured
+ * request paths while it is saturated.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/11 15:20
+ */
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "load-shedding", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class LoadSheddingConfig {
+
+    private final LoadSheddingProperties properties;
+
+    /**
+     * Pools register themselves when their bean is created, so the monitor is created after them.
+     */
+    @Bean(destroyMethod = "close")
+    @DependsOn({"packageOpThreadPoolExecutor", "packageOpConsumerThreadPoolExecutor"})
+    public SaturationMonitor saturationMonitor(ThreadPoolRegistry threadPoolRegistry, MeterRegistry meterRegistry) {
+        CustomThreadPoolExecutor executor = threadPoolRegistry.get(properties.getExecutor());
+        if (executor == null) {
+            throw new IllegalStateException("No thread pool registered under the name " + properties.getExecutor());
+        }
+        SaturationMonitor monitor = new SaturationMonitor(executor, properties);
+        monitor.bindTo(meterRegistry);
+        return monitor;
+    }
+
+    @Bean
+    public FilterRegistrationBean<LoadSheddingFilter> loadSheddingFilter(SaturationMonitor saturationMonitor,
+                                                                         ObjectMapper objectMapper) {
+        FilterRegistrationBean<LoadSheddingFilter> registration = new FilterRegistrationBean<>(
+                new LoadSheddingFilter(saturationMonitor, properties.getPaths(), objectMapper));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
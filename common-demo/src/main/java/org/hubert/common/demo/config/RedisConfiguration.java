@@ -1,10 +1,15 @@
 package org.hubert.common.demo.config;
 
+import org.hubert.common.demo.properties.RedisKeyProperties;
+import org.hubert.common.demo.security.UserDetailsCache;
+import org.hubert.common.demo.security.VerifiedTokenCache;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.integration.redis.util.RedisLockRegistry;
 
 /**
@@ -31,4 +36,21 @@ public class RedisConfiguration {
         template.setConnectionFactory(connectionFactory);
         return template;
     }
-}
\ No newline at end of file
+
+    /**
+     * Subscribes the verified token cache to the JWT rotation channel and the user details cache to the user
+     * invalidation channel.
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       VerifiedTokenCache verifiedTokenCache,
+                                                                       UserDetailsCache userDetailsCache,
+                                                                       RedisKeyProperties redisKeyProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(verifiedTokenCache, new ChannelTopic(redisKeyProperties.getJwtRotatedChannel()));
+        container.addMessageListener(userDetailsCache,
+                new ChannelTopic(redisKeyProperties.getUserDetailsInvalidatedChannel()));
+        return container;
+    }
+}
@@ -1,25 +1,142 @@
 package org.hubert.common.demo.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.executor.ThreadPoolRegistry;
 import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.properties.PackageBindOpPropertiesConsumer;
+import org.hubert.common.demo.properties.ThreadPoolProperties;
+import org.hubert.common.demo.properties.WheelTimerProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ExecutorService;
+
 /**
+ * Creates the application's thread pools with the sizes configured under {@code thread-pool.pools.<name>},
+ * falling back to the defaults below, and registers them in the {@link ThreadPoolRegistry} so they can be
+ * resized at runtime.
+ *
  * @author hubertwong
  * @version 1.0
  * @since 2024/9/20 15:29
  */
+@Slf4j
 @Configuration
+@RequiredArgsConstructor
 public class ThreadPoolConfig {
 
+    private final ThreadPoolRegistry threadPoolRegistry;
+
+    private final ThreadPoolProperties threadPoolProperties;
+
+    /**
+     * The pool sending package operation messages asynchronously. It refuses sends once its queue is full
+     * instead of discarding queued ones, and the producer then sends the refused message synchronously.
+     */
     @Bean(name = "packageOpThreadPoolExecutor")
     public CustomThreadPoolExecutor packageOpProducerThreadPoolExecutor() {
-        return ThreadPoolFactory.createThreadPool(1, 1, 1L, "package-op-producer-thread-pool");
+        return createThreadPool("package-op-producer-thread-pool", 1, 1, ThreadPoolFactory.DEFAULT_QUEUE_CAPACITY, true);
     }
 
+    /**
+     * The executor running package operation messages. Runs every message on its own virtual thread when
+     * {@code rocketmq.consumer.package-bind-op.virtual-threads} is enabled and the JVM supports it, in which
+     * case the number of concurrent messages is bounded by the consumer's concurrency limiter alone.
+     */
     @Bean(name = "packageOpConsumerThreadPoolExecutor")
-    public CustomThreadPoolExecutor consumerThreadPoolExecutor() {
-        return ThreadPoolFactory.createThreadPool(10, 20, 1L, "package-op-consumer-thread-pool");
+    public ExecutorService consumerThreadPoolExecutor(PackageBindOpPropertiesConsumer properties) {
+        if (properties.isVirtualThreads()) {
+            if (ThreadPoolFactory.isVirtualThreadSupported()) {
+                return ThreadPoolFactory.createVirtualThreadExecutor("package-op-consumer");
+            }
+            log.warn("Virtual threads require Java 21 or newer, falling back to the platform thread pool");
+        }
+        return createThreadPool("package-op-consumer-thread-pool", 10, 20);
+    }
+
+    /**
+     * The pool hashing and verifying passwords, bounded so that a burst of logins cannot take every CPU. It
+     * refuses work once its queue is full instead of discarding queued hashes, so callers can shed the load.
+     */
+    @Bean(name = "passwordHashThreadPoolExecutor")
+    public CustomThreadPoolExecutor passwordHashThreadPoolExecutor() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return createThreadPool("password-hash-thread-pool", threads, threads, 64, true);
+    }
+
+    /**
+     * The pool persisting refresh tokens while the signing-in request thread issues the JWT. It refuses work once
+     * its queue is full, and the request thread then does the work itself.
+     */
+    @Bean(name = "signinThreadPoolExecutor")
+    public CustomThreadPoolExecutor signinThreadPoolExecutor() {
+        return createThreadPool("signin-thread-pool", 4, 16, 256, true);
+    }
+
+    /**
+     * The pool deleting expired refresh tokens. The wheel timer only schedules the runs, which block on the
+     * database and must not hold a timer task thread. Runs follow each other, so one thread and a one-slot queue
+     * are enough.
+     */
+    @Bean(name = "refreshTokenSweepThreadPoolExecutor")
+    public CustomThreadPoolExecutor refreshTokenSweepThreadPoolExecutor() {
+        return createThreadPool("refresh-token-sweep-thread-pool", 1, 1, 1, true);
+    }
+
+    /**
+     * The pool running the expired timeouts of the wheel timer. It refuses them once its queue is full instead of
+     * discarding queued ones, so the timer sees the rejection and counts it.
+     */
+    @Bean(name = "timerTaskThreadPoolExecutor")
+    public CustomThreadPoolExecutor timerTaskThreadPoolExecutor() {
+        return createThreadPool("timer-task-thread-pool", 2, 4, ThreadPoolFactory.DEFAULT_QUEUE_CAPACITY, true);
+    }
+
+    /**
+     * The timer shared by retries, renewals, expiry sweeps and delayed sends, instead of a scheduled executor
+     * per use. Its tasks run on the {@code timer-task-thread-pool}, so they must not block for long.
+     */
+    @Bean(name = "wheelTimer", destroyMethod = "stop")
+    public HashedWheelTimer wheelTimer(WheelTimerProperties properties, MeterRegistry meterRegistry) {
+        HashedWheelTimer timer = ThreadPoolFactory.createWheelTimer("wheel-timer", properties.getTickMs(),
+                properties.getTicksPerWheel(), timerTaskThreadPoolExecutor());
+        timer.bindTo(meterRegistry);
+        return timer;
+    }
+
+    private CustomThreadPoolExecutor createThreadPool(String name, int defaultCorePoolSize, int defaultMaximumPoolSize) {
+        return createThreadPool(name, defaultCorePoolSize, defaultMaximumPoolSize, ThreadPoolFactory.DEFAULT_QUEUE_CAPACITY, false);
+    }
+
+    /**
+     * Creates a pool sized by its {@code thread-pool.pools.<name>} entry. A pool that refuses work once its queue
+     * is full cannot have the {@code PRIORITY} queue type, which discards the least valuable task instead, so that
+     * combination fails the startup.
+     */
+    private CustomThreadPoolExecutor createThreadPool(String name, int defaultCorePoolSize, int defaultMaximumPoolSize,
+                                                      int defaultQueueCapacity, boolean rejectWhenFull) {
+        ThreadPoolProperties.Pool pool = threadPoolProperties.getPools().getOrDefault(name, new ThreadPoolProperties.Pool());
+        if (rejectWhenFull && pool.getQueueType() == ThreadPoolProperties.QueueType.PRIORITY) {
+            throw new IllegalStateException("Thread pool " + name
+                    + " refuses work once its queue is full and does not support the PRIORITY queue type");
+        }
+        int corePoolSize = pool.getCorePoolSize() != null ? pool.getCorePoolSize() : defaultCorePoolSize;
+        int maximumPoolSize = pool.getMaximumPoolSize() != null ? pool.getMaximumPoolSize() : defaultMaximumPoolSize;
+        long keepAliveSeconds = pool.getKeepAliveSeconds() != null ? pool.getKeepAliveSeconds() : 1L;
+        int queueCapacity = pool.getQueueCapacity() != null ? pool.getQueueCapacity() : defaultQueueCapacity;
+        CustomThreadPoolExecutor executor;
+        if (rejectWhenFull) {
+            executor = ThreadPoolFactory.createBoundedThreadPool(corePoolSize, maximumPoolSize, keepAliveSeconds, queueCapacity, name);
+        } else if (pool.getQueueType() == ThreadPoolProperties.QueueType.PRIORITY) {
+            executor = ThreadPoolFactory.createPriorityThreadPool(corePoolSize, maximumPoolSize, keepAliveSeconds, queueCapacity, name);
+        } else {
+            executor = ThreadPoolFactory.createThreadPool(corePoolSize, maximumPoolSize, keepAliveSeconds, queueCapacity, name);
+        }
+        threadPoolRegistry.register(executor);
+        return executor;
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,12 @@
 package org.hubert.common.demo.config;
 
 import lombok.RequiredArgsConstructor;
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
 import org.hubert.common.demo.filter.JwtAuthenticationFilter;
+import org.hubert.common.demo.properties.PasswordHashProperties;
 import org.hubert.common.demo.security.AuthEntryPointJwt;
+import org.hubert.common.demo.security.OffloadedPasswordEncoder;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -45,12 +49,18 @@ public class WebSecurityConfig {
 
     /**
      * Configures a PasswordEncoder bean to be used throughout the application for encoding passwords.
+     * Hashing and verification run on the bounded password hash pool rather than on request threads, and
+     * hashes with a lower work factor than configured are rehashed on login.
      *
-     * @return a BCryptPasswordEncoder instance for password encoding.
+     * @param executor   the pool running the BCrypt work.
+     * @param properties the work factor and the maximum wait of callers.
+     * @return a BCrypt-based PasswordEncoder instance for password encoding.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Qualifier("passwordHashThreadPoolExecutor") CustomThreadPoolExecutor executor,
+                                           PasswordHashProperties properties) {
+        return new OffloadedPasswordEncoder(new BCryptPasswordEncoder(properties.getStrength()), executor,
+                properties.getMaxWaitMs());
     }
 
     /**
@@ -70,7 +80,11 @@ public class WebSecurityConfig {
      * Configures and returns the Spring Security filter chain.
      * The security configuration is designed to disable CORS and CSRF, handle exceptions using
      * a custom authentication entry point, manage sessions statelessly, and authorize HTTP requests
-     * such that requests to "/api/auth/**" are accessible by all while other requests require authentication.
+     * such that requests to "/api/auth/**", the JWT key set and the actuator health and prometheus endpoints are
+     * accessible by all,
+     * the thread pool endpoint, which can resize pools, and the dead letter endpoints, which replay parked
+     * messages onto their topics, are limited to administrators,
+     * while other requests require authentication.
      * Additionally, a JWT authentication filter is added before the UsernamePasswordAuthenticationFilter.
      *
      * @param http the HttpSecurity to modify based on the specified configurations.
@@ -84,8 +98,14 @@ public class WebSecurityConfig {
                 .exceptionHandling(exceptionHandling -> exceptionHandling.authenticationEntryPoint(authEntryPointJwt))
                 .sessionManagement(sessionManagement -> sessionManagement.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(authorizeRequests -> authorizeRequests
-                        .requestMatchers("/api/auth/**")
+                        .requestMatchers("/api/auth/**", "/.well-known/jwks.json")
                         .permitAll()
+                        .requestMatchers("/actuator/health/**", "/actuator/prometheus")
+                        .permitAll()
+                        .requestMatchers("/actuator/threadpools/**")
+                        .hasRole("ADMIN")
+                        .requestMatchers("/rocketmq/dlq/**")
+                        .hasRole("ADMIN")
                         .anyRequest()
                         .authenticated());
 
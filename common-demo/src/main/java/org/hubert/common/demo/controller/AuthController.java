@@ -2,30 +2,23 @@ package org.hubert.common.demo.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.collections.CollectionUtils;
 import org.hubert.common.demo.dto.request.LoginRequest;
 import org.hubert.common.demo.dto.request.SignupRequest;
 import org.hubert.common.demo.dto.request.TokenRefreshRequest;
 import org.hubert.common.demo.dto.response.JwtResponse;
 import org.hubert.common.demo.dto.response.TokenRefreshResponse;
-import org.hubert.common.demo.entity.RefreshToken;
 import org.hubert.common.demo.entity.Role;
 import org.hubert.common.demo.entity.User;
 import org.hubert.common.demo.enums.ResponseEnum;
 import org.hubert.common.demo.enums.RoleEnum;
-import org.hubert.common.demo.exceptions.CustomException;
 import org.hubert.common.demo.exceptions.TokenRefreshException;
-import org.hubert.common.demo.repository.RoleRepository;
 import org.hubert.common.demo.repository.UserRepository;
 import org.hubert.common.demo.result.Result;
 import org.hubert.common.demo.security.JwtTokenProvider;
 import org.hubert.common.demo.service.JwtTokenService;
 import org.hubert.common.demo.service.RefreshTokenService;
-import org.hubert.common.demo.service.impl.UserDetailsImpl;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.hubert.common.demo.service.RoleService;
+import org.hubert.common.demo.service.SigninService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -49,11 +42,9 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class AuthController {
     /**
-     * An instance of {@link AuthenticationManager} used to handle authentication processes.
-     * It is responsible for authenticating user credentials and providing methods to verify the authentication state.
-     * This field is marked as final, indicating it is immutable after initialization.
+     * Signs users in, checking their password and then issuing their JWT and refresh token concurrently.
      */
-    private final AuthenticationManager authenticationManager;
+    private final SigninService signinService;
 
     /**
      * Repository interface for user-related database operations.
@@ -62,11 +53,10 @@ public class AuthController {
     private final UserRepository userRepository;
 
     /**
-     * Responsible for data access operations related to roles within the authentication process.
-     * Provides methods to interact with the {@link Role} entities stored in the database.
-     * Primarily used in the authentication controller to manage user roles during the login and registration processes.
+     * Provides the {@link Role} entities by name from memory.
+     * Primarily used in the authentication controller to assign roles during the registration process.
      */
-    private final RoleRepository roleRepository;
+    private final RoleService roleService;
 
     /**
      * A PasswordEncoder instance used for encoding and decoding user passwords.
@@ -94,32 +84,23 @@ public class AuthController {
     private final JwtTokenService jwtTokenService;
 
     /**
-     * Authenticates a user based on the provided login request, generates a JWT token,
-     * updates the current JWT, creates a refresh token, and returns a response with the JWT and refresh tokens.
+     * Authenticates a user based on the provided login request, increments the token version of the user,
+     * generates a JWT token carrying it, creates a refresh token, and returns a response with the JWT and refresh tokens.
      *
      * @param loginRequest the login request containing the username and password for authentication
      * @return a {@link JwtResponse} containing the generated JWT, refresh token, and expiration information
      */
     @PostMapping("/signin")
     public JwtResponse authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
-        Authentication authenticate = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
-                loginRequest.getUsername(), loginRequest.getPassword()));
-        SecurityContextHolder.getContext().setAuthentication(authenticate);
-        UserDetailsImpl userDetails = (UserDetailsImpl) authenticate.getPrincipal();
-        String jwt = jwtTokenProvider.generateToken(authenticate);
-        jwtTokenService.updateCurrentJwt(userDetails.getUsername(), jwt, jwtTokenProvider.getJwtExpirationInMs());
-        RefreshToken refreshToken = refreshTokenService.createRefreshToken(userDetails.getId());
-        return new JwtResponse(jwt, refreshToken.getToken(),
-                refreshToken.getExpireDate().toEpochMilli(),
-                (Instant.now().toEpochMilli() + jwtTokenProvider.getJwtExpirationInMs() - 500));
+        return signinService.signin(loginRequest);
     }
 
     /**
      * Registers a new user based on the provided signup request. This method checks for existing
-     * users with the same username or email, assigns appropriate roles, and saves the new user
+     * users with the same username or email, assigns the default user role, and saves the new user
      * to the database.
      *
-     * @param signupRequest the signup request containing username, email, password, and optionally, roles.
+     * @param signupRequest the signup request containing username, email and password.
      * @return a Result object indicating success or specific error messages if the username or email already exists.
      */
     @PostMapping("/signup")
@@ -132,20 +113,9 @@ public class AuthController {
         }
         User user = new User(signupRequest.getUsername(), signupRequest.getEmail(),
                 passwordEncoder.encode(signupRequest.getPassword()));
-        Set<String> strRoles = signupRequest.getRoles();
+        // Signup is open to anyone, so it never grants more than the default role
         Set<Role> roles = new HashSet<>();
-
-        if (CollectionUtils.isEmpty(strRoles)) {
-            Role userRole = roleRepository.findByName(RoleEnum.ROLE_USER)
-                    .orElseThrow(() -> new CustomException(ResponseEnum.ROLE_NOT_FOUND));
-            roles.add(userRole);
-        } else {
-            strRoles.stream()
-                    .map(role -> RoleEnum.valueOf(role.toUpperCase()))
-                    .map(roleEnum -> roleRepository.findByName(roleEnum)
-                            .orElseThrow(() -> new CustomException(ResponseEnum.ROLE_NOT_FOUND)))
-                    .forEach(roles::add);
-        }
+        roles.add(roleService.getRole(RoleEnum.ROLE_USER));
         user.setRoles(roles);
         userRepository.save(user);
         return Result.success();
@@ -166,12 +136,9 @@ public class AuthController {
         return refreshTokenService.findByToken(requestRefreshToken)
                 .map(refreshToken -> {
                     long tokenExpiresAt = refreshToken.getExpireDate().toEpochMilli();
-                    refreshTokenService.verifyExpiration(refreshToken);
-                    if (refreshToken.getUser() == null) {
-                        throw new TokenRefreshException(requestRefreshToken, "Refresh token user not found");
-                    }
-                    String token = jwtTokenProvider.generateTokenFromUsername(refreshToken.getUser().getUsername());
-                    jwtTokenService.updateCurrentJwt(refreshToken.getUser().getUsername(), token, jwtTokenProvider.getJwtExpirationInMs());
+                    refreshTokenService.verifyExpiration(requestRefreshToken, refreshToken);
+                    String username = refreshToken.getUsername();
+                    String token = jwtTokenProvider.generateTokenFromUsername(username, jwtTokenService.rotate(username));
                     return new TokenRefreshResponse(token, requestRefreshToken, tokenExpiresAt,
                             (Instant.now().toEpochMilli() + jwtTokenProvider.getJwtExpirationInMs() - 500));
                 })
@@ -0,0 +1,61 @@
+package org.hubert.common.demo.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.hubert.common.demo.result.Result;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterReplayStatus;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterReplayer;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+
+/**
+ * Operations on the messages parked in the dead letter store.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/6 14:50
+ */
+@RequestMapping("/rocketmq/dlq")
+@RestController
+@RequiredArgsConstructor
+public class DeadLetterController {
+    private final DeadLetterReplayer deadLetterReplayer;
+
+    /**
+     * Starts replaying parked messages onto their original topics.
+     *
+     * @param keys          the message keys to replay, all parked messages are replayed if omitted
+     * @param ratePerSecond the number of messages to re-inject per second, the configured default if omitted
+     * @return the status of the started replay
+     */
+    @PostMapping("/replay")
+    public Result<DeadLetterReplayStatus> replay(@RequestParam(required = false) Set<String> keys,
+                                                 @RequestParam(required = false) Integer ratePerSecond) {
+        return Result.success(deadLetterReplayer.start(keys, ratePerSecond));
+    }
+
+    /**
+     * Returns the status of the running or last finished replay.
+     *
+     * @return the replay status, or no data if no replay was started
+     */
+    @GetMapping("/replay")
+    public Result<DeadLetterReplayStatus> status() {
+        return Result.success(deadLetterReplayer.status());
+    }
+
+    /**
+     * Stops the running replay, leaving the messages not yet re-injected parked.
+     *
+     * @return the replay status
+     */
+    @DeleteMapping("/replay")
+    public Result<DeadLetterReplayStatus> cancel() {
+        return Result.success(deadLetterReplayer.cancel());
+    }
+}
@@ -0,0 +1,41 @@
+package org.hubert.common.demo.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.hubert.common.demo.properties.JwtSigningProperties;
+import org.hubert.common.demo.security.JwtKeySet;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the public keys JWTs are signed with, so that other services can verify tokens without holding a
+ * secret.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 11:00
+ */
+@RestController
+@RequiredArgsConstructor
+public class JwksController {
+    private final JwtKeySet jwtKeySet;
+    private final JwtSigningProperties jwtSigningProperties;
+
+    /**
+     * Returns the public keys as a JSON Web Key Set. The set is empty in HS512 mode, whose secret is never
+     * published.
+     *
+     * @return the key set, cacheable for {@code jwt.signing.jwks-max-age-seconds}
+     */
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(jwtSigningProperties.getJwksMaxAgeSeconds(), TimeUnit.SECONDS)
+                        .cachePublic())
+                .body(jwtKeySet.toJson());
+    }
+}
@@ -6,15 +6,12 @@ import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 
-import java.util.Set;
-
 /**
  * Represents a request for user signup, capturing the necessary details
- * such as username, password, email, and roles.
+ * such as username, password and email.
  * <p>
  * This class is used to gather the information needed to register a new user.
- * The roles field, if provided, indicates the roles to be assigned to the user,
- * otherwise, a default role is assigned.
+ * Callers cannot choose their roles, every new user is given the default role.
  *
  * @author hubertwong
  * @version 1.0
@@ -51,10 +48,4 @@ public class SignupRequest {
             message = "Password must be 10-16 characters long and include at least one digit, one uppercase letter, one lowercase letter, and one special character (-.&)"
     )
     private String password;
-
-    /**
-     * The roles of the user attempting to sign up.
-     * This field contains a set of roles that will be assigned to the new user account.
-     */
-    private Set<String> roles;
 }
@@ -4,19 +4,25 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
-import jakarta.persistence.OneToOne;
+import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.time.Instant;
 
 /**
  * Represents a refresh token used for authenticating users in the system.
  * <p>
- * Each RefreshToken is associated with a unique user and contains a token string
- * along with an expiration date.
+ * Each RefreshToken is associated with a user and contains the SHA-256 hash of a token string
+ * along with an expiration date. The token itself is only known to the user it was issued to,
+ * so a leaked table cannot be used to refresh tokens.
  *
  * @author hubertwong
  * @version 1.0
@@ -24,7 +30,7 @@ import java.time.Instant;
  */
 @Data
 @Entity
-@Table(name = "t_refresh_token")
+@Table(name = "t_refresh_token", indexes = @Index(name = "idx_expire_date", columnList = "expire_date"))
 public class RefreshToken {
     /**
      * The unique identifier for the RefreshToken entity.
@@ -36,18 +42,28 @@ public class RefreshToken {
 
     /**
      * Represents the associated User entity for this RefreshToken.
-     * This is a one-to-one relationship where each RefreshToken is linked to a single User.
+     * This is a many-to-one relationship, as a user gets a RefreshToken on every signin, loaded only when accessed.
      * The foreign key column in the "t_refresh_token" table is "user_id", which references the "id" column in the "t_user" table.
      */
-    @OneToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private User user;
 
     /**
-     * Represents the refresh token associated with a user.
+     * Represents the SHA-256 hash of the refresh token associated with a user, in a fixed-width binary column.
      * This field is mandatory and must be unique across the database.
      */
-    @Column(nullable = false, unique = true)
+    @Column(name = "token_hash", nullable = false, unique = true, columnDefinition = "BINARY(32)")
+    private byte[] tokenHash;
+
+    /**
+     * Represents the refresh token itself, only known right after it was created so that it can be returned to
+     * the user. It is never stored.
+     */
+    @Transient
+    @ToString.Exclude
     private String token;
 
     /**
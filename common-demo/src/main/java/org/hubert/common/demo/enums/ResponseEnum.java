@@ -14,11 +14,13 @@ public enum ResponseEnum {
     SUCCESS(200, "Success"),
     BAD_REQUEST(400, "Bad Request"),
     INTERNAL_SERVER_ERROR(500, "Internal Server Error"),
+    SERVICE_UNAVAILABLE(503, "Service Unavailable, retry later"),
     CUSTOM_ERROR(1001, "Custom Error"),
     USER_ALREADY_EXISTS(1002, "User Already Exists"),
     EMIAL_ALREADY_EXISTS(1003, "Email already exists"),
     USER_NOT_FOUND(1004, "User not found"),
     ROLE_NOT_FOUND(1005, "Role not found"),
+    DEAD_LETTER_REPLAY_RUNNING(1006, "A dead letter replay is already running"),
     ;
     private final Integer code;
     private final String message;
@@ -0,0 +1,391 @@
+package org.hubert.common.demo.executor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs tasks on a shared executor with a separate concurrency quota per key, for example per app, so that one
+ * key cannot take all the threads of the shared executor and starve the others.
+ * <p>
+ * Each key gets a compartment holding the number of its tasks currently running, taken and returned with
+ * compare-and-set, so the common path takes no lock. A task whose key has used up its quota is handled by the
+ * {@link OverflowPolicy} of the bulkhead. Queued tasks are started by the task of the same key that frees a
+ * slot; if the shared executor refuses one, it runs on the thread that freed the slot so it is never lost.
+ * <p>
+ * Once bound to a registry, the running, queued and rejected tasks of each compartment are published under
+ * the bulkhead name and the key. Compartments are never removed, so keys coming from untrusted input, such as
+ * the content of a message, must not grow them without bound: keys with a quota of their own in {@code limits}
+ * always get their own compartment, the first {@code maxKeys} other keys seen get one as well, and every key
+ * after that shares the single {@link #OTHER_KEY} compartment and its quota.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/10 14:00
+ */
+public class BulkheadExecutor implements MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(BulkheadExecutor.class);
+
+    /**
+     * Gauge of the running tasks of a compartment, tagged by bulkhead name and key.
+     */
+    public static final String ACTIVE_METRIC = "executor.bulkhead.active";
+    /**
+     * Gauge of the queued tasks of a compartment, tagged by bulkhead name and key.
+     */
+    public static final String QUEUED_METRIC = "executor.bulkhead.queued";
+    /**
+     * Counter of the tasks refused or run by the caller because their compartment was full, tagged by
+     * bulkhead name, key and overflow policy.
+     */
+    public static final String OVERFLOW_METRIC = "executor.bulkhead.overflow";
+
+    /**
+     * The key of tasks submitted without one.
+     */
+    public static final String UNKNOWN_KEY = "unknown";
+    /**
+     * The key of the compartment shared by the keys seen once {@code maxKeys} compartments exist.
+     */
+    public static final String OTHER_KEY = "other";
+
+    private final String name;
+    private final Executor delegate;
+    private final int maxConcurrentPerKey;
+    private final Map<String, Integer> limits;
+    private final OverflowPolicy overflowPolicy;
+    private final int maxQueuedPerKey;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, Compartment> compartments = new ConcurrentHashMap<>();
+    private final AtomicInteger unlistedKeys = new AtomicInteger();
+    private volatile MeterRegistry registry;
+
+    /**
+     * @param name                the bulkhead name, used to tag its metrics
+     * @param delegate            the shared executor running the tasks
+     * @param maxConcurrentPerKey the number of tasks of a key that may run at once, unless overridden in {@code limits}
+     * @param limits              the quotas of specific keys
+     * @param overflowPolicy      what happens to a task whose key has used up its quota
+     * @param maxQueuedPerKey     the number of tasks of a key that may wait, used by {@link OverflowPolicy#QUEUE}
+     * @param maxKeys             the number of keys not in {@code limits} that get their own compartment
+     */
+    public BulkheadExecutor(String name, Executor delegate, int maxConcurrentPerKey, Map<String, Integer> limits,
+                            OverflowPolicy overflowPolicy, int maxQueuedPerKey, int maxKeys) {
+        if (maxConcurrentPerKey < 1) {
+            throw new IllegalArgumentException("maxConcurrentPerKey must be at least 1");
+        }
+        if (maxQueuedPerKey < 0) {
+            throw new IllegalArgumentException("maxQueuedPerKey must not be negative");
+        }
+        if (maxKeys < 0) {
+            throw new IllegalArgumentException("maxKeys must not be negative");
+        }
+        this.name = name;
+        this.delegate = delegate;
+        this.maxConcurrentPerKey = maxConcurrentPerKey;
+        this.limits = Map.copyOf(limits);
+        this.overflowPolicy = overflowPolicy;
+        this.maxQueuedPerKey = maxQueuedPerKey;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Runs the task within the quota of the given key.
+     *
+     * @param key  the key whose quota the task counts against, tasks without one share the {@link #UNKNOWN_KEY} quota
+     * @param task the task to run
+     * @throws RejectedExecutionException if the quota of the key is used up and the overflow policy refuses the
+     *                                    task, or if the shared executor refuses it
+     */
+    public void execute(String key, Runnable task) {
+        Compartment compartment = compartment(key == null ? UNKNOWN_KEY : key);
+        if (compartment.tryAcquire()) {
+            start(compartment, task);
+            return;
+        }
+        switch (overflowPolicy) {
+            case CALLER_RUNS -> {
+                compartment.overflow.increment();
+                task.run();
+            }
+            case QUEUE -> {
+                if (compartment.queued.incrementAndGet() > maxQueuedPerKey) {
+                    compartment.queued.decrementAndGet();
+                    reject(compartment);
+                }
+                compartment.backlog.offer(task);
+                // A slot may have been freed between the failed acquire and the offer
+                drain(compartment, false);
+            }
+            default -> reject(compartment);
+        }
+    }
+
+    /**
+     * Removes and returns the tasks waiting for a free slot, for example to persist them during a shutdown.
+     *
+     * @return the tasks that were queued
+     */
+    public List<Runnable> drainQueued() {
+        List<Runnable> pending = new ArrayList<>();
+        for (Compartment compartment : compartments.values()) {
+            Runnable task;
+            while ((task = compartment.backlog.poll()) != null) {
+                compartment.queued.decrementAndGet();
+                pending.add(task);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Registers the gauges of the compartments created so far and of the ones created from now on.
+     *
+     * @param registry the registry to bind the meters to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        compartments.values().forEach(compartment -> compartment.bindTo(registry));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns the quota of the given key.
+     *
+     * @param key the key
+     * @return the number of tasks of the key that may run at once
+     */
+    public int getLimit(String key) {
+        return limits.getOrDefault(key, maxConcurrentPerKey);
+    }
+
+    /**
+     * Returns the number of tasks of the given key currently running. Keys sharing the {@link #OTHER_KEY}
+     * compartment are counted under that key.
+     *
+     * @param key the key
+     * @return the running tasks
+     */
+    public int getActive(String key) {
+        Compartment compartment = compartments.get(key);
+        return compartment == null ? 0 : compartment.active.get();
+    }
+
+    private Compartment compartment(String key) {
+        Compartment compartment = compartments.get(key);
+        if (compartment != null) {
+            return compartment;
+        }
+        boolean listed = limits.containsKey(key) || OTHER_KEY.equals(key);
+        // Once the bound is reached, new keys go straight to the shared compartment without locking a bin
+        if (listed || unlistedKeys.get() < maxKeys) {
+            compartment = compartments.computeIfAbsent(key, k -> {
+                if (!listed && unlistedKeys.incrementAndGet() > maxKeys) {
+                    unlistedKeys.decrementAndGet();
+                    // Leaves the key unmapped
+                    return null;
+                }
+                return newCompartment(k);
+            });
+            if (compartment != null) {
+                return compartment;
+            }
+        }
+        Compartment other = compartments.get(OTHER_KEY);
+        return other != null ? other : compartments.computeIfAbsent(OTHER_KEY, this::newCompartment);
+    }
+
+    private Compartment newCompartment(String key) {
+        Compartment created = new Compartment(key, getLimit(key));
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry != null) {
+            created.bindTo(meterRegistry);
+        }
+        return created;
+    }
+
+    private void reject(Compartment compartment) {
+        compartment.overflow.increment();
+        throw new RejectedExecutionException("Bulkhead " + name + " is full for key " + compartment.key);
+    }
+
+    /**
+     * Hands a task whose slot is taken to the shared executor.
+     *
+     * @param compartment the compartment the task belongs to
+     * @param task        the task
+     */
+    private void start(Compartment compartment, Runnable task) {
+        try {
+            delegate.execute(new GuardedTask(compartment, task));
+        } catch (RejectedExecutionException e) {
+            compartment.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts queued tasks of the compartment while it has free slots.
+     *
+     * @param compartment the compartment
+     * @param runRefused  whether a task refused by the shared executor runs on the current thread, otherwise it
+     *                    is put back and left to the next task that frees a slot
+     */
+    private void drain(Compartment compartment, boolean runRefused) {
+        while (!compartment.backlog.isEmpty() && compartment.tryAcquire()) {
+            Runnable task = compartment.backlog.poll();
+            if (task == null) {
+                compartment.release();
+                continue;
+            }
+            compartment.queued.decrementAndGet();
+            try {
+                start(compartment, task);
+            } catch (RejectedExecutionException e) {
+                if (runRefused || compartment.active.get() == 0) {
+                    log.warn("Shared executor refused a queued task of bulkhead {}, key: {}, running it on {}",
+                            name, compartment.key, Thread.currentThread().getName());
+                    runQueued(compartment, task);
+                } else {
+                    compartment.queued.incrementAndGet();
+                    compartment.backlog.offer(task);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void runQueued(Compartment compartment, Runnable task) {
+        compartment.active.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            compartment.release();
+        }
+    }
+
+    /**
+     * A task handed to the shared executor, which frees its slot once it finishes and starts the next queued
+     * task of its key. Tasks the shared executor returns from {@code shutdownNow()} are of this type, and
+     * {@link #getTask()} gives back the submitted task, for example to persist it.
+     */
+    public final class GuardedTask implements Runnable {
+        private final Compartment compartment;
+        private final Runnable task;
+
+        private GuardedTask(Compartment compartment, Runnable task) {
+            this.compartment = compartment;
+            this.task = task;
+        }
+
+        /**
+         * Returns the task as it was submitted to the bulkhead.
+         *
+         * @return the wrapped task
+         */
+        public Runnable getTask() {
+            return task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                compartment.release();
+                drain(compartment, true);
+            }
+        }
+    }
+
+    /**
+     * What happens to a task whose key has used up its quota.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The task is refused with a {@link RejectedExecutionException}.
+         */
+        REJECT,
+        /**
+         * The task runs on the submitting thread, which slows the submitter down.
+         */
+        CALLER_RUNS,
+        /**
+         * The task waits until a task of the same key finishes, or is refused if too many already wait.
+         */
+        QUEUE
+    }
+
+    /**
+     * The running and queued tasks of one key.
+     */
+    private final class Compartment {
+        private final String key;
+        private final int limit;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Queue<Runnable> backlog = new ConcurrentLinkedQueue<>();
+        private final LongAdder overflow = new LongAdder();
+
+        private Compartment(String key, int limit) {
+            this.key = key;
+            this.limit = limit;
+        }
+
+        private boolean tryAcquire() {
+            int current;
+            do {
+                current = active.get();
+                if (current >= limit) {
+                    return false;
+                }
+            } while (!active.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private void release() {
+            active.decrementAndGet();
+        }
+
+        private void bindTo(MeterRegistry registry) {
+            Gauge.builder(ACTIVE_METRIC, active, AtomicInteger::get)
+                    .description("Tasks of the key currently running")
+                    .tag("name", name)
+                    .tag("key", key)
+                    .register(registry);
+            Gauge.builder(QUEUED_METRIC, queued, AtomicInteger::get)
+                    .description("Tasks of the key waiting for a free slot")
+                    .tag("name", name)
+                    .tag("key", key)
+                    .register(registry);
+            FunctionCounter.builder(OVERFLOW_METRIC, overflow, LongAdder::sum)
+                    .description("Tasks of the key refused or run by the caller because its quota was used up")
+                    .tag("name", name)
+                    .tag("key", key)
+                    .tag("policy", overflowPolicy.name().toLowerCase())
+                    .register(registry);
+        }
+    }
+}
@@ -1,22 +1,81 @@
 package org.hubert.common.demo.executor;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.hubert.common.demo.filter.CustomThreadPoolMDCFilter;
-import org.slf4j.MDC;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * A thread pool that propagates the MDC context of the submitting thread and measures every task.
+ * <p>
+ * The {@code submit} and {@code invoke} methods all go through {@link #execute}, so every task is wrapped
+ * exactly once.
+ * <p>
+ * Each task is stamped when it is submitted, so the time it spends in the queue and the time it runs are
+ * recorded in {@link #beforeExecute} and {@link #afterExecute} without any shared state beyond the timers
+ * themselves. Rejections are counted per rejection policy before the policy runs, which also makes the work
+ * silently dropped by {@link ThreadPoolExecutor.DiscardOldestPolicy} visible. Meters are registered under the
+ * pool name once the pool is bound to a registry; until then only the rejection count is kept.
+ * <p>
+ * The priority and deadline of {@link PrioritizedTask}s, including the ones given to {@code submit}, are kept
+ * on the wrapped task, so a {@link PriorityDeadlineBlockingQueue} orders them. Tasks that queue sheds because
+ * their deadline passed are counted, and tasks discarded that way or by {@link EvictLowestPriorityPolicy} have
+ * their future cancelled so that callers waiting on them are released.
+ * <p>
+ * Once the pool is shut down, new tasks are refused with a {@link RejectedExecutionException} whatever the
+ * rejection policy, so that work submitted during a shutdown is never dropped silently, and
+ * {@link #shutdownNow()} returns the queued tasks as they were submitted so that they can be persisted.
+ *
  * @author hubertwong
  * @version 1.0
  * @since 2024/9/26 15:27
  */
-public class CustomThreadPoolExecutor extends ThreadPoolExecutor {
+public class CustomThreadPoolExecutor extends ThreadPoolExecutor implements MeterBinder {
+    /**
+     * Timer of the time a task waits in the queue before a worker picks it up, tagged by pool name.
+     */
+    public static final String QUEUE_WAIT_METRIC = TaskTimers.QUEUE_WAIT_METRIC;
+    /**
+     * Timer of the time a task runs, tagged by pool name.
+     */
+    public static final String RUN_METRIC = TaskTimers.RUN_METRIC;
+    /**
+     * Counter of rejected tasks, tagged by pool name and rejection policy.
+     */
+    public static final String REJECTED_METRIC = "executor.rejected";
+    /**
+     * Gauge of the largest number of threads the pool has ever had, tagged by pool name.
+     */
+    public static final String LARGEST_POOL_SIZE_METRIC = "executor.pool.largest";
+    /**
+     * Counter of tasks shed because their deadline passed while they were queued, tagged by pool name.
+     */
+    public static final String EXPIRED_METRIC = "executor.expired";
+
+    private static final String DEFAULT_NAME = "custom-thread-pool";
+
+    private final String name;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final TaskTimers taskTimers = new TaskTimers();
 
     public CustomThreadPoolExecutor(int corePoolSize,
                                     int maximumPoolSize,
@@ -24,7 +83,9 @@ public class CustomThreadPoolExecutor extends ThreadPoolExecutor {
                                     TimeUnit unit,
                                     BlockingQueue<Runnable> workQueue,
                                     RejectedExecutionHandler handler) {
-        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, handler);
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, new CountingRejectedExecutionHandler(handler));
+        this.name = DEFAULT_NAME;
+        handleExpiredTasks(workQueue);
     }
 
     public CustomThreadPoolExecutor(int corePoolSize,
@@ -34,21 +95,224 @@ public class CustomThreadPoolExecutor extends ThreadPoolExecutor {
                                     BlockingQueue<Runnable> workQueue,
                                     ThreadFactory threadFactory,
                                     RejectedExecutionHandler handler) {
-        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+        this(DEFAULT_NAME, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+    }
+
+    public CustomThreadPoolExecutor(String name,
+                                    int corePoolSize,
+                                    int maximumPoolSize,
+                                    long keepAliveTime,
+                                    TimeUnit unit,
+                                    BlockingQueue<Runnable> workQueue,
+                                    ThreadFactory threadFactory,
+                                    RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory,
+                new CountingRejectedExecutionHandler(handler));
+        this.name = name;
+        handleExpiredTasks(workQueue);
     }
 
     @Override
     public void execute(Runnable task) {
-        super.execute(CustomThreadPoolMDCFilter.wrap(task, MDC.getCopyOfContextMap()));
+        super.execute(new TimedTask(task, CustomThreadPoolMDCFilter.wrap(task, CustomThreadPoolMDCFilter.capture())));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return runnable instanceof PrioritizedTask prioritizedTask
+                ? new PrioritizedFutureTask<>(Executors.callable(runnable, value), prioritizedTask)
+                : super.newTaskFor(runnable, value);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return callable instanceof PrioritizedTask prioritizedTask
+                ? new PrioritizedFutureTask<>(callable, prioritizedTask)
+                : super.newTaskFor(callable);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof TimedTask timedTask) {
+            timedTask.startedAt = System.nanoTime();
+            taskTimers.recordQueueWait(timedTask.startedAt - timedTask.submittedAt);
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        if (r instanceof TimedTask timedTask) {
+            taskTimers.recordRun(System.nanoTime() - timedTask.startedAt);
+        }
+        super.afterExecute(r, t);
+    }
+
+    /**
+     * Stops the pool and returns the tasks that never ran, unwrapped to the tasks given to {@link #execute}.
+     *
+     * @return the tasks that never ran
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> queued = super.shutdownNow();
+        List<Runnable> pending = new ArrayList<>(queued.size());
+        for (Runnable task : queued) {
+            pending.add(task instanceof TimedTask timedTask ? timedTask.original : task);
+        }
+        return pending;
     }
 
     @Override
-    public <T> Future<T> submit(Callable<T> task) {
-        return super.submit(CustomThreadPoolMDCFilter.wrap(task, MDC.getCopyOfContextMap()));
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        super.setRejectedExecutionHandler(new CountingRejectedExecutionHandler(handler));
     }
 
+    /**
+     * Registers the pool gauges, the queue-wait and run-time histograms and the rejection counter,
+     * all tagged with the pool name.
+     *
+     * @param registry the registry to bind the meters to
+     */
     @Override
-    public Future<?> submit( Runnable task) {
-        return super.submit(CustomThreadPoolMDCFilter.wrap(task, MDC.getCopyOfContextMap()));
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("name", name);
+        new ExecutorServiceMetrics(this, name, tags).bindTo(registry);
+        Gauge.builder(LARGEST_POOL_SIZE_METRIC, this, ThreadPoolExecutor::getLargestPoolSize)
+                .description("The largest number of threads that have ever simultaneously been in the pool")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder(REJECTED_METRIC, this, executor -> executor.rejected.sum())
+                .description("Tasks rejected by the pool, including the ones dropped by discard policies")
+                .tags(tags)
+                .tag("policy", ((CountingRejectedExecutionHandler) getRejectedExecutionHandler()).delegate.getClass().getSimpleName())
+                .register(registry);
+        FunctionCounter.builder(EXPIRED_METRIC, this, executor -> executor.expired.sum())
+                .description("Tasks shed because their deadline passed while they were queued")
+                .tags(tags)
+                .register(registry);
+        taskTimers.bindTo(registry, tags);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the histogram of the time tasks waited in the queue, recorded whether or not the pool is bound to
+     * a registry.
+     *
+     * @return the queue-wait histogram
+     */
+    public LatencyHistogram getQueueWaitHistogram() {
+        return taskTimers.queueWaitHistogram();
+    }
+
+    /**
+     * Drops a task that was queued on this pool without running it, cancelling its future if it has one.
+     *
+     * @param task the task as it was queued
+     */
+    void discard(Runnable task) {
+        Runnable original = task instanceof TimedTask timedTask ? timedTask.original : task;
+        if (original instanceof Future<?> future) {
+            future.cancel(false);
+        }
+    }
+
+    private void handleExpiredTasks(BlockingQueue<Runnable> workQueue) {
+        if (workQueue instanceof PriorityDeadlineBlockingQueue priorityQueue) {
+            priorityQueue.setExpiredTaskHandler(task -> {
+                expired.increment();
+                discard(task);
+            });
+        }
+    }
+
+    /**
+     * A task stamped with the time it was submitted and the time it started running, carrying the priority and
+     * deadline of the task it wraps.
+     */
+    private static final class TimedTask implements Runnable, PrioritizedTask {
+        private final Runnable original;
+        private final Runnable task;
+        private final long submittedAt = System.nanoTime();
+        private final int priority;
+        private final long deadlineNanos;
+        private long startedAt;
+
+        private TimedTask(Runnable original, Runnable task) {
+            this.original = original;
+            this.task = task;
+            if (original instanceof PrioritizedTask prioritizedTask) {
+                this.priority = prioritizedTask.getPriority();
+                this.deadlineNanos = prioritizedTask.getDeadlineNanos();
+            } else {
+                this.priority = NORMAL_PRIORITY;
+                this.deadlineNanos = NO_DEADLINE;
+            }
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public long getDeadlineNanos() {
+            return deadlineNanos;
+        }
+    }
+
+    /**
+     * The future of a submitted {@link PrioritizedTask}, keeping its priority and deadline.
+     */
+    private static final class PrioritizedFutureTask<T> extends FutureTask<T> implements PrioritizedTask {
+        private final int priority;
+        private final long deadlineNanos;
+
+        private PrioritizedFutureTask(Callable<T> callable, PrioritizedTask prioritizedTask) {
+            super(callable);
+            this.priority = prioritizedTask.getPriority();
+            this.deadlineNanos = prioritizedTask.getDeadlineNanos();
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public long getDeadlineNanos() {
+            return deadlineNanos;
+        }
+    }
+
+    /**
+     * Counts rejections before handing them to the configured policy, and refuses tasks outright once the pool
+     * is shut down.
+     */
+    private static final class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+        private final RejectedExecutionHandler delegate;
+
+        private CountingRejectedExecutionHandler(RejectedExecutionHandler delegate) {
+            this.delegate = delegate instanceof CountingRejectedExecutionHandler counting ? counting.delegate : delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor instanceof CustomThreadPoolExecutor customThreadPoolExecutor) {
+                customThreadPoolExecutor.rejected.increment();
+            }
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Thread pool has been shut down");
+            }
+            delegate.rejectedExecution(r, executor);
+        }
     }
 }
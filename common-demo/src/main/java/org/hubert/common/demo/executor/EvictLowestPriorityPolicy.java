@@ -0,0 +1,38 @@
+package org.hubert.common.demo.executor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * A rejection policy for pools queueing on a {@link PriorityDeadlineBlockingQueue}: the least valuable of the
+ * queued tasks and the rejected one is discarded, so under overload the pool keeps the work that matters
+ * instead of the most recent one. Discarded tasks submitted through {@code submit} have their future
+ * cancelled by {@link CustomThreadPoolExecutor}.
+ * <p>
+ * With any other queue the policy behaves as {@link ThreadPoolExecutor.DiscardOldestPolicy}. Tasks rejected
+ * because the pool is shut down are discarded.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/10 11:00
+ */
+public class EvictLowestPriorityPolicy implements RejectedExecutionHandler {
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        if (!(queue instanceof PriorityDeadlineBlockingQueue priorityQueue)) {
+            queue.poll();
+            executor.execute(r);
+            return;
+        }
+        Runnable discarded = priorityQueue.offerEvictingLowest(r);
+        if (discarded != null && executor instanceof CustomThreadPoolExecutor customThreadPoolExecutor) {
+            customThreadPoolExecutor.discard(discarded);
+        }
+    }
+}
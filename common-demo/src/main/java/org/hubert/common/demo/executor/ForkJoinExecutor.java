@@ -0,0 +1,148 @@
+package org.hubert.common.demo.executor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.hubert.common.demo.filter.CustomThreadPoolMDCFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An executor backed by a work-stealing {@link ForkJoinPool} in async mode, with the same naming, MDC
+ * propagation and metrics as {@link CustomThreadPoolExecutor}.
+ * <p>
+ * Tasks submitted from outside the pool are spread over several submission queues instead of a single
+ * locked queue, and idle workers steal from busy ones, so many concurrent submitters do not contend on one
+ * lock. Async mode keeps the order of tasks that are never joined close to FIFO. The queues are unbounded:
+ * callers are expected to bound the work they submit, as the consumer does with its concurrency limiter.
+ * <p>
+ * A {@link ForkJoinPool} hands back nothing from {@code shutdownNow}, so the executor keeps its own set of the
+ * tasks submitted but not started. A task runs only if it can still take itself out of that set, and
+ * {@link #shutdownNow()} returns the tasks it takes out first, like {@link CustomThreadPoolExecutor} does, so
+ * they can be spooled instead of vanishing.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/9 14:30
+ */
+public class ForkJoinExecutor extends AbstractExecutorService implements MeterBinder {
+    private final String name;
+    private final ForkJoinPool pool;
+    private final TaskTimers taskTimers = new TaskTimers();
+    private final LongAdder rejected = new LongAdder();
+    private final Set<PendingTask> pending = ConcurrentHashMap.newKeySet();
+
+    public ForkJoinExecutor(String name, int parallelism) {
+        this.name = name;
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName(name + "-thread-" + threadNumber.getAndIncrement());
+            return thread;
+        }, null, true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        PendingTask pendingTask = new PendingTask(task,
+                taskTimers.timed(CustomThreadPoolMDCFilter.wrap(task, CustomThreadPoolMDCFilter.capture())));
+        pending.add(pendingTask);
+        try {
+            pool.execute(pendingTask);
+        } catch (RejectedExecutionException e) {
+            pending.remove(pendingTask);
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        pool.shutdownNow();
+        List<Runnable> notStarted = new ArrayList<>();
+        for (PendingTask pendingTask : pending) {
+            if (pending.remove(pendingTask)) {
+                notStarted.add(pendingTask.task);
+            }
+        }
+        return notStarted;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return pool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Registers the pool gauges, including the steal count, the queue-wait and run-time histograms and the
+     * rejection counter, all tagged with the pool name.
+     *
+     * @param registry the registry to bind the meters to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("name", name);
+        new ExecutorServiceMetrics(pool, name, tags).bindTo(registry);
+        FunctionCounter.builder(CustomThreadPoolExecutor.REJECTED_METRIC, rejected, LongAdder::sum)
+                .description("Tasks rejected by the pool, including the ones dropped by discard policies")
+                .tags(tags)
+                .tag("policy", "AbortPolicy")
+                .register(registry);
+        taskTimers.bindTo(registry, tags);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * A submitted task that runs only if {@link #shutdownNow()} has not claimed it first.
+     */
+    private final class PendingTask implements Runnable {
+        private final Runnable task;
+        private final Runnable wrapped;
+
+        private PendingTask(Runnable task, Runnable wrapped) {
+            this.task = task;
+            this.wrapped = wrapped;
+        }
+
+        @Override
+        public void run() {
+            if (pending.remove(this)) {
+                wrapped.run();
+            }
+        }
+    }
+}
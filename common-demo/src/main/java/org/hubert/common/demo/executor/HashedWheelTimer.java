@@ -0,0 +1,443 @@
+package org.hubert.common.demo.executor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A timer for large numbers of approximate timeouts, such as retries, lock renewals, expiry sweeps and delayed
+ * sends, shared instead of one {@link java.util.concurrent.ScheduledThreadPoolExecutor} per use.
+ * <p>
+ * Timeouts are hashed into a ring of buckets by the tick they expire on. Scheduling and cancelling only append
+ * to a lock-free queue, and a single worker thread moves new timeouts into their bucket and unlinks cancelled
+ * ones, so both cost O(1) regardless of how many timeouts are pending, where a scheduled executor pays
+ * O(log n) on a shared heap. Each pending timeout is a single small object. Timeouts fire up to one tick late,
+ * and the expired tasks run on the given executor, never on the worker thread. Tasks that recur re-arm
+ * themselves with a new timeout.
+ * <p>
+ * The worker thread starts with the first timeout. {@link #stop()} stops it and returns the timeouts that had
+ * not expired yet.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/12 10:00
+ */
+public class HashedWheelTimer implements MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    /**
+     * Gauge of the timeouts scheduled and neither expired nor cancelled yet, tagged by timer name.
+     */
+    public static final String PENDING_METRIC = "executor.timer.pending";
+    /**
+     * Counter of the timeouts that expired and whose task was handed to the executor, tagged by timer name.
+     */
+    public static final String EXPIRED_METRIC = "executor.timer.expired";
+    /**
+     * Counter of the expired timeouts whose task the executor refused, tagged by timer name.
+     */
+    public static final String REJECTED_METRIC = "executor.timer.rejected";
+
+    /**
+     * The most new timeouts moved into the wheel per tick, so a burst cannot stall the tick.
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor taskExecutor;
+    private final Queue<WheelTimeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger workerState = new AtomicInteger(WORKER_INIT);
+    private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+    private final Thread workerThread;
+    private final List<Timeout> unprocessedTimeouts = new ArrayList<>();
+    private volatile long startTime;
+    private long tick;
+
+    /**
+     * @param name          the timer name, used to name the worker thread and tag the metrics
+     * @param tickDuration  the duration of a tick, which is the precision of the timer
+     * @param unit          the unit of {@code tickDuration}
+     * @param ticksPerWheel the number of buckets, rounded up to a power of two; timeouts further away than a
+     *                      full turn of the wheel wait for their round in their bucket
+     * @param taskExecutor  the executor running the tasks of expired timeouts
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel, Executor taskExecutor) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel must be between 1 and 2^30");
+        }
+        this.name = name;
+        this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+        int wheelSize = 1;
+        while (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheelSize - 1;
+        this.taskExecutor = taskExecutor;
+        this.workerThread = new Thread(this::runWorker, name + "-worker");
+        this.workerThread.setDaemon(true);
+    }
+
+    /**
+     * Schedules a task to run once the delay has elapsed.
+     *
+     * @param task  the task to run on the executor
+     * @param delay the delay
+     * @param unit  the unit of {@code delay}
+     * @return a handle to cancel the timeout
+     * @throws RejectedExecutionException if the timer has been stopped
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        start();
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(0L, delay)) - startTime;
+        if (delay > 0 && deadline < 0) {
+            // Overflow, the timeout is so far away it will never expire in practice
+            deadline = Long.MAX_VALUE;
+        }
+        WheelTimeout timeout = new WheelTimeout(task, deadline);
+        pendingCount.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the worker thread. Timeouts that expired before are still run by the executor, timeouts that had
+     * not are returned and never run.
+     *
+     * @return the timeouts that had neither expired nor been cancelled
+     */
+    public List<Timeout> stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException("stop() cannot be called from a timer task");
+        }
+        if (!workerState.compareAndSet(WORKER_STARTED, WORKER_SHUTDOWN)) {
+            workerState.set(WORKER_SHUTDOWN);
+            return List.of();
+        }
+        boolean interrupted = false;
+        while (workerThread.isAlive()) {
+            workerThread.interrupt();
+            try {
+                workerThread.join(100);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return List.copyOf(unprocessedTimeouts);
+    }
+
+    /**
+     * Returns the number of timeouts neither expired nor cancelled yet.
+     *
+     * @return the pending timeouts
+     */
+    public long getPendingTimeouts() {
+        return pendingCount.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(PENDING_METRIC, pendingCount, AtomicLong::get)
+                .description("Timeouts scheduled and neither expired nor cancelled yet")
+                .tag("name", name)
+                .register(registry);
+        FunctionCounter.builder(EXPIRED_METRIC, expired, LongAdder::sum)
+                .description("Timeouts whose task was handed to the executor")
+                .tag("name", name)
+                .register(registry);
+        FunctionCounter.builder(REJECTED_METRIC, rejected, LongAdder::sum)
+                .description("Expired timeouts whose task the executor refused")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    private void start() {
+        switch (workerState.get()) {
+            case WORKER_INIT -> {
+                if (workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+                    workerThread.start();
+                }
+            }
+            case WORKER_STARTED -> {
+            }
+            default -> throw new RejectedExecutionException("Timer " + name + " has been stopped");
+        }
+        while (startTime == 0) {
+            try {
+                startTimeInitialized.await();
+            } catch (InterruptedException e) {
+                // The worker initializes the start time right away, keep waiting
+            }
+        }
+    }
+
+    private void runWorker() {
+        long now = System.nanoTime();
+        // Zero marks the start time as uninitialized
+        startTime = now == 0 ? 1 : now;
+        startTimeInitialized.countDown();
+        do {
+            long deadline = waitForNextTick();
+            if (deadline > 0) {
+                processCancelledTimeouts();
+                transferPendingTimeouts();
+                wheel[(int) (tick & mask)].expireTimeouts(deadline);
+                tick++;
+            }
+        } while (workerState.get() == WORKER_STARTED);
+        for (Bucket bucket : wheel) {
+            bucket.clearTimeouts(unprocessedTimeouts);
+        }
+        WheelTimeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (!timeout.isCancelled()) {
+                unprocessedTimeouts.add(timeout);
+            }
+        }
+        processCancelledTimeouts();
+    }
+
+    /**
+     * Sleeps until the current tick is over.
+     *
+     * @return the time since the start, in nanoseconds, or a negative value if the timer was stopped
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long currentTime = System.nanoTime() - startTime;
+            long sleepMs = (deadline - currentTime + 999_999) / 1_000_000;
+            if (sleepMs <= 0) {
+                return currentTime == Long.MIN_VALUE ? -Long.MAX_VALUE : currentTime;
+            }
+            try {
+                Thread.sleep(sleepMs);
+            } catch (InterruptedException e) {
+                if (workerState.get() == WORKER_SHUTDOWN) {
+                    return Long.MIN_VALUE;
+                }
+            }
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            WheelTimeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.state != WheelTimeout.ST_INIT) {
+                // Cancelled before it reached the wheel, already uncounted by processCancelledTimeouts
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // A timeout already due goes into the current bucket
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].addTimeout(timeout);
+        }
+    }
+
+    private void processCancelledTimeouts() {
+        WheelTimeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+            pendingCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * A scheduled task that can be cancelled before it expires.
+     */
+    public interface Timeout {
+        /**
+         * Cancels the timeout so that its task never runs.
+         *
+         * @return true if the timeout was cancelled, false if it had already expired or been cancelled
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        boolean isExpired();
+    }
+
+    private final class WheelTimeout implements Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = ST_INIT;
+        private long remainingRounds;
+        private WheelTimeout next;
+        private WheelTimeout prev;
+        private Bucket bucket;
+
+        private WheelTimeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            // Unlinked by the worker on its next tick, buckets are only touched by the worker
+            cancelledTimeouts.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            expired.increment();
+            try {
+                taskExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                log.warn("Executor refused the task of an expired timeout of timer {}", name, e);
+            }
+        }
+    }
+
+    /**
+     * A doubly linked list of the timeouts hashed to one tick, only accessed by the worker thread.
+     */
+    private final class Bucket {
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        private void addTimeout(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * Expires the timeouts of this bucket due by the deadline, and brings the others one round closer.
+         */
+        private void expireTimeouts(long deadline) {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.state == WheelTimeout.ST_CANCELLED) {
+                    // Left for processCancelledTimeouts, which also uncounts it
+                    timeout = next;
+                    continue;
+                }
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    pendingCount.decrementAndGet();
+                    if (timeout.deadline <= deadline) {
+                        timeout.expire();
+                    } else {
+                        throw new IllegalStateException(String.format("timeout.deadline (%d) > deadline (%d)",
+                                timeout.deadline, deadline));
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(WheelTimeout timeout) {
+            WheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        private void clearTimeouts(List<Timeout> unprocessed) {
+            WheelTimeout timeout;
+            while ((timeout = head) != null) {
+                remove(timeout);
+                if (timeout.state == WheelTimeout.ST_INIT) {
+                    unprocessed.add(timeout);
+                }
+            }
+        }
+    }
+}
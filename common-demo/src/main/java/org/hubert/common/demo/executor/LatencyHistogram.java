@@ -0,0 +1,89 @@
+package org.hubert.common.demo.executor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, lock-free histogram of durations in nanoseconds, cheap enough to be updated for every task.
+ * <p>
+ * Each power of two is split into four buckets, so percentiles are reported within about 25% of the true
+ * value. The counts only grow: a reader computes a percentile over an interval by subtracting two
+ * {@link #snapshot() snapshots}, which keeps the writers free of any rotation logic.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/11 14:00
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int BUCKET_COUNT = Long.SIZE << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds, negative durations count as zero
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(0L, nanos)));
+    }
+
+    /**
+     * Returns a copy of the counts recorded so far.
+     *
+     * @return the count of every bucket
+     */
+    public long[] snapshot() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Computes a percentile of the durations recorded between two snapshots.
+     *
+     * @param from     the earlier snapshot
+     * @param to       the later snapshot
+     * @param quantile the quantile, between 0 and 1
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds, or 0 if nothing was recorded
+     */
+    public static long percentile(long[] from, long[] to, double quantile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += to[i] - from[i];
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += to[i] - from[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKET_COUNT - 1);
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < (1L << SUB_BUCKET_BITS)) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return (exponent << SUB_BUCKET_BITS) | subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        int exponent = bucket >>> SUB_BUCKET_BITS;
+        if (exponent < SUB_BUCKET_BITS) {
+            return bucket + 1L;
+        }
+        long subBucket = bucket & ((1 << SUB_BUCKET_BITS) - 1);
+        long upper = ((1L << SUB_BUCKET_BITS) + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
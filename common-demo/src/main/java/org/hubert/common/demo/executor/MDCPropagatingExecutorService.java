@@ -0,0 +1,56 @@
+package org.hubert.common.demo.executor;
+
+import org.hubert.common.demo.filter.CustomThreadPoolMDCFilter;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An executor service that runs every task with the MDC context of the thread that submitted it,
+ * like {@link CustomThreadPoolExecutor} does for the platform thread pools.
+ * <p>
+ * Used to wrap executors that cannot be subclassed, such as the virtual-thread-per-task executor.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/8 09:20
+ */
+public class MDCPropagatingExecutorService extends AbstractExecutorService {
+    private final ExecutorService delegate;
+
+    public MDCPropagatingExecutorService(ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        delegate.execute(CustomThreadPoolMDCFilter.wrap(task, CustomThreadPoolMDCFilter.capture()));
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
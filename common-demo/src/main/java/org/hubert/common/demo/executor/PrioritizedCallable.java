@@ -0,0 +1,47 @@
+package org.hubert.common.demo.executor;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * A callable carrying a priority and an optional deadline. The future of an expired callable is cancelled.
+ *
+ * @param <T> the result type
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/10 10:10
+ */
+public final class PrioritizedCallable<T> implements Callable<T>, PrioritizedTask {
+    private final Callable<T> task;
+    private final int priority;
+    private final long deadlineNanos;
+
+    private PrioritizedCallable(Callable<T> task, int priority, long deadlineNanos) {
+        this.task = task;
+        this.priority = priority;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static <T> PrioritizedCallable<T> of(Callable<T> task, int priority) {
+        return new PrioritizedCallable<>(task, priority, NO_DEADLINE);
+    }
+
+    public static <T> PrioritizedCallable<T> of(Callable<T> task, int priority, Duration timeout) {
+        return new PrioritizedCallable<>(task, priority, System.nanoTime() + timeout.toNanos());
+    }
+
+    @Override
+    public T call() throws Exception {
+        return task.call();
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+}
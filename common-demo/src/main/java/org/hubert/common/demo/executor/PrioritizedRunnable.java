@@ -0,0 +1,60 @@
+package org.hubert.common.demo.executor;
+
+import java.time.Duration;
+
+/**
+ * A runnable carrying a priority and an optional deadline.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/10 10:05
+ */
+public final class PrioritizedRunnable implements Runnable, PrioritizedTask {
+    private final Runnable task;
+    private final int priority;
+    private final long deadlineNanos;
+
+    private PrioritizedRunnable(Runnable task, int priority, long deadlineNanos) {
+        this.task = task;
+        this.priority = priority;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Gives a task a priority, without a deadline.
+     *
+     * @param task     the task
+     * @param priority the priority, tasks with a higher priority run first
+     * @return the prioritized task
+     */
+    public static PrioritizedRunnable of(Runnable task, int priority) {
+        return new PrioritizedRunnable(task, priority, NO_DEADLINE);
+    }
+
+    /**
+     * Gives a task a priority and a deadline, after which it is dropped instead of run.
+     *
+     * @param task     the task
+     * @param priority the priority, tasks with a higher priority run first
+     * @param timeout  how long from now the task is still worth running
+     * @return the prioritized task
+     */
+    public static PrioritizedRunnable of(Runnable task, int priority, Duration timeout) {
+        return new PrioritizedRunnable(task, priority, System.nanoTime() + timeout.toNanos());
+    }
+
+    @Override
+    public void run() {
+        task.run();
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+}
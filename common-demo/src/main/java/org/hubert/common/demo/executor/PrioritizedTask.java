@@ -0,0 +1,48 @@
+package org.hubert.common.demo.executor;
+
+/**
+ * A task with a priority and an optional deadline, honoured by executors whose queue is a
+ * {@link PriorityDeadlineBlockingQueue}. Other executors run such tasks in submission order.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/10 10:00
+ */
+public interface PrioritizedTask {
+    /**
+     * The priority of tasks that do not specify one.
+     */
+    int NORMAL_PRIORITY = 0;
+
+    /**
+     * The deadline of tasks that never expire.
+     */
+    long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * Returns the priority of the task, tasks with a higher priority run first.
+     *
+     * @return the priority
+     */
+    int getPriority();
+
+    /**
+     * Returns the {@link System#nanoTime()} after which running the task is pointless, or {@link #NO_DEADLINE}.
+     *
+     * @return the deadline
+     */
+    default long getDeadlineNanos() {
+        return NO_DEADLINE;
+    }
+
+    /**
+     * Checks whether the deadline of the task has passed.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return true if the task has a deadline and it has passed
+     */
+    default boolean isExpired(long nowNanos) {
+        long deadline = getDeadlineNanos();
+        return deadline != NO_DEADLINE && nowNanos - deadline > 0;
+    }
+}
@@ -0,0 +1,470 @@
+package org.hubert.common.demo.executor;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, resizable task queue that hands out the most valuable task first: the highest
+ * {@link PrioritizedTask#getPriority() priority}, then the earliest deadline, then the oldest task. Tasks that
+ * are not {@link PrioritizedTask}s have the {@link PrioritizedTask#NORMAL_PRIORITY normal priority} and no
+ * deadline, so a queue holding only such tasks behaves as a FIFO queue.
+ * <p>
+ * Tasks whose deadline has passed by the time they reach the head of the queue are shed instead of being
+ * handed out, and passed to the {@link #setExpiredTaskHandler expired task handler} outside the queue lock.
+ * When the queue is full, {@link #offerEvictingLowest} replaces the least valuable task with a more valuable
+ * one, which {@link EvictLowestPriorityPolicy} uses as the rejection policy of the pool.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/10 10:30
+ */
+public class PriorityDeadlineBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>, ResizableQueue {
+    private static final Comparator<Node> ORDER = Comparator.comparingInt((Node node) -> node.priority).reversed()
+            .thenComparing((a, b) -> compareDeadlines(a.deadlineNanos, b.deadlineNanos))
+            .thenComparingLong(node -> node.sequence);
+
+    private final TreeSet<Node> elements = new TreeSet<>(ORDER);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int capacity;
+    private long sequence;
+    private volatile Consumer<Runnable> expiredTaskHandler = task -> {
+    };
+
+    public PriorityDeadlineBlockingQueue(int capacity) {
+        checkCapacity(capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets the handler receiving the tasks shed because their deadline passed while they were queued.
+     *
+     * @param expiredTaskHandler the handler, called on the thread that took from the queue
+     */
+    public void setExpiredTaskHandler(Consumer<Runnable> expiredTaskHandler) {
+        checkNotNull(expiredTaskHandler);
+        this.expiredTaskHandler = expiredTaskHandler;
+    }
+
+    /**
+     * Inserts the task, evicting the least valuable queued task if the queue is full and that task is worth
+     * less than the new one.
+     *
+     * @param task the task to insert
+     * @return the task that did not make it into the queue, either the evicted one or {@code task} itself,
+     * or null if the queue had room
+     */
+    public Runnable offerEvictingLowest(Runnable task) {
+        checkNotNull(task);
+        Node node = new Node(task);
+        lock.lock();
+        try {
+            node.sequence = sequence++;
+            if (elements.size() < capacity) {
+                enqueue(node);
+                return null;
+            }
+            Node lowest = elements.last();
+            if (ORDER.compare(node, lowest) >= 0) {
+                return task;
+            }
+            elements.pollLast();
+            enqueue(node);
+            return lowest.task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        checkCapacity(capacity);
+        lock.lock();
+        try {
+            int previous = this.capacity;
+            this.capacity = capacity;
+            if (capacity > previous) {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        checkNotNull(task);
+        Node node = new Node(task);
+        lock.lock();
+        try {
+            if (elements.size() >= capacity) {
+                return false;
+            }
+            node.sequence = sequence++;
+            enqueue(node);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(task);
+        Node node = new Node(task);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (elements.size() >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            node.sequence = sequence++;
+            enqueue(node);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable task) throws InterruptedException {
+        checkNotNull(task);
+        Node node = new Node(task);
+        lock.lockInterruptibly();
+        try {
+            while (elements.size() >= capacity) {
+                notFull.await();
+            }
+            node.sequence = sequence++;
+            enqueue(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        List<Runnable> expired = new ArrayList<>(0);
+        lock.lock();
+        try {
+            return dequeueLive(expired);
+        } finally {
+            lock.unlock();
+            shed(expired);
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        List<Runnable> expired = new ArrayList<>(0);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            Runnable task;
+            while ((task = dequeueLive(expired)) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return task;
+        } finally {
+            lock.unlock();
+            shed(expired);
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        List<Runnable> expired = new ArrayList<>(0);
+        lock.lockInterruptibly();
+        try {
+            Runnable task;
+            while ((task = dequeueLive(expired)) == null) {
+                notEmpty.await();
+            }
+            return task;
+        } finally {
+            lock.unlock();
+            shed(expired);
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return elements.isEmpty() ? null : elements.first().task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return elements.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return Math.max(0, capacity - elements.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            Iterator<Node> it = elements.iterator();
+            while (it.hasNext()) {
+                if (o.equals(it.next().task)) {
+                    it.remove();
+                    notFull.signal();
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            for (Node node : elements) {
+                if (o.equals(node.task)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drains the queued tasks in priority order, including expired ones, so that nothing is lost when the
+     * pool shuts down.
+     */
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        checkNotNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int n = Math.min(maxElements, elements.size());
+            for (int i = 0; i < n; i++) {
+                c.add(elements.pollFirst().task);
+            }
+            if (n > 0) {
+                notFull.signalAll();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            elements.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    /**
+     * Returns a weakly consistent iterator over a snapshot of the queue, in priority order. Removing through
+     * the iterator removes the task from the queue if it is still there.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        Iterator<Runnable> delegate = snapshot().iterator();
+        return new Iterator<>() {
+            private Runnable last;
+
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                last = delegate.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                lock.lock();
+                try {
+                    Iterator<Node> it = elements.iterator();
+                    while (it.hasNext()) {
+                        if (it.next().task == last) {
+                            it.remove();
+                            notFull.signal();
+                            break;
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                last = null;
+            }
+        };
+    }
+
+    private List<Runnable> snapshot() {
+        lock.lock();
+        try {
+            List<Runnable> snapshot = new ArrayList<>(elements.size());
+            for (Node node : elements) {
+                snapshot.add(node.task);
+            }
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Node node) {
+        elements.add(node);
+        notEmpty.signal();
+    }
+
+    /**
+     * Removes and returns the most valuable task that has not expired, moving the expired ones in front of
+     * it to {@code expired}.
+     */
+    private Runnable dequeueLive(List<Runnable> expired) {
+        long now = 0L;
+        Node node;
+        while ((node = elements.pollFirst()) != null) {
+            notFull.signal();
+            if (node.deadlineNanos == PrioritizedTask.NO_DEADLINE) {
+                return node.task;
+            }
+            if (now == 0L) {
+                now = System.nanoTime();
+            }
+            if (now - node.deadlineNanos <= 0) {
+                return node.task;
+            }
+            expired.add(node.task);
+        }
+        return null;
+    }
+
+    private void shed(List<Runnable> expired) {
+        for (Runnable task : expired) {
+            expiredTaskHandler.accept(task);
+        }
+    }
+
+    private static int compareDeadlines(long a, long b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == PrioritizedTask.NO_DEADLINE) {
+            return 1;
+        }
+        if (b == PrioritizedTask.NO_DEADLINE) {
+            return -1;
+        }
+        return Long.compare(a - b, 0L);
+    }
+
+    private static void checkCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+    }
+
+    private static void checkNotNull(Object o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    private static final class Node {
+        private final Runnable task;
+        private final int priority;
+        private final long deadlineNanos;
+        private long sequence;
+
+        private Node(Runnable task) {
+            this.task = task;
+            if (task instanceof PrioritizedTask prioritizedTask) {
+                this.priority = prioritizedTask.getPriority();
+                this.deadlineNanos = prioritizedTask.getDeadlineNanos();
+            } else {
+                this.priority = PrioritizedTask.NORMAL_PRIORITY;
+                this.deadlineNanos = PrioritizedTask.NO_DEADLINE;
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package org.hubert.common.demo.executor;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded blocking queue whose capacity can be changed while it is in use, so that a thread pool's queue
+ * can be resized without recreating the pool.
+ * <p>
+ * Lowering the capacity below the current size drops nothing: producers are refused or wait until consumers
+ * have brought the size below the new capacity. The elements are held in a growable array guarded by a single
+ * lock, which is plenty for the hand-off rates of the application's thread pools.
+ *
+ * @param <E> the type of elements held in this queue
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/8 14:10
+ */
+public class ResizableArrayBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>, ResizableQueue {
+    private final ArrayDeque<E> elements = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int capacity;
+
+    public ResizableArrayBlockingQueue(int capacity) {
+        checkCapacity(capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Changes the capacity of the queue. Waiting producers are woken up if the capacity grows.
+     *
+     * @param capacity the new capacity, at least 1
+     */
+    @Override
+    public void setCapacity(int capacity) {
+        checkCapacity(capacity);
+        lock.lock();
+        try {
+            int previous = this.capacity;
+            this.capacity = capacity;
+            if (capacity > previous) {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        checkNotNull(e);
+        lock.lock();
+        try {
+            if (elements.size() >= capacity) {
+                return false;
+            }
+            enqueue(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(e);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (elements.size() >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        lock.lockInterruptibly();
+        try {
+            while (elements.size() >= capacity) {
+                notFull.await();
+            }
+            enqueue(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return elements.isEmpty() ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (elements.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (elements.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            return elements.peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return elements.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return Math.max(0, capacity - elements.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            boolean removed = elements.remove(o);
+            if (removed) {
+                notFull.signal();
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        lock.lock();
+        try {
+            return elements.contains(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        checkNotNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int n = Math.min(maxElements, elements.size());
+            for (int i = 0; i < n; i++) {
+                c.add(elements.pollFirst());
+            }
+            if (n > 0) {
+                notFull.signalAll();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            elements.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        lock.lock();
+        try {
+            return elements.toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        lock.lock();
+        try {
+            return elements.toArray(a);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a weakly consistent iterator over a snapshot of the queue. Removing through the iterator removes
+     * the element from the queue if it is still there.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot;
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(elements);
+        } finally {
+            lock.unlock();
+        }
+        Iterator<E> delegate = snapshot.iterator();
+        return new Iterator<>() {
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            @Override
+            public E next() {
+                last = delegate.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                lock.lock();
+                try {
+                    Iterator<E> it = elements.iterator();
+                    while (it.hasNext()) {
+                        if (it.next() == last) {
+                            it.remove();
+                            notFull.signal();
+                            break;
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                last = null;
+            }
+        };
+    }
+
+    private void enqueue(E e) {
+        elements.addLast(e);
+        notEmpty.signal();
+    }
+
+    private E dequeue() {
+        E e = elements.pollFirst();
+        if (elements.size() < capacity) {
+            notFull.signal();
+        }
+        return e;
+    }
+
+    private static void checkCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+    }
+
+    private static void checkNotNull(Object o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.hubert.common.demo.executor;
+
+/**
+ * A bounded queue whose capacity can be changed while it is in use.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/10 10:15
+ */
+public interface ResizableQueue {
+
+    int getCapacity();
+
+    /**
+     * Changes the capacity of the queue. Elements above a lowered capacity are kept.
+     *
+     * @param capacity the new capacity, at least 1
+     */
+    void setCapacity(int capacity);
+}
@@ -0,0 +1,140 @@
+package org.hubert.common.demo.executor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * An executor made of several single-threaded {@link CustomThreadPoolExecutor} stripes, each with its own queue,
+ * so concurrent submitters spread over several queue locks instead of contending on one.
+ * <p>
+ * Tasks without a key go to the less loaded of two randomly picked stripes, which keeps the stripes balanced
+ * without any shared counter. Tasks with a key always go to the same stripe and therefore run in submission
+ * order, which suits work that must stay ordered per message key or per user. Each stripe keeps the naming,
+ * MDC propagation and metrics of a {@link CustomThreadPoolExecutor}, named after the executor and its index.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/9 15:00
+ */
+public class StripedExecutor extends AbstractExecutorService implements MeterBinder {
+    private final String name;
+    private final CustomThreadPoolExecutor[] stripes;
+
+    /**
+     * @param name          the executor name, the stripes are named {@code name-<index>}
+     * @param stripeCount   the number of stripes, each running one thread
+     * @param stripeFactory creates the stripe of the given name
+     */
+    public StripedExecutor(String name, int stripeCount, Function<String, CustomThreadPoolExecutor> stripeFactory) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("stripeCount must be at least 1");
+        }
+        this.name = name;
+        this.stripes = new CustomThreadPoolExecutor[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = stripeFactory.apply(name + "-" + i);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        int stripeCount = stripes.length;
+        if (stripeCount == 1) {
+            stripes[0].execute(task);
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CustomThreadPoolExecutor first = stripes[random.nextInt(stripeCount)];
+        CustomThreadPoolExecutor second = stripes[random.nextInt(stripeCount)];
+        (second.getQueue().size() < first.getQueue().size() ? second : first).execute(task);
+    }
+
+    /**
+     * Runs the task on the stripe the key maps to, after every task previously submitted with an equal key.
+     * <p>
+     * The order only holds if no task of the key is lost, so the stripes must refuse tasks when full rather
+     * than discard queued ones; a refused task is reported to the caller, which can retry or fail it.
+     *
+     * @param key  the ordering key
+     * @param task the task to run
+     * @throws java.util.concurrent.RejectedExecutionException if the stripe of the key refuses the task
+     */
+    public void execute(Object key, Runnable task) {
+        int hash = key.hashCode();
+        stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)].execute(task);
+    }
+
+    @Override
+    public void shutdown() {
+        for (CustomThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = new ArrayList<>();
+        for (CustomThreadPoolExecutor stripe : stripes) {
+            pending.addAll(stripe.shutdownNow());
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (CustomThreadPoolExecutor stripe : stripes) {
+            if (!stripe.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (CustomThreadPoolExecutor stripe : stripes) {
+            if (!stripe.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (CustomThreadPoolExecutor stripe : stripes) {
+            if (!stripe.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Binds the metrics of every stripe.
+     *
+     * @param registry the registry to bind the meters to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (CustomThreadPoolExecutor stripe : stripes) {
+            stripe.bindTo(registry);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<CustomThreadPoolExecutor> getStripes() {
+        return List.of(stripes);
+    }
+}
@@ -0,0 +1,87 @@
+package org.hubert.common.demo.executor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queue-wait and run-time histograms shared by the application's executors. Recording into the timers is
+ * a no-op until they are bound to a registry, the queue waits are always kept in a {@link LatencyHistogram}
+ * so that saturation can be read without a registry.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/9 14:10
+ */
+final class TaskTimers {
+    /**
+     * Timer of the time a task waits in the queue before a worker picks it up, tagged by executor name.
+     */
+    static final String QUEUE_WAIT_METRIC = "executor.queue.wait";
+    /**
+     * Timer of the time a task runs, tagged by executor name.
+     */
+    static final String RUN_METRIC = "executor.run";
+
+    private final LatencyHistogram queueWaitHistogram = new LatencyHistogram();
+    private volatile Timer queueWait;
+    private volatile Timer runTime;
+
+    void bindTo(MeterRegistry registry, Tags tags) {
+        this.queueWait = Timer.builder(QUEUE_WAIT_METRIC)
+                .description("Time a task waits in the queue before it starts running")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofMinutes(1))
+                .register(registry);
+        this.runTime = Timer.builder(RUN_METRIC)
+                .description("Time a task spends running")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofMinutes(1))
+                .register(registry);
+    }
+
+    void recordQueueWait(long nanos) {
+        queueWaitHistogram.record(nanos);
+        Timer timer = queueWait;
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void recordRun(long nanos) {
+        Timer timer = runTime;
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    LatencyHistogram queueWaitHistogram() {
+        return queueWaitHistogram;
+    }
+
+    /**
+     * Wraps a task so that it records its own queue wait and run time, for executors without execution hooks.
+     *
+     * @param task the task to time
+     * @return the timed task
+     */
+    Runnable timed(Runnable task) {
+        long submittedAt = System.nanoTime();
+        return () -> {
+            long startedAt = System.nanoTime();
+            recordQueueWait(startedAt - submittedAt);
+            try {
+                task.run();
+            } finally {
+                recordRun(System.nanoTime() - startedAt);
+            }
+        };
+    }
+}
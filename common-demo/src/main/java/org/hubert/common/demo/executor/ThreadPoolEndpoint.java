@@ -0,0 +1,95 @@
+package org.hubert.common.demo.executor;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actuator endpoint listing the registered thread pools and resizing them at runtime.
+ * <ul>
+ *     <li>{@code GET /actuator/threadpools} lists every pool;</li>
+ *     <li>{@code POST /actuator/threadpools/{name}} resizes a pool, settings left out of the body are unchanged;</li>
+ *     <li>{@code POST /actuator/threadpools} re-applies the {@code thread-pool} settings from the environment.</li>
+ * </ul>
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/8 15:20
+ */
+@Component
+@Endpoint(id = "threadpools")
+@RequiredArgsConstructor
+public class ThreadPoolEndpoint {
+    private final ThreadPoolRegistry threadPoolRegistry;
+
+    @ReadOperation
+    public Map<String, PoolDescriptor> pools() {
+        Map<String, PoolDescriptor> pools = new TreeMap<>();
+        for (CustomThreadPoolExecutor executor : threadPoolRegistry.getAll()) {
+            pools.put(executor.getName(), PoolDescriptor.of(executor));
+        }
+        return pools;
+    }
+
+    @ReadOperation
+    public PoolDescriptor pool(@Selector String name) {
+        CustomThreadPoolExecutor executor = threadPoolRegistry.get(name);
+        return executor == null ? null : PoolDescriptor.of(executor);
+    }
+
+    @WriteOperation
+    public PoolDescriptor resize(@Selector String name, @Nullable Integer corePoolSize, @Nullable Integer maximumPoolSize,
+                                 @Nullable Long keepAliveSeconds, @Nullable Integer queueCapacity) {
+        try {
+            threadPoolRegistry.resize(name, corePoolSize, maximumPoolSize, keepAliveSeconds, queueCapacity);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+        return PoolDescriptor.of(threadPoolRegistry.get(name));
+    }
+
+    @WriteOperation
+    public List<String> refresh() {
+        try {
+            return threadPoolRegistry.refresh();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+
+    /**
+     * The sizing and current load of a thread pool.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PoolDescriptor {
+        private final int corePoolSize;
+        private final int maximumPoolSize;
+        private final long keepAliveSeconds;
+        private final int poolSize;
+        private final int activeCount;
+        private final int largestPoolSize;
+        private final int queueSize;
+        private final int queueRemainingCapacity;
+        private final long completedTaskCount;
+
+        static PoolDescriptor of(CustomThreadPoolExecutor executor) {
+            return new PoolDescriptor(executor.getCorePoolSize(), executor.getMaximumPoolSize(),
+                    executor.getKeepAliveTime(TimeUnit.SECONDS), executor.getPoolSize(), executor.getActiveCount(),
+                    executor.getLargestPoolSize(), executor.getQueue().size(),
+                    executor.getQueue().remainingCapacity(), executor.getCompletedTaskCount());
+        }
+    }
+}
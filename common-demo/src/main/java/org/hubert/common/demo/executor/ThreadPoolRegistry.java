@@ -0,0 +1,129 @@
+package org.hubert.common.demo.executor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.hubert.common.demo.properties.ThreadPoolProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the application's thread pools by name, binds their metrics and resizes them at runtime.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/8 14:50
+ */
+@Component
+@RequiredArgsConstructor
+public class ThreadPoolRegistry {
+    private static final Logger log = LoggerFactory.getLogger(ThreadPoolRegistry.class);
+
+    private final Map<String, CustomThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+
+    /**
+     * Registers a pool under its name and binds its metrics.
+     *
+     * @param executor the pool to register
+     */
+    public void register(CustomThreadPoolExecutor executor) {
+        if (executors.putIfAbsent(executor.getName(), executor) != null) {
+            throw new IllegalStateException("A thread pool named " + executor.getName() + " is already registered");
+        }
+        executor.bindTo(meterRegistry);
+    }
+
+    public CustomThreadPoolExecutor get(String name) {
+        return executors.get(name);
+    }
+
+    public Collection<CustomThreadPoolExecutor> getAll() {
+        return executors.values();
+    }
+
+    /**
+     * Resizes a registered pool. Settings passed as null are left unchanged.
+     *
+     * @param name             the pool name
+     * @param corePoolSize     the new core pool size
+     * @param maximumPoolSize  the new maximum pool size
+     * @param keepAliveSeconds the new keep-alive time of idle threads above the core size, in seconds
+     * @param queueCapacity    the new queue capacity
+     * @throws IllegalArgumentException if the pool is unknown or the settings are inconsistent
+     */
+    public synchronized void resize(String name, Integer corePoolSize, Integer maximumPoolSize,
+                                    Long keepAliveSeconds, Integer queueCapacity) {
+        CustomThreadPoolExecutor executor = executors.get(name);
+        if (executor == null) {
+            throw new IllegalArgumentException("Unknown thread pool: " + name);
+        }
+        int core = valueOrDefault(corePoolSize, executor.getCorePoolSize());
+        int max = valueOrDefault(maximumPoolSize, executor.getMaximumPoolSize());
+        if (core < 0 || max <= 0 || core > max) {
+            throw new IllegalArgumentException("Invalid pool size, core: " + core + ", max: " + max);
+        }
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        if (queueCapacity != null && !(queue instanceof ResizableQueue)) {
+            throw new IllegalArgumentException("The queue of thread pool " + name + " cannot be resized");
+        }
+        if (keepAliveSeconds != null && keepAliveSeconds <= 0 && executor.allowsCoreThreadTimeOut()) {
+            throw new IllegalArgumentException("Keep-alive time must be positive when core threads time out");
+        }
+        // The core size may never exceed the maximum size, so grow the maximum first and shrink it last
+        if (core > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(max);
+            executor.setCorePoolSize(core);
+        } else {
+            executor.setCorePoolSize(core);
+            executor.setMaximumPoolSize(max);
+        }
+        if (keepAliveSeconds != null) {
+            executor.setKeepAliveTime(keepAliveSeconds, TimeUnit.SECONDS);
+        }
+        if (queueCapacity != null) {
+            ((ResizableQueue) queue).setCapacity(queueCapacity);
+        }
+        log.info("Resized thread pool: {}, core: {}, max: {}, keepAliveSeconds: {}, queueCapacity: {}",
+                name, core, max, executor.getKeepAliveTime(TimeUnit.SECONDS),
+                queue instanceof ResizableQueue resizable ? resizable.getCapacity() : null);
+    }
+
+    /**
+     * Re-reads the {@code thread-pool} settings from the environment and applies them to the registered pools.
+     * Property sources updated at runtime, such as a reloaded config file, take effect this way without a restart.
+     *
+     * @return the names of the pools that were resized
+     */
+    public List<String> refresh() {
+        ThreadPoolProperties properties = Binder.get(environment)
+                .bind("thread-pool", ThreadPoolProperties.class)
+                .orElseGet(ThreadPoolProperties::new);
+        List<String> resized = new ArrayList<>();
+        properties.getPools().forEach((name, pool) -> {
+            if (executors.containsKey(name)) {
+                resize(name, pool.getCorePoolSize(), pool.getMaximumPoolSize(),
+                        pool.getKeepAliveSeconds(), pool.getQueueCapacity());
+                resized.add(name);
+            } else {
+                log.warn("Ignoring settings of unknown thread pool: {}", name);
+            }
+        });
+        return resized;
+    }
+
+    private static <T> T valueOrDefault(T value, T defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+}
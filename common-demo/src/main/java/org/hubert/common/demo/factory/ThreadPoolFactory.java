@@ -1,8 +1,20 @@
 package org.hubert.common.demo.factory;
 
+import org.hubert.common.demo.executor.BulkheadExecutor;
 import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.executor.EvictLowestPriorityPolicy;
+import org.hubert.common.demo.executor.ForkJoinExecutor;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.executor.MDCPropagatingExecutorService;
+import org.hubert.common.demo.executor.PriorityDeadlineBlockingQueue;
+import org.hubert.common.demo.executor.ResizableArrayBlockingQueue;
+import org.hubert.common.demo.executor.StripedExecutor;
 
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
@@ -11,17 +23,23 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * A factory for creating instances of {@link CustomThreadPoolExecutor}.
+ * A factory for the application's executors: {@link CustomThreadPoolExecutor} pools with bounded, priority or
+ * discarding queues, and the work-stealing, striped, bulkhead and virtual-thread executors and the wheel timer.
  *
  * @author hubertwong
  * @version 1.0
  * @since 2024/9/14 14:46
  */
 public class ThreadPoolFactory {
+    /**
+     * The queue capacity of pools created without an explicit one.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
     /**
      * Creates a new instance of {@link CustomThreadPoolExecutor} with the specified core and maximum pool sizes,
-     * keep-alive time, and thread name prefix. The created thread pool uses a fixed capacity queue and a
-     * 'discard oldest' rejection policy.
+     * keep-alive time, and thread name prefix. The created thread pool uses a resizable queue of
+     * {@link #DEFAULT_QUEUE_CAPACITY} and a 'discard oldest' rejection policy.
      *
      * @param corePoolSize     the number of core threads in the pool.
      * @param maximumPoolSize  the maximum number of threads in the pool.
@@ -33,13 +51,84 @@ public class ThreadPoolFactory {
                                                             int maximumPoolSize,
                                                             long keepAliveTime,
                                                             String threadNamePrefix) {
+        return createThreadPool(corePoolSize, maximumPoolSize, keepAliveTime, DEFAULT_QUEUE_CAPACITY, threadNamePrefix);
+    }
+
+    /**
+     * Creates a new instance of {@link CustomThreadPoolExecutor} with the specified core and maximum pool sizes,
+     * keep-alive time in seconds, queue capacity and thread name prefix. The created thread pool uses a
+     * {@link ResizableArrayBlockingQueue}, so both its sizes and its queue capacity can be changed at
+     * runtime, and a 'discard oldest' rejection policy.
+     *
+     * @param corePoolSize     the number of core threads in the pool.
+     * @param maximumPoolSize  the maximum number of threads in the pool.
+     * @param keepAliveTime    the time limit, in seconds, for which threads may remain idle before being terminated.
+     * @param queueCapacity    the capacity of the task queue.
+     * @param threadNamePrefix the prefix for naming the threads in the pool.
+     * @return a configured instance of {@link CustomThreadPoolExecutor}.
+     */
+    public static CustomThreadPoolExecutor createThreadPool(int corePoolSize,
+                                                            int maximumPoolSize,
+                                                            long keepAliveTime,
+                                                            int queueCapacity,
+                                                            String threadNamePrefix) {
         return createThreadPool(corePoolSize, maximumPoolSize, keepAliveTime,
                 threadNamePrefix,
                 TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>(10000),
+                new ResizableArrayBlockingQueue<>(queueCapacity),
                 new ThreadPoolExecutor.DiscardOldestPolicy());
     }
 
+    /**
+     * Creates a new instance of {@link CustomThreadPoolExecutor} that refuses new tasks with a
+     * {@link java.util.concurrent.RejectedExecutionException} once its queue is full, for callers that shed load
+     * themselves instead of dropping queued work. The created thread pool uses a
+     * {@link ResizableArrayBlockingQueue}, so its sizes and queue capacity can be changed at runtime.
+     *
+     * @param corePoolSize     the number of core threads in the pool.
+     * @param maximumPoolSize  the maximum number of threads in the pool.
+     * @param keepAliveTime    the time limit, in seconds, for which threads may remain idle before being terminated.
+     * @param queueCapacity    the capacity of the task queue.
+     * @param threadNamePrefix the prefix for naming the threads in the pool.
+     * @return a configured instance of {@link CustomThreadPoolExecutor}.
+     */
+    public static CustomThreadPoolExecutor createBoundedThreadPool(int corePoolSize,
+                                                                   int maximumPoolSize,
+                                                                   long keepAliveTime,
+                                                                   int queueCapacity,
+                                                                   String threadNamePrefix) {
+        return createThreadPool(corePoolSize, maximumPoolSize, keepAliveTime,
+                threadNamePrefix,
+                TimeUnit.SECONDS,
+                new ResizableArrayBlockingQueue<>(queueCapacity),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Creates a new instance of {@link CustomThreadPoolExecutor} that runs the most valuable task first instead
+     * of the oldest one. The created thread pool uses a {@link PriorityDeadlineBlockingQueue}, which orders
+     * {@link org.hubert.common.demo.executor.PrioritizedTask}s by priority and deadline and sheds the ones whose
+     * deadline passed while they were queued, and an {@link EvictLowestPriorityPolicy} that discards the least
+     * valuable task when the pool is saturated. Its sizes and queue capacity can be changed at runtime.
+     *
+     * @param corePoolSize     the number of core threads in the pool.
+     * @param maximumPoolSize  the maximum number of threads in the pool.
+     * @param keepAliveTime    the time limit, in seconds, for which threads may remain idle before being terminated.
+     * @param queueCapacity    the capacity of the task queue.
+     * @param threadNamePrefix the prefix for naming the threads in the pool.
+     * @return a configured instance of {@link CustomThreadPoolExecutor}.
+     */
+    public static CustomThreadPoolExecutor createPriorityThreadPool(int corePoolSize,
+                                                                    int maximumPoolSize,
+                                                                    long keepAliveTime,
+                                                                    int queueCapacity,
+                                                                    String threadNamePrefix) {
+        return createThreadPool(corePoolSize, maximumPoolSize, keepAliveTime,
+                threadNamePrefix,
+                TimeUnit.SECONDS,
+                new PriorityDeadlineBlockingQueue(queueCapacity),
+                new EvictLowestPriorityPolicy());
+    }
 
     /**
      * Creates a new instance of {@link CustomThreadPoolExecutor} with the specified configurations.
@@ -61,10 +150,125 @@ public class ThreadPoolFactory {
                                                             BlockingQueue<Runnable> workQueue,
                                                             RejectedExecutionHandler handler) {
         ThreadFactory namedThreadFactory = new NamedThreadFactory(threadNamePrefix);
-        return new CustomThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTime, timeUnit,
+        return new CustomThreadPoolExecutor(threadNamePrefix, corePoolSize, maximumPoolSize, keepAliveTime, timeUnit,
                 workQueue, namedThreadFactory, handler);
     }
 
+    /**
+     * Creates a work-stealing executor backed by a {@link java.util.concurrent.ForkJoinPool} in async mode,
+     * with the naming, MDC propagation and metrics of {@link CustomThreadPoolExecutor}. Suited to many
+     * concurrent submitters of short tasks; its queues are unbounded.
+     *
+     * @param parallelism      the number of worker threads.
+     * @param threadNamePrefix the prefix for naming the threads in the pool.
+     * @return a configured instance of {@link ForkJoinExecutor}.
+     */
+    public static ForkJoinExecutor createForkJoinExecutor(int parallelism, String threadNamePrefix) {
+        return new ForkJoinExecutor(threadNamePrefix, parallelism);
+    }
+
+    /**
+     * Creates an executor made of single-threaded {@link CustomThreadPoolExecutor} stripes, each with its own
+     * bounded queue, so concurrent submitters do not contend on a single queue lock. A full stripe refuses new
+     * tasks with a {@link java.util.concurrent.RejectedExecutionException} rather than discarding queued ones,
+     * which would break the order of keyed tasks.
+     *
+     * @param stripeCount         the number of stripes, each running one thread.
+     * @param stripeQueueCapacity the queue capacity of each stripe.
+     * @param threadNamePrefix    the prefix for naming the stripes and their threads.
+     * @return a configured instance of {@link StripedExecutor}.
+     */
+    public static StripedExecutor createStripedExecutor(int stripeCount, int stripeQueueCapacity, String threadNamePrefix) {
+        return new StripedExecutor(threadNamePrefix, stripeCount, stripeName -> createThreadPool(1, 1, 0L,
+                stripeName,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(stripeQueueCapacity),
+                new ThreadPoolExecutor.AbortPolicy()));
+    }
+
+    /**
+     * Creates a bulkhead giving every key, such as an app id, its own concurrency quota on a shared executor, so
+     * a burst of one key cannot occupy the whole executor. Quotas are enforced with lock-free counters.
+     *
+     * @param name                the bulkhead name, used to tag its metrics.
+     * @param sharedExecutor      the executor running the tasks of all keys.
+     * @param maxConcurrentPerKey the number of tasks of a key that may run at once.
+     * @param limits              quotas of specific keys, overriding {@code maxConcurrentPerKey}.
+     * @param overflowPolicy      what happens to a task whose key has used up its quota.
+     * @param maxQueuedPerKey     the number of tasks of a key that may wait, used by {@link BulkheadExecutor.OverflowPolicy#QUEUE}.
+     * @param maxKeys             the number of keys not in {@code limits} that get their own quota, the others share one.
+     * @return a configured instance of {@link BulkheadExecutor}.
+     */
+    public static BulkheadExecutor createBulkhead(String name,
+                                                  Executor sharedExecutor,
+                                                  int maxConcurrentPerKey,
+                                                  Map<String, Integer> limits,
+                                                  BulkheadExecutor.OverflowPolicy overflowPolicy,
+                                                  int maxQueuedPerKey,
+                                                  int maxKeys) {
+        return new BulkheadExecutor(name, sharedExecutor, maxConcurrentPerKey, limits, overflowPolicy, maxQueuedPerKey,
+                maxKeys);
+    }
+
+    /**
+     * Creates a hashed wheel timer for large numbers of approximate timeouts, with O(1) scheduling and
+     * cancellation. The timer runs a single worker thread and hands the tasks of expired timeouts to the given
+     * executor.
+     *
+     * @param name          the timer name, used to name its worker thread and tag its metrics.
+     * @param tickDuration  the duration of a tick in milliseconds, which is the precision of the timer.
+     * @param ticksPerWheel the number of buckets of the wheel, rounded up to a power of two.
+     * @param taskExecutor  the executor running the tasks of expired timeouts.
+     * @return a configured instance of {@link HashedWheelTimer}.
+     */
+    public static HashedWheelTimer createWheelTimer(String name,
+                                                    long tickDuration,
+                                                    int ticksPerWheel,
+                                                    Executor taskExecutor) {
+        return new HashedWheelTimer(name, tickDuration, TimeUnit.MILLISECONDS, ticksPerWheel, taskExecutor);
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for every task, propagating the MDC context of the
+     * submitting thread. The number of concurrent tasks is not bounded, callers are expected to limit it.
+     * <p>
+     * Virtual threads need Java 21 or newer. The JDK API is looked up reflectively so the project still builds
+     * and runs on Java 17, use {@link #isVirtualThreadSupported()} to check before calling this method.
+     *
+     * @param threadNamePrefix the prefix for the names of the virtual threads
+     * @return an executor running each task on its own virtual thread
+     * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+     */
+    public static ExecutorService createVirtualThreadExecutor(String threadNamePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, threadNamePrefix + "-virtual-", 1L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            ExecutorService executorService = (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+            return new MDCPropagatingExecutorService(executorService);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer", e);
+        }
+    }
+
+    /**
+     * Checks whether the running JVM supports virtual threads.
+     *
+     * @return true if {@link #createVirtualThreadExecutor(String)} can be used, false otherwise
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
     /**
      * NamedThreadFactory class to create named threads.
      */
@@ -1,44 +1,83 @@
 package org.hubert.common.demo.filter;
 
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
 import org.slf4j.MDC;
+import org.slf4j.spi.MDCAdapter;
 
 import java.util.Map;
 import java.util.concurrent.Callable;
 
 /**
+ * Propagates the MDC context of the submitting thread to the thread running a task.
+ * <p>
+ * {@link #capture()} takes an immutable snapshot of the current context by reference: with Logback the adapter
+ * already keeps a read-only copy of the context that it only rebuilds after the context changes, so capturing
+ * the same context for many tasks allocates nothing. The wrapped task only installs the snapshot if it differs
+ * from the context of the running thread, and afterwards puts back whatever context the thread had before,
+ * which also keeps a caller-runs rejection from wiping the caller's own context. Empty contexts are captured
+ * as {@code null}, so tasks submitted without a context cost two thread-local reads.
+ *
  * @author hubertwong
  * @version 1.0
  * @since 2024/9/26 15:29
  */
 public class CustomThreadPoolMDCFilter {
 
+    /**
+     * Captures the MDC context of the current thread.
+     *
+     * @return an immutable snapshot of the context, or null if the context is empty
+     */
+    public static Map<String, String> capture() {
+        MDCAdapter adapter = MDC.getMDCAdapter();
+        Map<String, String> context = adapter instanceof LogbackMDCAdapter logbackAdapter
+                ? logbackAdapter.getPropertyMap()
+                : MDC.getCopyOfContextMap();
+        return context == null || context.isEmpty() ? null : context;
+    }
+
     public static <T> Callable<T> wrap(final Callable<T> callable, final Map<String, String> context) {
         return () -> {
-            if (context == null) {
-                MDC.clear();
-            } else {
-                MDC.setContextMap(context);
+            Map<String, String> previous = capture();
+            boolean switched = previous != context;
+            if (switched) {
+                restore(context);
             }
             try {
                 return callable.call();
             } finally {
-                MDC.clear();
+                restoreAfterRun(previous, switched);
             }
         };
     }
 
     public static Runnable wrap(final Runnable runnable, final Map<String, String> context) {
         return () -> {
-            if (context == null) {
-                MDC.clear();
-            } else {
-                MDC.setContextMap(context);
+            Map<String, String> previous = capture();
+            boolean switched = previous != context;
+            if (switched) {
+                restore(context);
             }
             try {
                 runnable.run();
             } finally {
-                MDC.clear();
+                restoreAfterRun(previous, switched);
             }
         };
     }
+
+    private static void restoreAfterRun(Map<String, String> previous, boolean switched) {
+        // Without a switch the snapshot is still cached, so checking whether the task changed the context is free
+        if (switched || capture() != previous) {
+            restore(previous);
+        }
+    }
+
+    private static void restore(Map<String, String> context) {
+        if (context == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
 }
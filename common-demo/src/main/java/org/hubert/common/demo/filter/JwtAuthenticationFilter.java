@@ -1,5 +1,6 @@
 package org.hubert.common.demo.filter;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,6 +8,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hubert.common.demo.security.JwtTokenProvider;
+import org.hubert.common.demo.security.VerifiedTokenCache;
 import org.hubert.common.demo.service.JwtTokenService;
 import org.hubert.common.demo.service.impl.UserDetailsServiceImpl;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -25,9 +27,9 @@ import java.io.IOException;
  * The filter performs the following tasks:
  * <ul>
  * <li>Parses the JWT token from the "Authorization" header.
- * <li>Validates the parsed JWT token.
- * <li>Extracts the username from the validated token.
+ * <li>Validates the parsed JWT token and extracts the username from it, verifying the signature once.
  * <li>Loads the user details using the extracted username.
+ * <li>Caches the user by token, so later requests with the same token skip the steps above.
  * <li>Sets the authentication in the security context if the token is valid and the user is authenticated.
  * </ul>
  * <p>
@@ -35,7 +37,8 @@ import java.io.IOException;
  * <ul>
  * <li>JwtTokenProvider: Provides methods to work with JWT tokens (generate, validate, extract information).
  * <li>UserDetailsServiceImpl: Loads user-specific data by username.
- * <li>JwtTokenService: Manages current JWT tokens in a Redis cache.
+ * <li>JwtTokenService: Manages the current token version of each user in Redis.
+ * <li>VerifiedTokenCache: Holds the tokens verified before, until they expire or are rotated.
  * </ul>
  *
  * @author hubertwong
@@ -65,6 +68,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
      * The operations include generating, validating, and parsing JWT tokens.
      */
     private final JwtTokenService jwtTokenService;
+    /**
+     * Holds the tokens verified before, so repeated requests with the same token skip the verification, the
+     * Redis lookup and the database lookup until the token expires or is rotated.
+     */
+    private final VerifiedTokenCache verifiedTokenCache;
 
     /**
      * Filters incoming requests and sets up the security context if a valid JWT is found.
@@ -81,16 +89,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (!StringUtils.hasText(jwt) || !tokenProvider.validateJwtToken(jwt)) {
+            if (!StringUtils.hasText(jwt)) {
                 filterChain.doFilter(request, response);
                 return;
             }
-            String username = tokenProvider.getUsernameFromToken(jwt);
-            if (!jwt.equals(jwtTokenService.getCurrentJwt(username))) {
+            UserDetails userDetails = verifiedTokenCache.get(jwt);
+            if (userDetails == null) {
+                userDetails = verify(jwt);
+            }
+            if (userDetails == null) {
                 filterChain.doFilter(request, response);
                 return;
             }
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
             UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                     userDetails,
                     null,
@@ -104,6 +114,29 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Verifies a token that is not cached: its signature and expiration, that its version is the current one of
+     * its user, and loads the user, caching the result until the token expires.
+     *
+     * @param jwt the JWT token
+     * @return the user the token authenticates, or null if the token is invalid or no longer current
+     */
+    private UserDetails verify(String jwt) {
+        Claims claims = tokenProvider.parseAndValidate(jwt);
+        if (claims == null) {
+            return null;
+        }
+        String username = claims.getSubject();
+        Long tokenVersion = JwtTokenProvider.getVersion(claims);
+        long cacheVersion = verifiedTokenCache.version();
+        if (tokenVersion == null || !jwtTokenService.isCurrent(username, tokenVersion)) {
+            return null;
+        }
+        UserDetails userDetails = userDetailsService.loadUserForToken(username);
+        verifiedTokenCache.put(jwt, claims.getExpiration(), userDetails, cacheVersion);
+        return userDetails;
+    }
+
     /**
      * Extracts the JWT token from the Authorization header of an HTTP request.
      *
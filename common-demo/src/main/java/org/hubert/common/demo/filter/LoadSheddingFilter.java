@@ -0,0 +1,66 @@
+package org.hubert.common.demo.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hubert.common.demo.enums.ResponseEnum;
+import org.hubert.common.demo.limiter.SaturationMonitor;
+import org.hubert.common.demo.result.Result;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Refuses requests to the configured paths with a 503 and a Retry-After header while the executor serving
+ * them is saturated, so that clients back off instead of queueing work the executor would refuse.
+ * <p>
+ * The filter runs ahead of the security filter chain, so refused requests cost neither token validation nor
+ * any other work.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/11 15:00
+ */
+public class LoadSheddingFilter extends OncePerRequestFilter {
+    private final SaturationMonitor monitor;
+    private final List<String> paths;
+    private final ObjectMapper objectMapper;
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    public LoadSheddingFilter(SaturationMonitor monitor, List<String> paths, ObjectMapper objectMapper) {
+        this.monitor = monitor;
+        this.paths = List.copyOf(paths);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        for (String pattern : paths) {
+            if (pathMatcher.match(pattern, path)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!monitor.tryShed()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(monitor.retryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Result.error(ResponseEnum.SERVICE_UNAVAILABLE));
+    }
+}
@@ -0,0 +1,43 @@
+package org.hubert.common.demo.lifecycle;
+
+/**
+ * A component holding queued work that must not be lost when the application shuts down, drained by the
+ * {@link GracefulShutdownCoordinator}.
+ * <p>
+ * The coordinator first calls {@link #startDrain()} on every drainable, then waits for all of them against a
+ * single deadline, and finally asks each one to {@link #spoolLeftovers() spool} whatever did not finish in time.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/11 10:00
+ */
+public interface Drainable {
+
+    /**
+     * Returns the name used in the shutdown logs.
+     *
+     * @return the name of the component
+     */
+    String getDrainName();
+
+    /**
+     * Stops taking in new work and lets the queued work run to completion. Must not block.
+     */
+    void startDrain();
+
+    /**
+     * Waits until the queued work has completed or the deadline has passed.
+     *
+     * @param deadlineNanos the {@link System#nanoTime()} after which to stop waiting
+     * @return true if all work completed, false if some is left
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitDrained(long deadlineNanos) throws InterruptedException;
+
+    /**
+     * Abandons the work that did not complete, persisting what can be persisted so that it can be replayed.
+     *
+     * @return the number of work items persisted
+     */
+    int spoolLeftovers();
+}
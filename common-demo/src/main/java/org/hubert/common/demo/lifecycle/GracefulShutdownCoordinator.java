@@ -0,0 +1,93 @@
+package org.hubert.common.demo.lifecycle;
+
+import org.hubert.common.demo.properties.GracefulShutdownProperties;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the application's producers and consumers when the context closes, before any bean is destroyed.
+ * <p>
+ * The coordinator runs in a late lifecycle phase, after the web server has stopped taking requests, and
+ * drains every {@link Drainable} against one shared deadline, so a shutdown stalls for at most the configured
+ * drain timeout however many components there are. Work that did not finish in time is spooled to the dead
+ * letter store, which is flushed before the RocketMQ clients are shut down with their beans, so that it can be
+ * replayed once the application is back.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/11 10:20
+ */
+@Component
+public class GracefulShutdownCoordinator implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(GracefulShutdownCoordinator.class);
+
+    /**
+     * Stops after the web server, whose graceful shutdown runs in phases just below the default phase.
+     */
+    private static final int PHASE = 0;
+
+    private final List<Drainable> drainables;
+    private final DeadLetterStore deadLetterStore;
+    private final GracefulShutdownProperties properties;
+    private volatile boolean running;
+
+    public GracefulShutdownCoordinator(List<Drainable> drainables, DeadLetterStore deadLetterStore,
+                                       GracefulShutdownProperties properties) {
+        this.drainables = drainables;
+        this.deadLetterStore = deadLetterStore;
+        this.properties = properties;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + TimeUnit.MILLISECONDS.toNanos(properties.getDrainTimeoutMs());
+        log.info("Draining {} components, timeout: {}ms", drainables.size(), properties.getDrainTimeoutMs());
+        for (Drainable drainable : drainables) {
+            try {
+                drainable.startDrain();
+            } catch (Exception e) {
+                log.error("Failed to start draining {}", drainable.getDrainName(), e);
+            }
+        }
+        for (Drainable drainable : drainables) {
+            boolean drained = false;
+            try {
+                drained = drainable.awaitDrained(deadline);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!drained) {
+                int spooled = drainable.spoolLeftovers();
+                log.warn("{} did not drain in time, spooled {} leftovers", drainable.getDrainName(), spooled);
+            }
+        }
+        deadLetterStore.flush();
+        log.info("Drained in {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
@@ -0,0 +1,28 @@
+package org.hubert.common.demo.limiter;
+
+/**
+ * An algorithm that decides how many operations may run concurrently from the samples of completed operations.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/7 09:40
+ */
+public interface ConcurrencyLimit {
+
+    /**
+     * Returns the current concurrency limit.
+     *
+     * @return the current limit, at least 1
+     */
+    int getLimit();
+
+    /**
+     * Records a completed operation. Implementations must be safe to call from many threads.
+     *
+     * @param rttNanos the time the operation took, in nanoseconds
+     * @param inFlight the number of operations in flight when the operation started, including itself
+     * @param dropped  whether the operation timed out or was rejected, which may indicate overload; ordinary
+     *                 failures of the operation itself are not drops
+     */
+    void onSample(long rttNanos, int inFlight, boolean dropped);
+}
@@ -0,0 +1,152 @@
+package org.hubert.common.demo.limiter;
+
+import org.hubert.common.demo.properties.ConcurrencyLimitProperties;
+
+import java.io.Serial;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Bounds the number of concurrently running operations to a limit that a {@link ConcurrencyLimit} adjusts
+ * from the latency and drops of completed operations.
+ * <p>
+ * The permits live in a semaphore that is grown or shrunk whenever the limit changes. Shrinking does not
+ * interrupt running operations: the semaphore goes negative and new operations wait until enough of them
+ * have completed.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/7 10:20
+ */
+public class ConcurrencyLimiter {
+    private final ConcurrencyLimit limit;
+    private final ResizableSemaphore semaphore;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<IntConsumer> limitListeners = new CopyOnWriteArrayList<>();
+    private volatile int permits;
+
+    public ConcurrencyLimiter(ConcurrencyLimit limit) {
+        this.limit = limit;
+        this.permits = limit.getLimit();
+        this.semaphore = new ResizableSemaphore(permits);
+    }
+
+    /**
+     * Creates a limiter with the algorithm selected by the given properties.
+     *
+     * @param properties the concurrency limit properties
+     * @return a new limiter
+     */
+    public static ConcurrencyLimiter create(ConcurrencyLimitProperties properties) {
+        ConcurrencyLimit limit = switch (properties.getMode()) {
+            case FIXED -> new FixedConcurrencyLimit(properties.getInitialLimit());
+            case GRADIENT -> new GradientConcurrencyLimit(properties);
+        };
+        return new ConcurrencyLimiter(limit);
+    }
+
+    /**
+     * Waits until a permit is available and takes it.
+     *
+     * @return the number of operations in flight once the permit is taken, including this one, to be passed
+     * back to {@link #release(long, int, boolean)}
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public int acquire() throws InterruptedException {
+        semaphore.acquire();
+        return inFlight.incrementAndGet();
+    }
+
+    /**
+     * Takes a permit if one is available right now.
+     *
+     * @return the number of operations in flight once the permit is taken, including this one, or 0 if the
+     * limit has been reached
+     */
+    public int tryAcquire() {
+        if (!semaphore.tryAcquire()) {
+            return 0;
+        }
+        return inFlight.incrementAndGet();
+    }
+
+    /**
+     * Returns the permit of a completed operation and feeds its latency to the limit algorithm.
+     *
+     * @param rttNanos the time the operation took, in nanoseconds
+     * @param inFlight the number of operations in flight when the operation started, as returned when its permit
+     *                 was taken
+     * @param dropped  whether the operation timed out or was rejected, which may indicate overload
+     */
+    public void release(long rttNanos, int inFlight, boolean dropped) {
+        this.inFlight.decrementAndGet();
+        semaphore.release();
+        limit.onSample(rttNanos, inFlight, dropped);
+        int newLimit = limit.getLimit();
+        if (newLimit != permits) {
+            resize();
+        }
+    }
+
+    /**
+     * Returns the permit of an operation that never ran, without recording a sample.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+        semaphore.release();
+    }
+
+    /**
+     * Registers a listener that is called with the new limit every time it changes.
+     *
+     * @param listener the listener
+     */
+    public void addLimitListener(IntConsumer listener) {
+        limitListeners.add(listener);
+    }
+
+    public int getLimit() {
+        return permits;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void resize() {
+        int newLimit = limit.getLimit();
+        int delta = newLimit - permits;
+        if (delta == 0) {
+            return;
+        }
+        if (delta > 0) {
+            semaphore.release(delta);
+        } else {
+            semaphore.reducePermits(-delta);
+        }
+        permits = newLimit;
+        for (IntConsumer listener : limitListeners) {
+            listener.accept(newLimit);
+        }
+    }
+
+    /**
+     * A semaphore whose number of permits can be reduced without waiting for them to be released.
+     */
+    private static class ResizableSemaphore extends Semaphore {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
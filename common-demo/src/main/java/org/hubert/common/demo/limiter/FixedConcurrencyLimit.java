@@ -0,0 +1,28 @@
+package org.hubert.common.demo.limiter;
+
+/**
+ * A concurrency limit that never changes.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/7 09:45
+ */
+public class FixedConcurrencyLimit implements ConcurrencyLimit {
+    private final int limit;
+
+    public FixedConcurrencyLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        this.limit = limit;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+    }
+}
@@ -0,0 +1,104 @@
+package org.hubert.common.demo.limiter;
+
+import org.hubert.common.demo.properties.ConcurrencyLimitProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A concurrency limit that adapts to the downstream services by comparing recent processing latency against
+ * its long-term average, after the gradient algorithm of Netflix concurrency-limits.
+ * <p>
+ * Samples are aggregated into windows. At the end of each window:
+ * <ul>
+ *     <li>if any operation in the window failed, the limit is multiplied by the backoff ratio;</li>
+ *     <li>if fewer than half of the permits were used, the limit is left alone, since the latency says nothing
+ *     about the capacity that was not used;</li>
+ *     <li>otherwise the limit is scaled by {@code longRtt / shortRtt}, bounded to [0.5, 1], plus a headroom of
+ *     {@code sqrt(limit)} so it keeps probing for more capacity while latency is stable.</li>
+ * </ul>
+ * The result is smoothed and clamped to the configured bounds.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/7 09:50
+ */
+public class GradientConcurrencyLimit implements ConcurrencyLimit {
+    /**
+     * The number of windows the long-term latency average spans.
+     */
+    private static final int LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int windowSize;
+    private final long windowNanos;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final double backoffRatio;
+
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longRttNanos;
+
+    private long windowStartedAt;
+    private int windowSamples;
+    private long windowRttSumNanos;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+
+    public GradientConcurrencyLimit(ConcurrencyLimitProperties properties) {
+        this.minLimit = Math.max(1, properties.getMinLimit());
+        this.maxLimit = Math.max(minLimit, properties.getMaxLimit());
+        this.windowSize = Math.max(1, properties.getWindowSize());
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(properties.getWindowMs());
+        this.rttTolerance = Math.max(1d, properties.getRttTolerance());
+        this.smoothing = Math.max(0d, Math.min(1d, properties.getSmoothing()));
+        this.backoffRatio = Math.max(0.5d, Math.min(1d, properties.getBackoffRatio()));
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, properties.getInitialLimit()));
+        this.limit = (int) estimatedLimit;
+        this.windowStartedAt = System.nanoTime();
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public synchronized void onSample(long rttNanos, int inFlight, boolean dropped) {
+        windowSamples++;
+        windowRttSumNanos += rttNanos;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        windowDropped |= dropped;
+        long now = System.nanoTime();
+        if (windowSamples < windowSize && now - windowStartedAt < windowNanos) {
+            return;
+        }
+        double shortRttNanos = Math.max(1d, (double) windowRttSumNanos / windowSamples);
+        longRttNanos = longRttNanos == 0d ? shortRttNanos
+                : longRttNanos + (shortRttNanos - longRttNanos) / LONG_WINDOW;
+        if (longRttNanos / shortRttNanos > 2d) {
+            // Latency dropped sharply, let the long-term average catch up so the limit can grow again
+            longRttNanos *= 0.95d;
+        }
+
+        double newLimit;
+        if (windowDropped) {
+            newLimit = estimatedLimit * backoffRatio;
+        } else if (windowMaxInFlight < estimatedLimit / 2) {
+            newLimit = estimatedLimit;
+        } else {
+            double gradient = Math.max(0.5d, Math.min(1d, rttTolerance * longRttNanos / shortRttNanos));
+            newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+
+        windowStartedAt = now;
+        windowSamples = 0;
+        windowRttSumNanos = 0;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+}
@@ -0,0 +1,170 @@
+package org.hubert.common.demo.limiter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.executor.LatencyHistogram;
+import org.hubert.common.demo.properties.LoadSheddingProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches the saturation of a thread pool and decides whether work headed for it should be refused.
+ * <p>
+ * A background thread samples the queue fill ratio and the p99 of the queue waits recorded since the previous
+ * sample, and switches shedding on and off with hysteresis: shedding starts as soon as either signal reaches
+ * its upper threshold, and stops only once both are below their lower thresholds and shedding has lasted the
+ * minimum duration. Callers only read a volatile flag, so consulting the monitor costs nothing per request.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/11 14:40
+ */
+public class SaturationMonitor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(SaturationMonitor.class);
+
+    /**
+     * Gauge of whether work is being shed, 1 while shedding and 0 otherwise, tagged by pool name.
+     */
+    public static final String SHEDDING_METRIC = "executor.saturation.shedding";
+    /**
+     * Gauge of the queue fill ratio at the last sample, tagged by pool name.
+     */
+    public static final String QUEUE_FILL_METRIC = "executor.saturation.queue.fill";
+    /**
+     * Gauge of the p99 queue wait between the last two samples, tagged by pool name.
+     */
+    public static final String QUEUE_WAIT_P99_METRIC = "executor.saturation.queue.wait.p99";
+    /**
+     * Counter of the work refused while shedding, tagged by pool name.
+     */
+    public static final String SHED_METRIC = "executor.saturation.shed";
+
+    private final CustomThreadPoolExecutor executor;
+    private final LoadSheddingProperties properties;
+    private final ScheduledExecutorService sampler;
+    private final LongAdder shed = new LongAdder();
+    private long[] previousSnapshot;
+    private long shedStartedAt;
+    private volatile boolean shedding;
+    private volatile double queueFillRatio;
+    private volatile long queueWaitP99Nanos;
+
+    public SaturationMonitor(CustomThreadPoolExecutor executor, LoadSheddingProperties properties) {
+        this.executor = executor;
+        this.properties = properties;
+        this.previousSnapshot = executor.getQueueWaitHistogram().snapshot();
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, executor.getName() + "-saturation-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        this.sampler.scheduleWithFixedDelay(this::sample, properties.getSampleIntervalMs(),
+                properties.getSampleIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers the shedding state, the sampled signals and the count of refused work, tagged with the pool name.
+     *
+     * @param registry the registry to bind the meters to
+     */
+    public void bindTo(MeterRegistry registry) {
+        String name = executor.getName();
+        Gauge.builder(SHEDDING_METRIC, this, monitor -> monitor.shedding ? 1 : 0)
+                .description("Whether work for the pool is being refused")
+                .tag("name", name)
+                .register(registry);
+        Gauge.builder(QUEUE_FILL_METRIC, this, monitor -> monitor.queueFillRatio)
+                .description("The share of the pool's queue capacity in use")
+                .tag("name", name)
+                .register(registry);
+        Gauge.builder(QUEUE_WAIT_P99_METRIC, this, monitor -> monitor.queueWaitP99Nanos / 1_000_000_000d)
+                .description("The p99 queue wait over the last sampling interval")
+                .tag("name", name)
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder(SHED_METRIC, shed, LongAdder::sum)
+                .description("Work refused because the pool was saturated")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    /**
+     * Checks whether work should currently be refused, and counts it as refused if so.
+     *
+     * @return true if the caller should refuse the work
+     */
+    public boolean tryShed() {
+        if (!shedding) {
+            return false;
+        }
+        shed.increment();
+        return true;
+    }
+
+    public boolean isShedding() {
+        return shedding;
+    }
+
+    /**
+     * Suggests how long refused clients should wait before retrying: the current p99 queue wait, rounded up to
+     * a whole second and capped.
+     *
+     * @return the delay in seconds, at least 1
+     */
+    public int retryAfterSeconds() {
+        long seconds = (queueWaitP99Nanos + 999_999_999L) / 1_000_000_000L;
+        return (int) Math.max(1L, Math.min(properties.getMaxRetryAfterSeconds(), seconds));
+    }
+
+    void sample() {
+        try {
+            BlockingQueue<Runnable> queue = executor.getQueue();
+            int size = queue.size();
+            int capacity = size + queue.remainingCapacity();
+            double fillRatio = capacity <= 0 ? 0d : (double) size / capacity;
+            long[] snapshot = executor.getQueueWaitHistogram().snapshot();
+            long waitP99 = LatencyHistogram.percentile(previousSnapshot, snapshot, 0.99d);
+            if (waitP99 == 0L && size > 0) {
+                // Nothing was dequeued during the interval, the oldest task has waited at least that long
+                waitP99 = TimeUnit.MILLISECONDS.toNanos(properties.getSampleIntervalMs());
+            }
+            previousSnapshot = snapshot;
+            queueFillRatio = fillRatio;
+            queueWaitP99Nanos = waitP99;
+            update(fillRatio, TimeUnit.NANOSECONDS.toMillis(waitP99));
+        } catch (Exception e) {
+            log.warn("Failed to sample saturation of pool: {}", executor.getName(), e);
+        }
+    }
+
+    private void update(double fillRatio, long waitP99Ms) {
+        long now = System.nanoTime();
+        if (!shedding) {
+            if (fillRatio >= properties.getShedQueueFillRatio() || waitP99Ms >= properties.getShedQueueWaitMs()) {
+                shedStartedAt = now;
+                shedding = true;
+                log.warn("Pool {} is saturated, shedding work, queueFill: {}, queueWaitP99Ms: {}",
+                        executor.getName(), String.format("%.2f", fillRatio), waitP99Ms);
+            }
+        } else if (fillRatio < properties.getRecoverQueueFillRatio()
+                && waitP99Ms < properties.getRecoverQueueWaitMs()
+                && now - shedStartedAt >= TimeUnit.MILLISECONDS.toNanos(properties.getMinShedMs())) {
+            shedding = false;
+            log.info("Pool {} recovered after {}ms, accepting work", executor.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(now - shedStartedAt));
+        }
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+}
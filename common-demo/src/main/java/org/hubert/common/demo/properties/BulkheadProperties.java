@@ -0,0 +1,49 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Data;
+import org.hubert.common.demo.executor.BulkheadExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Properties of a {@link BulkheadExecutor}, giving each key its own concurrency quota on a shared executor.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/10 14:30
+ */
+@Data
+public class BulkheadProperties {
+    /**
+     * Whether tasks are subject to per-key quotas at all.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The number of tasks of a single key that may run at once.
+     */
+    private int maxConcurrentPerKey = 5;
+
+    /**
+     * Quotas of specific keys, overriding {@link #maxConcurrentPerKey}.
+     */
+    private Map<String, Integer> limits = new LinkedHashMap<>();
+
+    /**
+     * What happens to a task whose key has used up its quota.
+     */
+    private BulkheadExecutor.OverflowPolicy overflowPolicy = BulkheadExecutor.OverflowPolicy.REJECT;
+
+    /**
+     * The number of tasks of a single key that may wait for a free slot, used by
+     * {@link BulkheadExecutor.OverflowPolicy#QUEUE}.
+     */
+    private int maxQueuedPerKey = 50;
+
+    /**
+     * The number of keys not listed in {@link #limits} that get a quota of their own. Keys seen after that share
+     * a single quota, so that keys taken from message content cannot create compartments and meters without bound.
+     */
+    private int maxKeys = 100;
+}
@@ -0,0 +1,70 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Data;
+
+/**
+ * Properties of a {@link org.hubert.common.demo.limiter.ConcurrencyLimiter}.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/7 09:30
+ */
+@Data
+public class ConcurrencyLimitProperties {
+    /**
+     * How the concurrency limit is determined.
+     */
+    private Mode mode = Mode.GRADIENT;
+
+    /**
+     * The limit to start with, and the only limit used in {@link Mode#FIXED} mode.
+     */
+    private int initialLimit = 10;
+
+    /**
+     * The lowest limit the adaptive mode may shrink to.
+     */
+    private int minLimit = 2;
+
+    /**
+     * The highest limit the adaptive mode may grow to.
+     */
+    private int maxLimit = 50;
+
+    /**
+     * The number of samples that closes a measurement window, unless {@link #windowMs} elapses first.
+     */
+    private int windowSize = 50;
+
+    /**
+     * The longest duration of a measurement window, in milliseconds.
+     */
+    private long windowMs = 1000L;
+
+    /**
+     * How far the recent latency may exceed the long-term latency before the limit starts shrinking.
+     */
+    private double rttTolerance = 1.5d;
+
+    /**
+     * The weight, between 0 and 1, of a newly computed limit against the current one.
+     */
+    private double smoothing = 0.2d;
+
+    /**
+     * The factor the limit is multiplied by after a window that contained drops, operations that timed out or
+     * were rejected.
+     */
+    private double backoffRatio = 0.9d;
+
+    public enum Mode {
+        /**
+         * The limit never changes.
+         */
+        FIXED,
+        /**
+         * The limit follows the gradient between long-term and recent processing latency.
+         */
+        GRADIENT
+    }
+}
@@ -0,0 +1,75 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Properties for parking and replaying messages that exhausted their retry attempts.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/6 11:30
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "rocketmq.dead-letter")
+public class DeadLetterProperties {
+    /**
+     * Where dead letters are parked.
+     */
+    private StoreType storeType = StoreType.FILE;
+
+    /**
+     * The directory holding the dead letter segment files, used by {@link StoreType#FILE}.
+     */
+    private String directory = "data/dlq";
+
+    /**
+     * The size in bytes after which the active dead letter segment file is sealed, used by {@link StoreType#FILE}.
+     */
+    private long maxSegmentBytes = 64L * 1024 * 1024;
+
+    /**
+     * The topic dead letters are sent to, used by {@link StoreType#TOPIC}.
+     */
+    private String topic;
+
+    /**
+     * The name server used to read the dead letter topic back during replays, used by {@link StoreType#TOPIC}.
+     */
+    private String nameServer;
+
+    /**
+     * The maximum number of dead letters written in a single batch.
+     */
+    private int batchSize = 100;
+
+    /**
+     * The maximum number of dead letters buffered in memory before the parking thread writes them itself.
+     */
+    private int bufferCapacity = 10000;
+
+    /**
+     * How often, in milliseconds, buffered dead letters are written.
+     */
+    private long flushIntervalMs = 1000L;
+
+    /**
+     * The default number of dead letters re-injected per second by a replay.
+     */
+    private int replayRatePerSecond = 200;
+
+    public enum StoreType {
+        /**
+         * Append-only segment files on the local disk.
+         */
+        FILE,
+        /**
+         * A dedicated RocketMQ topic.
+         */
+        TOPIC
+    }
+}
@@ -0,0 +1,25 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Properties for draining producers and consumers when the application shuts down.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/11 10:10
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "graceful-shutdown")
+public class GracefulShutdownProperties {
+    /**
+     * How long, in milliseconds, queued sends and messages may take to finish before they are spooled to the
+     * dead letter store.
+     */
+    private long drainTimeoutMs = 20000L;
+}
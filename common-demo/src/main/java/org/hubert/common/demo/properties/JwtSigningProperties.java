@@ -0,0 +1,101 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Properties of the keys JWTs are signed and verified with, used by
+ * {@link org.hubert.common.demo.security.JwtKeySet}.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 10:00
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "jwt.signing")
+public class JwtSigningProperties {
+    /**
+     * The signature algorithm. {@link Algorithm#HS512} signs and verifies with the shared {@code jwt.secret};
+     * the asymmetric ones sign with the private key of {@link #keyId} and verify with the public keys of
+     * {@link #keys}, so nodes that only verify tokens need no secret.
+     */
+    private Algorithm algorithm = Algorithm.HS512;
+
+    /**
+     * The id of the key new tokens are signed with, written to their {@code kid} header. Must be one of
+     * {@link #keys} with a private key, unless the node only verifies tokens.
+     */
+    private String keyId;
+
+    /**
+     * The keys of the asymmetric algorithms. Keys without a private key only verify tokens, such as a retired key
+     * whose tokens have not expired yet or the next key published ahead of a rotation.
+     */
+    private List<Key> keys = new ArrayList<>();
+
+    /**
+     * Whether the node only verifies tokens. It then needs no private key and refuses to issue tokens.
+     */
+    private boolean verifyOnly = false;
+
+    /**
+     * The URI of the key set served by the signing nodes, for example
+     * {@code http://auth-service/.well-known/jwks.json}. When set, its keys are fetched at startup and again when
+     * a token names an unknown key id, in addition to the configured {@link #keys}.
+     */
+    private String jwksUri;
+
+    /**
+     * The minimum time, in milliseconds, between two fetches of {@link #jwksUri}, so that tokens with made-up key
+     * ids cannot make every request fetch the key set.
+     */
+    private long jwksRefreshIntervalMs = 60000L;
+
+    /**
+     * How long, in seconds, clients may cache the key set served by this node.
+     */
+    private long jwksMaxAgeSeconds = 300L;
+
+    @Getter
+    @Setter
+    public static class Key {
+        /**
+         * The key id, written to the {@code kid} header of the tokens signed with it.
+         */
+        private String kid;
+
+        /**
+         * The Base64 encoded PKCS#8 private key, for example from
+         * {@code openssl genpkey -algorithm ed25519 -outform DER | base64 -w0}.
+         */
+        private String privateKey;
+
+        /**
+         * The Base64 encoded X.509 public key, for example from
+         * {@code openssl pkey -in key.der -inform DER -pubout -outform DER | base64 -w0}.
+         */
+        private String publicKey;
+    }
+
+    public enum Algorithm {
+        /**
+         * HMAC with SHA-512 and the shared {@code jwt.secret}.
+         */
+        HS512,
+        /**
+         * Ed25519 signatures.
+         */
+        EdDSA,
+        /**
+         * ECDSA with the P-256 curve and SHA-256.
+         */
+        ES256
+    }
+}
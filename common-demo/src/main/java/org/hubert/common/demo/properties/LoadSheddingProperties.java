@@ -0,0 +1,76 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Properties for refusing HTTP requests with a 503 while the executor serving them is saturated.
+ * <p>
+ * Shedding starts once the queue fill ratio or the p99 queue wait reaches its {@code shed} threshold, and
+ * stops once both are back below their {@code recover} thresholds and shedding has lasted at least
+ * {@link #minShedMs}, so the decision does not flap around a single threshold.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/11 14:20
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "load-shedding")
+public class LoadSheddingProperties {
+    /**
+     * Whether saturated requests are refused at all.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The name of the pool whose saturation is watched, as registered in the thread pool registry.
+     */
+    private String executor = "package-op-producer-thread-pool";
+
+    /**
+     * The request paths refused while the pool is saturated, as Ant-style patterns.
+     */
+    private List<String> paths = new ArrayList<>(List.of("/rocketmq/sendAsync"));
+
+    /**
+     * How often, in milliseconds, the saturation of the pool is sampled.
+     */
+    private long sampleIntervalMs = 250L;
+
+    /**
+     * The queue fill ratio, between 0 and 1, at which shedding starts.
+     */
+    private double shedQueueFillRatio = 0.8d;
+
+    /**
+     * The queue fill ratio below which shedding may stop.
+     */
+    private double recoverQueueFillRatio = 0.5d;
+
+    /**
+     * The p99 queue wait, in milliseconds, at which shedding starts.
+     */
+    private long shedQueueWaitMs = 500L;
+
+    /**
+     * The p99 queue wait, in milliseconds, below which shedding may stop.
+     */
+    private long recoverQueueWaitMs = 100L;
+
+    /**
+     * The shortest time, in milliseconds, shedding lasts once started.
+     */
+    private long minShedMs = 2000L;
+
+    /**
+     * The largest Retry-After, in seconds, returned to refused clients.
+     */
+    private int maxRetryAfterSeconds = 30;
+}
@@ -13,4 +13,31 @@ public class MQConsumerOperationProperties {
     private String group;
     private String topic;
     private String tag;
+    /**
+     * The fraction of consumed messages, between 0 and 1, whose payload is written to the consumption trace
+     * when DEBUG logging is disabled. Defaults to 0, meaning payloads are only logged at DEBUG.
+     */
+    private double payloadLogSampleRate = 0d;
+    /**
+     * How often, in milliseconds, the per-queue consumer lag is refreshed from the broker.
+     */
+    private long lagRefreshIntervalMs = 15000L;
+    /**
+     * The limit on concurrently processed messages.
+     */
+    private ConcurrencyLimitProperties concurrency = new ConcurrencyLimitProperties();
+    /**
+     * The number of messages cached per queue for every concurrency permit. The pull threshold of each queue
+     * follows the concurrency limit, so the consumer stops pulling when it cannot keep up.
+     */
+    private int pullThresholdPerPermit = 20;
+    /**
+     * Whether every message is processed on its own virtual thread instead of the platform thread pool.
+     * Needs Java 21 or newer, the platform thread pool is used otherwise.
+     */
+    private boolean virtualThreads = false;
+    /**
+     * Per-key concurrency quotas, so that messages of one key cannot take every permit of the consumer.
+     */
+    private BulkheadProperties bulkhead = new BulkheadProperties();
 }
@@ -0,0 +1,31 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Properties of password hashing. The pool doing the hashing, {@code password-hash-thread-pool}, is sized under
+ * {@code thread-pool.pools} like the other pools.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/13 16:10
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "password-hash")
+public class PasswordHashProperties {
+    /**
+     * The BCrypt work factor of new hashes, between 4 and 31. Passwords hashed with a lower one are rehashed on
+     * the next successful login.
+     */
+    private int strength = 10;
+    /**
+     * How long, in milliseconds, a request waits for its password to be hashed or verified before it is
+     * rejected as unavailable.
+     */
+    private long maxWaitMs = 3000L;
+}
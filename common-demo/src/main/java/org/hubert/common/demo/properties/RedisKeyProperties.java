@@ -43,28 +43,58 @@ public class RedisKeyProperties {
     private String packageChangeMsg = "package:change:msg:key:";
 
     /**
-     * Represents the key prefix for storing refresh tokens in Redis.
-     * This string is used as part of a larger key in Redis to store or retrieve
-     * refresh token-related data.
+     * Represents the key prefix of the Redis hashes storing the JWT versions of users.
+     * The prefix is followed by the bucket number, and each hash holds the versions
+     * of the users in its bucket, keyed by username.
+     */
+    private String userJwtVersionKey = "user:jwt:version:";
+
+    /**
+     * Represents the channel on which a username is published when its JWT is rotated.
+     * Every node listens on it to evict the previous token of the user from its local cache.
      */
-    private String refreshTokenKey = "refresh:token:key:";
+    private String jwtRotatedChannel = "user:jwt:rotated";
 
     /**
-     * Represents the key prefix for storing user JWTs in Redis.
+     * Represents the key prefix for storing loaded users in Redis.
      * This string is used as part of a larger key in Redis to store or retrieve
-     * user JWT-related data.
+     * the user details shared by all nodes.
+     */
+    private String userDetailsKey = "user:details:key:";
+
+    /**
+     * Represents the channel on which a username is published when its roles or password change.
+     * Every node listens on it to evict the user from its local cache.
+     */
+    private String userDetailsInvalidatedChannel = "user:details:invalidated";
+
+    /**
+     * Represents the lock key held by the node deleting a chunk of expired refresh tokens,
+     * so that the nodes do not delete the same rows at the same time.
      */
-    private String userJwtKey = "user:jwt:key:";
+    private String refreshTokenSweepLockKey = "refresh-token:sweep:lock";
 
     public String getPackageChangeMsg() {
         return commonPrefix + packageChangeMsg;
     }
 
-    public String getRefreshTokenKey() {
-        return commonPrefix + refreshTokenKey;
+    public String getUserJwtVersionKey() {
+        return commonPrefix + userJwtVersionKey;
+    }
+
+    public String getJwtRotatedChannel() {
+        return commonPrefix + jwtRotatedChannel;
+    }
+
+    public String getUserDetailsKey() {
+        return commonPrefix + userDetailsKey;
+    }
+
+    public String getUserDetailsInvalidatedChannel() {
+        return commonPrefix + userDetailsInvalidatedChannel;
     }
 
-    public String getUserJwtKey() {
-        return commonPrefix + userJwtKey;
+    public String getRefreshTokenSweepLockKey() {
+        return commonPrefix + refreshTokenSweepLockKey;
     }
 }
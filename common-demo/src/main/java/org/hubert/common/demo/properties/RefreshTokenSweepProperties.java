@@ -0,0 +1,35 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Properties of the background deletion of expired refresh tokens by
+ * {@link org.hubert.common.demo.service.RefreshTokenSweeper}.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 20:00
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "jwt.refresh-token-sweep")
+public class RefreshTokenSweepProperties {
+    /**
+     * Whether expired refresh tokens are deleted in the background. When disabled they are only deleted when
+     * presented.
+     */
+    private boolean enabled = true;
+    /**
+     * How often, in milliseconds, expired refresh tokens are looked for.
+     */
+    private long intervalMs = 60000L;
+    /**
+     * The maximum number of refresh tokens deleted by one statement. While full chunks are deleted, the next one
+     * follows right away rather than after the interval.
+     */
+    private int chunkSize = 1000;
+}
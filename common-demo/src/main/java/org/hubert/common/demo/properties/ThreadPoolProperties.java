@@ -0,0 +1,48 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sizing of the application's thread pools, keyed by pool name. Pools without an entry, and settings left
+ * out of an entry, keep the defaults they are created with in {@link org.hubert.common.demo.config.ThreadPoolConfig}.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/8 14:40
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "thread-pool")
+public class ThreadPoolProperties {
+    private Map<String, Pool> pools = new LinkedHashMap<>();
+
+    @Data
+    public static class Pool {
+        private Integer corePoolSize;
+        private Integer maximumPoolSize;
+        private Long keepAliveSeconds;
+        private Integer queueCapacity;
+        /**
+         * The order in which queued tasks run, only read when the pool is created. Pools that refuse work once
+         * their queue is full only support {@link QueueType#FIFO}.
+         */
+        private QueueType queueType = QueueType.FIFO;
+    }
+
+    public enum QueueType {
+        /**
+         * Tasks run in submission order and the oldest task is discarded when the pool is saturated.
+         */
+        FIFO,
+        /**
+         * Tasks run by priority and deadline, expired tasks are shed and the least valuable task is discarded
+         * when the pool is saturated.
+         */
+        PRIORITY
+    }
+}
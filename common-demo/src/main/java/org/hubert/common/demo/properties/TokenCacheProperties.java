@@ -0,0 +1,35 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Properties of the local cache of verified JWTs kept by {@link org.hubert.common.demo.security.VerifiedTokenCache}.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/12 16:00
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "jwt.token-cache")
+public class TokenCacheProperties {
+    /**
+     * Whether verified tokens are cached. When disabled every request verifies its token, checks it against
+     * Redis and loads the user from the database.
+     */
+    private boolean enabled = true;
+    /**
+     * The maximum number of cached tokens, the least used ones are evicted beyond it.
+     */
+    private long maximumSize = 10000L;
+    /**
+     * How long, in milliseconds, a token may stay cached at most. Zero keeps it until the token expires. A lower
+     * value bounds how long a rotated token stays usable on a node that missed the rotation message, and how
+     * long role changes take to apply.
+     */
+    private long maxTtlMs = 0L;
+}
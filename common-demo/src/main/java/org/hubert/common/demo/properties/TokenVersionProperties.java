@@ -0,0 +1,27 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Properties of the per-user token versions kept in Redis by
+ * {@link org.hubert.common.demo.service.JwtTokenService}.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 14:00
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "jwt.token-version")
+public class TokenVersionProperties {
+    /**
+     * The number of Redis hashes the versions are spread over. Redis stores a hash compactly as long as it has
+     * at most {@code hash-max-listpack-entries} fields, 128 by default, so this should be at least the number of
+     * users divided by that limit. Changing it moves every user to another hash, which signs them out.
+     */
+    private int buckets = 16384;
+}
@@ -0,0 +1,41 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Properties of the two-level cache of loaded users kept by {@link org.hubert.common.demo.security.UserDetailsCache}.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/13 10:00
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "user-details-cache")
+public class UserDetailsCacheProperties {
+    /**
+     * Whether loaded users are cached. When disabled every lookup queries the database.
+     */
+    private boolean enabled = true;
+    /**
+     * The maximum number of users cached on each node.
+     */
+    private long localMaximumSize = 10000L;
+    /**
+     * How long, in milliseconds, a user stays cached on a node after it was loaded.
+     */
+    private long localTtlMs = 60000L;
+    /**
+     * How long, in milliseconds, a user stays cached in Redis after it was loaded from the database.
+     */
+    private long redisTtlMs = 600000L;
+    /**
+     * How long, in milliseconds, after an invalidation the user is invalidated a second time, to drop a copy
+     * written back by a load that read the database before the change.
+     */
+    private long secondInvalidationDelayMs = 1000L;
+}
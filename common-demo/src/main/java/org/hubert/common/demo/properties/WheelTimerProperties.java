@@ -0,0 +1,29 @@
+package org.hubert.common.demo.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Properties of the shared hashed wheel timer, whose tasks run on the {@code timer-task-thread-pool}.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/12 10:40
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "wheel-timer")
+public class WheelTimerProperties {
+    /**
+     * The duration of a tick in milliseconds, timeouts fire up to one tick late.
+     */
+    private long tickMs = 100L;
+    /**
+     * The number of buckets of the wheel, rounded up to a power of two. Timeouts further away than
+     * {@code tickMs * ticksPerWheel} wait for their round in their bucket.
+     */
+    private int ticksPerWheel = 512;
+}
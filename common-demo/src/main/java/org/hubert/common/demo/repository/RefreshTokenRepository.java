@@ -2,7 +2,12 @@ package org.hubert.common.demo.repository;
 
 import org.hubert.common.demo.entity.RefreshToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 /**
@@ -12,10 +17,38 @@ import java.util.Optional;
  */
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
     /**
-     * Finds and returns a RefreshToken based on the provided token string.
+     * Finds a RefreshToken based on the hash of the provided token string, reading only its id and expiry and
+     * the username of its user through the unique hash index and the user primary key.
      *
-     * @param token the token string used to find the RefreshToken
+     * @param tokenHash the SHA-256 hash of the token string
      * @return an Optional containing the found RefreshToken, or an empty Optional if no RefreshToken was found
      */
-    Optional<RefreshToken> findByToken(String token);
+    @Query("select t.id as id, u.username as username, t.expireDate as expireDate "
+            + "from RefreshToken t join t.user u where t.tokenHash = :tokenHash")
+    Optional<RefreshTokenView> findByTokenHash(@Param("tokenHash") byte[] tokenHash);
+
+    /**
+     * Deletes up to the given number of RefreshTokens that expired before the given time, walking the expiry
+     * index so that each call touches a bounded number of rows.
+     *
+     * @param now   the current time
+     * @param limit the maximum number of RefreshTokens to delete
+     * @return the number of deleted RefreshTokens
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM t_refresh_token WHERE expire_date < :now ORDER BY expire_date LIMIT :limit",
+            nativeQuery = true)
+    int deleteExpired(@Param("now") Instant now, @Param("limit") int limit);
+
+    /**
+     * The fields of a RefreshToken needed to refresh a JWT.
+     */
+    interface RefreshTokenView {
+        Long getId();
+
+        String getUsername();
+
+        Instant getExpireDate();
+    }
 }
@@ -1,7 +1,12 @@
 package org.hubert.common.demo.repository;
 
 import org.hubert.common.demo.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -19,6 +24,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     Optional<User> findByUsername(String username);
 
+    /**
+     * Finds a User entity by its unique username together with its roles, in a single statement joining the
+     * roles instead of a second query when they are first accessed.
+     *
+     * @param username the unique username to search for
+     * @return an Optional containing the found User with its roles loaded, or empty if no user is found
+     */
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findWithRolesByUsername(String username);
+
     /**
      * Checks if a user with the specified username exists in the repository.
      *
@@ -34,4 +49,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return true if a user with the specified email exists, false otherwise
      */
     Boolean existsByEmail(String email);
+
+    /**
+     * Replaces the password hash of a user.
+     *
+     * @param username the unique username of the user
+     * @param password the new password hash
+     * @return the number of updated users
+     */
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :password where u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
 }
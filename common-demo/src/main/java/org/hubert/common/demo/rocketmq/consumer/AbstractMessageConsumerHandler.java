@@ -1,23 +1,44 @@
 package org.hubert.common.demo.rocketmq.consumer;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
 import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
 import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
 import org.apache.rocketmq.common.message.MessageExt;
+import org.hubert.common.demo.executor.BulkheadExecutor;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.lifecycle.Drainable;
+import org.hubert.common.demo.limiter.ConcurrencyLimiter;
+import org.hubert.common.demo.properties.BulkheadProperties;
+import org.hubert.common.demo.properties.MQConsumerOperationProperties;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetter;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
+ * As a {@link Drainable}, the handler suspends the consumer when the application shuts down and lets the
+ * messages already handed to the executor finish. Those messages have been acknowledged to the broker, so the
+ * ones that do not finish in time are spooled to the dead letter store rather than dropped, and can be
+ * replayed once the application is back.
+ *
  * @author hubertwong
  * @version 1.0
  * @since 2024/10/4 14:06
  */
-public abstract class AbstractMessageConsumerHandler implements MessageConsumerHandler {
+public abstract class AbstractMessageConsumerHandler implements MessageConsumerHandler, Drainable {
     private static final Logger log = LoggerFactory.getLogger(AbstractMessageConsumerHandler.class);
     /**
      * The default maximum number of retry attempts for processing a message.
@@ -25,67 +46,81 @@ public abstract class AbstractMessageConsumerHandler implements MessageConsumerH
      */
     private static final int DEFAULT_MAX_RETRY_TIMES = 3;
     /**
-     * The default maximum number of concurrent tasks that can be executed simultaneously.
-     * This value is used to control the concurrency level in the message consumption process.
+     * The RocketMQ default number of messages cached per queue, used as the upper bound of the adaptive threshold.
      */
-    private static final int DEFAULT_MAX_CONCURRENT_TASKS = 10;
+    private static final int MAX_PULL_THRESHOLD_FOR_QUEUE = 1000;
 
     protected final DefaultMQPushConsumer consumer;
 
     protected final ExecutorService executorService;
 
-    private final Semaphore semaphore;
+    private final ConcurrencyLimiter limiter;
 
-    protected AbstractMessageConsumerHandler(DefaultMQPushConsumer consumer, ExecutorService executorService) {
+    /**
+     * Per-key quotas on top of the executor, or null if every message shares the executor freely.
+     */
+    private final BulkheadExecutor bulkhead;
+
+    private final ConsumerMetrics metrics;
+
+    private final ConsumerLagMonitor lagMonitor;
+
+    private final DeadLetterStore deadLetterStore;
+
+    protected AbstractMessageConsumerHandler(DefaultMQPushConsumer consumer, ExecutorService executorService,
+                                             MQConsumerOperationProperties properties, MeterRegistry meterRegistry,
+                                             DeadLetterStore deadLetterStore, HashedWheelTimer wheelTimer) {
         this.consumer = consumer;
         this.executorService = executorService;
-        this.semaphore = new Semaphore(DEFAULT_MAX_CONCURRENT_TASKS);
+        this.deadLetterStore = deadLetterStore;
+        this.limiter = ConcurrencyLimiter.create(properties.getConcurrency());
+        this.metrics = new ConsumerMetrics(meterRegistry, consumer.getConsumerGroup(), properties.getPayloadLogSampleRate());
+        this.metrics.bindSaturation(limiter, executorService);
+        this.bulkhead = createBulkhead(properties.getBulkhead(), meterRegistry);
+        warnIfPoolCapsLimit(properties.getConcurrency().getMaxLimit());
+        applyLimit(limiter.getLimit(), properties.getPullThresholdPerPermit());
+        limiter.addLimitListener(limit -> applyLimit(limit, properties.getPullThresholdPerPermit()));
         startConsumer();
+        this.lagMonitor = new ConsumerLagMonitor(consumer, meterRegistry, wheelTimer,
+                properties.getLagRefreshIntervalMs());
     }
 
+    private BulkheadExecutor createBulkhead(BulkheadProperties properties, MeterRegistry meterRegistry) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        BulkheadExecutor created = ThreadPoolFactory.createBulkhead(consumer.getConsumerGroup() + "-bulkhead",
+                executorService, properties.getMaxConcurrentPerKey(), properties.getLimits(),
+                properties.getOverflowPolicy(), properties.getMaxQueuedPerKey(), properties.getMaxKeys());
+        created.bindTo(meterRegistry);
+        return created;
+    }
+
+    /**
+     * Registers the listener and starts the consumer.
+     * <p>
+     * A permit is taken on the listener thread before a message is handed to the executor, so once the
+     * concurrency limit is reached the listener threads block, the per-queue caches fill up to the pull
+     * threshold and the consumer stops pulling until processing catches up.
+     */
     private void startConsumer() {
         consumer.registerMessageListener((List<MessageExt> msgs, ConsumeConcurrentlyContext context) -> {
-            for (MessageExt msg : msgs) {
-                executorService.execute(() -> {
-                    boolean acquired = false;
-                    try {
-                        semaphore.acquire();
-                        acquired = true;
-                        String messageBody = new String(msg.getBody(), StandardCharsets.UTF_8);
-                        log.info("Received message: " + messageBody);
-
-                        if (filterMessage(messageBody)) {
-                            log.info("Filtered out message: " + messageBody);
-                            return;
-                        }
-
-                        // 幂等性检查
-                        if (isDuplicate(messageBody)) {
-                            log.warn("Duplicate message: " + messageBody);
-                            return;
-                        }
-
-                        int retryTimes = msg.getReconsumeTimes();
-                        boolean success = processMessage(messageBody);
-                        if (!success) {
-                            log.warn("Failed to process message: " + messageBody);
-                            if (retryTimes < DEFAULT_MAX_RETRY_TIMES) {
-                                log.info("Retrying message: " + messageBody + " (Retry " + (retryTimes + 1) + ")");
-                                context.setDelayLevelWhenNextConsume(retryTimes + 1);
-                            } else {
-                                log.error("Exceeded max retry attempts for message: " + messageBody);
-                            }
-                        } else {
-                            log.info("Successfully processed message: " + messageBody);
-                        }
-                    } catch (Exception e) {
-                        log.error("Exception while processing message: " + msg, e);
-                    } finally {
-                        if (acquired) {
-                            semaphore.release();
-                        }
-                    }
-                });
+            for (int i = 0; i < msgs.size(); i++) {
+                MessageExt msg = msgs.get(i);
+                int inFlight;
+                try {
+                    inFlight = limiter.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Interrupted while waiting to consume message, msgId: {}", msg.getMsgId());
+                    // Messages after the ack index are sent back to the broker for redelivery
+                    context.setAckIndex(i - 1);
+                    return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                }
+                if (!dispatch(msg, inFlight)) {
+                    context.setAckIndex(i - 1);
+                    return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                }
             }
             return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
         });
@@ -96,6 +131,251 @@ public abstract class AbstractMessageConsumerHandler implements MessageConsumerH
         }
     }
 
+    /**
+     * Hands a message, whose permit has already been taken, to the executor, within the quota of its bulkhead
+     * key if a bulkhead is enabled. A message refused because its key has used up its quota goes back to the
+     * broker like any other rejected message, which delays that key without holding up the others.
+     *
+     * @param msg      the message to consume
+     * @param inFlight the number of messages in flight once its permit was taken
+     * @return true if the executor accepted the message, false otherwise
+     */
+    private boolean dispatch(MessageExt msg, int inFlight) {
+        Runnable task = new ConsumeTask(msg, inFlight);
+        try {
+            if (bulkhead != null) {
+                bulkhead.execute(bulkheadKey(msg), task);
+            } else {
+                executorService.execute(task);
+            }
+            return true;
+        } catch (RejectedExecutionException e) {
+            limiter.release();
+            log.warn("Consumer executor rejected message, msgId: {}, reason: {}", msg.getMsgId(), e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public String getDrainName() {
+        return "consumer " + consumer.getConsumerGroup();
+    }
+
+    /**
+     * Stops pulling and shuts the executor down. Messages the listener is still dispatching are refused by the
+     * executor and go back to the broker.
+     */
+    @Override
+    public void startDrain() {
+        consumer.suspend();
+        executorService.shutdown();
+    }
+
+    @Override
+    public boolean awaitDrained(long deadlineNanos) throws InterruptedException {
+        return executorService.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int spoolLeftovers() {
+        List<Runnable> leftovers = new ArrayList<>();
+        if (bulkhead != null) {
+            leftovers.addAll(bulkhead.drainQueued());
+        }
+        leftovers.addAll(executorService.shutdownNow());
+        int spooled = 0;
+        for (Runnable leftover : leftovers) {
+            // With a bulkhead, the executor holds the bulkhead's wrappers rather than the messages themselves
+            Runnable task = leftover instanceof BulkheadExecutor.GuardedTask guarded ? guarded.getTask() : leftover;
+            if (task instanceof ConsumeTask consumeTask) {
+                limiter.release();
+                try {
+                    deadLetterStore.park(DeadLetter.of(consumeTask.msg, consumer.getConsumerGroup(), "Not consumed before shutdown"));
+                    spooled++;
+                } catch (Exception e) {
+                    log.error("Failed to spool message, msgId: {}, keys: {}", consumeTask.msg.getMsgId(), consumeTask.msg.getKeys(), e);
+                }
+            }
+        }
+        return spooled;
+    }
+
+    /**
+     * Shuts the consumer down once its executor has drained, which persists the consumed offsets.
+     */
+    @PreDestroy
+    public void shutDownConsumer() {
+        lagMonitor.close();
+        consumer.shutdown();
+    }
+
+    /**
+     * Returns the key whose bulkhead quota the message counts against, for example the app that sent it.
+     * Messages without a key share a single quota.
+     *
+     * @param msg the message to consume
+     * @return the bulkhead key, or null if the message has none
+     */
+    protected String bulkheadKey(MessageExt msg) {
+        return null;
+    }
+
+    /**
+     * The limiter only gates how many messages are admitted; the size of the executor is owned by the
+     * {@code thread-pool} settings and the pool registry. A pool with fewer core threads than the limiter
+     * may admit queues the surplus instead of running it, so the limit cannot raise throughput past the pool.
+     *
+     * @param maxLimit the highest limit the limiter may reach
+     */
+    private void warnIfPoolCapsLimit(int maxLimit) {
+        if (executorService instanceof ThreadPoolExecutor threadPoolExecutor
+                && threadPoolExecutor.getCorePoolSize() < maxLimit) {
+            log.warn("Consumer {} may admit {} messages at once but its executor has {} core threads",
+                    consumer.getConsumerGroup(), maxLimit, threadPoolExecutor.getCorePoolSize());
+        }
+    }
+
+    /**
+     * Lets the pull threshold follow the concurrency limit, so that the consumer does not cache more messages
+     * than the limit can drain.
+     *
+     * @param limit                  the new concurrency limit
+     * @param pullThresholdPerPermit the number of messages cached per queue for every permit
+     */
+    private void applyLimit(int limit, int pullThresholdPerPermit) {
+        consumer.setPullThresholdForQueue(Math.max(1, Math.min(MAX_PULL_THRESHOLD_FOR_QUEUE, limit * pullThresholdPerPermit)));
+    }
+
+    /**
+     * Runs a single message through the filter, duplicate check and processing steps, then records the outcome.
+     * <p>
+     * The payload is only written to the trace at DEBUG when DEBUG is enabled, or at INFO when the message is
+     * sampled, so the common path costs one counter increment and one timer update rather than several formatted
+     * log lines.
+     *
+     * @param task the message to consume, which is told whether processing timed out or was rejected
+     * @return the outcome of the consumption
+     */
+    private ConsumeOutcome consumeMessage(ConsumeTask task) {
+        MessageExt msg = task.msg;
+        metrics.recordStoreLatency(msg.getStoreTimestamp());
+        long start = System.nanoTime();
+        ConsumeOutcome outcome = ConsumeOutcome.ERROR;
+        String messageBody = null;
+        try {
+            messageBody = new String(msg.getBody(), StandardCharsets.UTF_8);
+            if (filterMessage(messageBody)) {
+                outcome = ConsumeOutcome.FILTERED;
+            } else if (isDuplicate(messageBody)) {
+                // 幂等性检查
+                outcome = ConsumeOutcome.DUPLICATE;
+            } else if (processMessage(messageBody)) {
+                outcome = ConsumeOutcome.SUCCESS;
+            } else {
+                outcome = handleFailure(msg, "Processing failed");
+            }
+        } catch (Exception e) {
+            log.error("Exception while processing message, msgId: {}, keys: {}", msg.getMsgId(), msg.getKeys(), e);
+            task.overloaded = isOverload(e);
+            outcome = handleFailure(msg, "Processing threw " + e);
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            metrics.record(outcome, elapsedNanos);
+            if (log.isDebugEnabled()) {
+                log.debug("Consumed message, msgId: {}, outcome: {}, reconsumeTimes: {}, costMicros: {}, body: {}",
+                        msg.getMsgId(), outcome, msg.getReconsumeTimes(),
+                        TimeUnit.NANOSECONDS.toMicros(elapsedNanos), messageBody);
+            } else if (metrics.samplePayload()) {
+                log.info("Consumed message, msgId: {}, outcome: {}, reconsumeTimes: {}, costMicros: {}, body: {}",
+                        msg.getMsgId(), outcome, msg.getReconsumeTimes(),
+                        TimeUnit.NANOSECONDS.toMicros(elapsedNanos), messageBody);
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Hands a message that could not be processed back to the broker for a delayed retry, or parks it in the
+     * dead letter store once the retry attempts are exhausted.
+     * <p>
+     * The listener acknowledges every message as soon as it is handed to the executor, so the delay level of
+     * the batch context can no longer take effect here; the retry is requested explicitly instead.
+     *
+     * @param msg    the message that could not be processed
+     * @param reason why processing failed
+     * @return the outcome of the failure handling
+     */
+    private ConsumeOutcome handleFailure(MessageExt msg, String reason) {
+        try {
+            int retryTimes = msg.getReconsumeTimes();
+            if (retryTimes < DEFAULT_MAX_RETRY_TIMES) {
+                try {
+                    sendBack(msg, retryTimes + 1);
+                    log.warn("Failed to process message, scheduled retry, msgId: {}, keys: {}, retry: {}",
+                            msg.getMsgId(), msg.getKeys(), retryTimes + 1);
+                    return ConsumeOutcome.RETRY;
+                } catch (Exception e) {
+                    log.error("Failed to schedule message for retry, msgId: {}, keys: {}", msg.getMsgId(), msg.getKeys(), e);
+                    reason = reason + ", retry could not be scheduled";
+                }
+            } else {
+                log.error("Exceeded max retry attempts for message, msgId: {}, keys: {}", msg.getMsgId(), msg.getKeys());
+            }
+            deadLetterStore.park(DeadLetter.of(msg, consumer.getConsumerGroup(), reason));
+            return ConsumeOutcome.DEAD;
+        } catch (Exception e) {
+            log.error("Failed to park message, msgId: {}, keys: {}", msg.getMsgId(), msg.getKeys(), e);
+            return ConsumeOutcome.ERROR;
+        }
+    }
+
+    /**
+     * Sends a message back to the broker to be redelivered after the given delay level.
+     * <p>
+     * RocketMQ 5 deprecates every {@code sendMessageBack} variant in favour of returning RECONSUME_LATER from
+     * the listener, which cannot work here: the listener acknowledged the message when it handed it to the
+     * executor. The client offers no other way to request a delayed redelivery of a single message, so the
+     * deprecation is suppressed for this call only.
+     *
+     * @param msg            the message to redeliver
+     * @param delayTimeLevel the delay level of the redelivery
+     * @throws Exception if the broker could not be reached or refused the message
+     */
+    @SuppressWarnings("deprecation")
+    private void sendBack(MessageExt msg, int delayTimeLevel) throws Exception {
+        consumer.sendMessageBack(msg, delayTimeLevel);
+    }
+
+    /**
+     * A message waiting in the executor, keeping the message so that it can be spooled if it never runs.
+     */
+    private final class ConsumeTask implements Runnable {
+        private final MessageExt msg;
+        private final int inFlight;
+        private final long enqueuedAt = System.nanoTime();
+        /**
+         * Whether processing timed out or was rejected, the only failures reported to the limiter as drops.
+         * Messages that merely fail are ordinary business failures and must not shrink the limit.
+         */
+        private boolean overloaded;
+
+        private ConsumeTask(MessageExt msg, int inFlight) {
+            this.msg = msg;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            metrics.recordQueueWait(startedAt - enqueuedAt);
+            try {
+                consumeMessage(this);
+            } finally {
+                limiter.release(System.nanoTime() - startedAt, inFlight, overloaded);
+            }
+        }
+    }
+
     /**
      * Processes the given message and performs necessary actions depending on the message content, implemented by subclasses.
      *
@@ -125,4 +405,23 @@ public abstract class AbstractMessageConsumerHandler implements MessageConsumerH
     protected boolean isDuplicate(String message) {
         return false;
     }
+
+    /**
+     * Checks whether an exception thrown while processing a message means that processing timed out or was
+     * rejected, which may indicate that the downstream services are overloaded and lowers the concurrency limit.
+     * Subclasses may override this to recognize the timeouts of the clients they use.
+     *
+     * @param e the exception thrown while processing the message
+     * @return true if the exception, or one of its causes, is a timeout or a rejection
+     */
+    protected boolean isOverload(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException
+                    || cause instanceof SocketTimeoutException
+                    || cause instanceof RejectedExecutionException) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,45 @@
+package org.hubert.common.demo.rocketmq.consumer;
+
+/**
+ * The final outcome of consuming a single message, used to tag consumption metrics and traces.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/4 10:12
+ */
+public enum ConsumeOutcome {
+    /**
+     * The message was rejected by {@link AbstractMessageConsumerHandler#filterMessage(String)}.
+     */
+    FILTERED,
+    /**
+     * The message was recognized as a duplicate by {@link AbstractMessageConsumerHandler#isDuplicate(String)}.
+     */
+    DUPLICATE,
+    /**
+     * The message was processed successfully.
+     */
+    SUCCESS,
+    /**
+     * Processing failed and the message is scheduled for another delivery attempt.
+     */
+    RETRY,
+    /**
+     * Processing failed, the maximum number of retry attempts has been exhausted and the message was parked
+     * in the dead letter store.
+     */
+    DEAD,
+    /**
+     * The message could neither be processed nor handed over for a retry or to the dead letter store.
+     */
+    ERROR;
+
+    /**
+     * The lower-case name used as the metric tag value.
+     */
+    private final String tagValue = name().toLowerCase();
+
+    public String tagValue() {
+        return tagValue;
+    }
+}
@@ -0,0 +1,133 @@
+package org.hubert.common.demo.rocketmq.consumer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.impl.MQClientManager;
+import org.apache.rocketmq.client.impl.consumer.MQConsumerInner;
+import org.apache.rocketmq.client.impl.factory.MQClientInstance;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.remoting.protocol.body.ProcessQueueInfo;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically publishes the lag of every message queue assigned to a push consumer, that is the broker's
+ * max offset minus the consumer's committed offset.
+ * <p>
+ * Looking up the max offset is a broker round-trip, so the values are refreshed on the shared wheel timer at a
+ * fixed interval instead of being computed when the gauges are scraped. The assigned queues and their committed
+ * offsets come from the consumer's running info, the same view the admin tools report, and the max offsets from
+ * the client's admin API, so no deprecated accessor of the consumer internals is needed.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/5 09:40
+ */
+public class ConsumerLagMonitor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ConsumerLagMonitor.class);
+
+    /**
+     * Gauge of the lag of each assigned queue, tagged by consumer group, topic, broker and queue id.
+     */
+    public static final String LAG_METRIC = "rocketmq.consumer.lag";
+    /**
+     * Gauge of the lag summed over all assigned queues, tagged by consumer group.
+     */
+    public static final String TOTAL_LAG_METRIC = "rocketmq.consumer.lag.total";
+
+    private final DefaultMQPushConsumer consumer;
+    private final MultiGauge queueLag;
+    private final AtomicLong totalLag = new AtomicLong();
+    private final HashedWheelTimer wheelTimer;
+    private final long refreshIntervalMs;
+    private volatile HashedWheelTimer.Timeout next;
+    private volatile boolean stopped;
+
+    public ConsumerLagMonitor(DefaultMQPushConsumer consumer, MeterRegistry meterRegistry, HashedWheelTimer wheelTimer,
+                              long refreshIntervalMs) {
+        this.consumer = consumer;
+        this.wheelTimer = wheelTimer;
+        this.refreshIntervalMs = refreshIntervalMs;
+        String group = consumer.getConsumerGroup();
+        this.queueLag = MultiGauge.builder(LAG_METRIC)
+                .description("Broker max offset minus committed offset, per assigned queue")
+                .baseUnit("messages")
+                .tag("group", group)
+                .register(meterRegistry);
+        Gauge.builder(TOTAL_LAG_METRIC, totalLag, AtomicLong::get)
+                .description("Broker max offset minus committed offset, summed over assigned queues")
+                .baseUnit("messages")
+                .tag("group", group)
+                .register(meterRegistry);
+        schedule();
+    }
+
+    /**
+     * Recomputes the lag of every queue currently assigned to this consumer instance.
+     * Queues that are no longer assigned are dropped from the gauge. Runs on the timer's task pool, the
+     * max offset lookups are short broker round-trips bounded by the client's request timeout.
+     */
+    void refresh() {
+        try {
+            // The consumer registered its client instance when it started, this looks it up by client id
+            MQClientInstance clientInstance = MQClientManager.getInstance().getOrCreateMQClientInstance(consumer);
+            MQConsumerInner consumerInner = clientInstance.selectConsumer(consumer.getConsumerGroup());
+            if (consumerInner == null) {
+                return;
+            }
+            List<MultiGauge.Row<?>> rows = new ArrayList<>();
+            long total = 0;
+            for (Map.Entry<MessageQueue, ProcessQueueInfo> entry : consumerInner.consumerRunningInfo().getMqTable().entrySet()) {
+                MessageQueue mq = entry.getKey();
+                try {
+                    long maxOffset = clientInstance.getMQAdminImpl().maxOffset(mq);
+                    long committedOffset = entry.getValue().getCommitOffset();
+                    long lag = committedOffset < 0 ? maxOffset : Math.max(0, maxOffset - committedOffset);
+                    total += lag;
+                    rows.add(MultiGauge.Row.of(Tags.of("topic", mq.getTopic(),
+                            "broker", mq.getBrokerName(),
+                            "queue", String.valueOf(mq.getQueueId())), lag));
+                } catch (Exception e) {
+                    log.debug("Failed to read offsets for queue: {}", mq, e);
+                }
+            }
+            queueLag.register(rows, true);
+            totalLag.set(total);
+        } catch (Exception e) {
+            log.warn("Failed to refresh consumer lag for group: {}", consumer.getConsumerGroup(), e);
+        } finally {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (stopped) {
+            return;
+        }
+        try {
+            next = wheelTimer.newTimeout(this::refresh, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Timer is stopped, no longer refreshing consumer lag for group: {}", consumer.getConsumerGroup());
+        }
+    }
+
+    @Override
+    public void close() {
+        stopped = true;
+        HashedWheelTimer.Timeout scheduled = next;
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.hubert.common.demo.rocketmq.consumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hubert.common.demo.limiter.ConcurrencyLimiter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records per-outcome consumption counters and processing-time histograms for a message consumer,
+ * and decides which messages get their payload written to the consumption trace.
+ * <p>
+ * All meters are registered once at construction so that recording on the consumer hot path is a plain
+ * array lookup followed by a lock-free increment.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/4 10:20
+ */
+public class ConsumerMetrics {
+    /**
+     * Counter of consumed messages, tagged by consumer group and {@link ConsumeOutcome}.
+     */
+    public static final String MESSAGES_METRIC = "rocketmq.consumer.messages";
+    /**
+     * Timer of the time spent consuming one message, tagged by consumer group and {@link ConsumeOutcome}.
+     */
+    public static final String PROCESS_METRIC = "rocketmq.consumer.process";
+    /**
+     * Timer of the time between the broker storing a message and the consumer starting to process it.
+     */
+    public static final String STORE_LATENCY_METRIC = "rocketmq.consumer.store.latency";
+    /**
+     * Timer of the time a message task spends queued in the consumer executor before it starts running.
+     */
+    public static final String QUEUE_WAIT_METRIC = "rocketmq.consumer.queue.wait";
+    /**
+     * Gauge of the concurrency permits currently held by running message tasks.
+     */
+    public static final String PERMITS_IN_USE_METRIC = "rocketmq.consumer.permits.in.use";
+    /**
+     * Gauge of the message tasks waiting in the consumer executor queue.
+     */
+    public static final String QUEUED_TASKS_METRIC = "rocketmq.consumer.queued.tasks";
+    /**
+     * Gauge of the current limit on concurrently processed messages.
+     */
+    public static final String CONCURRENCY_LIMIT_METRIC = "rocketmq.consumer.concurrency.limit";
+
+    private final Map<ConsumeOutcome, Counter> counters = new EnumMap<>(ConsumeOutcome.class);
+    private final Map<ConsumeOutcome, Timer> timers = new EnumMap<>(ConsumeOutcome.class);
+    private final Timer storeLatency;
+    private final Timer queueWait;
+    private final MeterRegistry meterRegistry;
+    private final String consumerGroup;
+
+    /**
+     * The fraction of messages, between 0 and 1, whose payload is written to the trace log
+     * when DEBUG logging is disabled.
+     */
+    private final double payloadSampleRate;
+
+    public ConsumerMetrics(MeterRegistry meterRegistry, String consumerGroup, double payloadSampleRate) {
+        for (ConsumeOutcome outcome : ConsumeOutcome.values()) {
+            counters.put(outcome, Counter.builder(MESSAGES_METRIC)
+                    .description("Messages consumed, by outcome")
+                    .tag("group", consumerGroup)
+                    .tag("outcome", outcome.tagValue())
+                    .register(meterRegistry));
+            timers.put(outcome, Timer.builder(PROCESS_METRIC)
+                    .description("Time spent consuming a single message, by outcome")
+                    .tag("group", consumerGroup)
+                    .tag("outcome", outcome.tagValue())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        this.storeLatency = Timer.builder(STORE_LATENCY_METRIC)
+                .description("Time from the broker storing a message to the consumer starting to process it")
+                .tag("group", consumerGroup)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueWait = Timer.builder(QUEUE_WAIT_METRIC)
+                .description("Time a message task waits in the consumer executor before running")
+                .tag("group", consumerGroup)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.meterRegistry = meterRegistry;
+        this.consumerGroup = consumerGroup;
+        this.payloadSampleRate = Math.max(0d, Math.min(1d, payloadSampleRate));
+    }
+
+    /**
+     * Registers gauges reporting how saturated the consumer's concurrency limit and executor are.
+     *
+     * @param limiter         the limiter bounding concurrently running message tasks
+     * @param executorService the executor message tasks are submitted to
+     */
+    public void bindSaturation(ConcurrencyLimiter limiter, ExecutorService executorService) {
+        Gauge.builder(PERMITS_IN_USE_METRIC, limiter, ConcurrencyLimiter::getInFlight)
+                .description("Concurrency permits held by running message tasks")
+                .tag("group", consumerGroup)
+                .register(meterRegistry);
+        Gauge.builder(CONCURRENCY_LIMIT_METRIC, limiter, ConcurrencyLimiter::getLimit)
+                .description("Current limit on concurrently processed messages")
+                .tag("group", consumerGroup)
+                .register(meterRegistry);
+        if (executorService instanceof ThreadPoolExecutor threadPoolExecutor) {
+            Gauge.builder(QUEUED_TASKS_METRIC, threadPoolExecutor, e -> e.getQueue().size())
+                    .description("Message tasks waiting in the consumer executor queue")
+                    .tag("group", consumerGroup)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Records how long ago the broker stored the message that is about to be processed.
+     *
+     * @param storeTimestamp the broker store timestamp of the message, in epoch milliseconds
+     */
+    public void recordStoreLatency(long storeTimestamp) {
+        if (storeTimestamp > 0) {
+            storeLatency.record(Math.max(0, System.currentTimeMillis() - storeTimestamp), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Records how long a message task waited in the executor queue.
+     *
+     * @param waitNanos the queue wait time, in nanoseconds
+     */
+    public void recordQueueWait(long waitNanos) {
+        queueWait.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the outcome of consuming one message.
+     *
+     * @param outcome      the outcome of the consumption
+     * @param elapsedNanos the time spent consuming the message, in nanoseconds
+     */
+    public void record(ConsumeOutcome outcome, long elapsedNanos) {
+        counters.get(outcome).increment();
+        timers.get(outcome).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Decides whether the payload of the current message is sampled into the trace log while DEBUG logging is
+     * disabled.
+     *
+     * @return true if the payload should be logged, false otherwise
+     */
+    public boolean samplePayload() {
+        return payloadSampleRate > 0d && ThreadLocalRandom.current().nextDouble() < payloadSampleRate;
+    }
+}
@@ -1,8 +1,13 @@
 package org.hubert.common.demo.rocketmq.consumer;
 
 import com.alibaba.fastjson2.JSON;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.properties.PackageBindOpPropertiesConsumer;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterStore;
 import org.hubert.common.demo.rocketmq.msg.DeviceOpMsg;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
@@ -18,8 +23,12 @@ import java.util.concurrent.ExecutorService;
 @Component
 public class DeviceOpConsumerHandler extends AbstractMessageConsumerHandler {
     public DeviceOpConsumerHandler(@Qualifier("packageBindOpConsumer") DefaultMQPushConsumer consumer,
-                                   @Qualifier("packageOpConsumerThreadPoolExecutor") ExecutorService executorService) {
-        super(consumer, executorService);
+                                   @Qualifier("packageOpConsumerThreadPoolExecutor") ExecutorService executorService,
+                                   PackageBindOpPropertiesConsumer properties,
+                                   MeterRegistry meterRegistry,
+                                   DeadLetterStore deadLetterStore,
+                                   HashedWheelTimer wheelTimer) {
+        super(consumer, executorService, properties, meterRegistry, deadLetterStore, wheelTimer);
     }
 
     @Override
@@ -27,15 +36,33 @@ public class DeviceOpConsumerHandler extends AbstractMessageConsumerHandler {
         try {
             DeviceOpMsg deviceOpMsg = JSON.parseObject(message, DeviceOpMsg.class);
             // business logic processing
-            log.info("Consumed message: " + deviceOpMsg);
+            log.debug("Consumed message: {}", deviceOpMsg);
             return true;
         } catch (Exception e) {
-            log.error("Failed to process message: " + message, e);
+            log.error("Failed to process message", e);
+            log.debug("Failed message payload: {}", message);
             // Processing failed, need to try again
             return false;
         }
     }
 
+    /**
+     * Gives every app its own quota, so one noisy app cannot starve the others. The app id is read from the
+     * user property the producer sets, the body is only parsed for messages sent before it did.
+     */
+    @Override
+    protected String bulkheadKey(MessageExt msg) {
+        String appId = msg.getUserProperty(DeviceOpMsg.APP_ID_PROPERTY);
+        if (appId != null) {
+            return appId;
+        }
+        try {
+            return JSON.parseObject(msg.getBody()).getString("appId");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     @Override
     protected boolean filterMessage(String message) {
         // Add custom filtering logic, such as whether the message content conforms to a certain format
@@ -0,0 +1,124 @@
+package org.hubert.common.demo.rocketmq.dlq;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Base class for dead letter stores that buffer parked letters in memory and write them in batches.
+ * <p>
+ * A background thread drains the buffer every flush interval, or sooner once a full batch is waiting.
+ * If the buffer is full the parking thread writes its letter itself, so a burst of failures slows the
+ * consumer down instead of dropping letters.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/6 10:20
+ */
+public abstract class AbstractBatchingDeadLetterStore implements DeadLetterStore {
+    private static final Logger log = LoggerFactory.getLogger(AbstractBatchingDeadLetterStore.class);
+
+    private final BlockingQueue<DeadLetter> buffer;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    protected AbstractBatchingDeadLetterStore(String name, int bufferCapacity, int batchSize, long flushIntervalMs) {
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-dlq-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts flushing the buffer periodically. Called once the concrete store is fully constructed, rather than
+     * from this constructor, so that the flusher never sees the fields of a subclass before they are assigned.
+     * Spring calls it when the store is a bean; stores created by hand must call it themselves.
+     */
+    @PostConstruct
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void park(DeadLetter deadLetter) {
+        if (!buffer.offer(deadLetter)) {
+            writeSafely(Collections.singletonList(deadLetter));
+            return;
+        }
+        if (buffer.size() >= batchSize) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        List<DeadLetter> batch = new ArrayList<>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            writeSafely(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        closeStore();
+    }
+
+    private void writeSafely(List<DeadLetter> batch) {
+        try {
+            synchronized (this) {
+                writeBatch(batch);
+            }
+        } catch (Exception e) {
+            for (DeadLetter deadLetter : batch) {
+                log.error("Failed to park dead letter, msgId: {}, keys: {}", deadLetter.getMsgId(), deadLetter.getKeys(), e);
+            }
+        }
+    }
+
+    /**
+     * Durably writes a batch of dead letters. Calls are serialized by the base class.
+     *
+     * @param batch the dead letters to write, never empty
+     * @throws Exception if the batch could not be written
+     */
+    protected abstract void writeBatch(List<DeadLetter> batch) throws Exception;
+
+    /**
+     * Releases the resources held by the concrete store once all buffered letters are written.
+     */
+    protected void closeStore() {
+    }
+}
@@ -0,0 +1,115 @@
+package org.hubert.common.demo.rocketmq.dlq;
+
+import lombok.Data;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageExt;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message that could not be consumed and has been parked for later inspection or replay.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/6 10:05
+ */
+@Data
+public class DeadLetter {
+    /**
+     * The topic the message was originally sent to, resolved from the retry topic if necessary.
+     */
+    private String topic;
+
+    /**
+     * The tags of the original message.
+     */
+    private String tags;
+
+    /**
+     * The keys of the original message, used to filter replays.
+     */
+    private String keys;
+
+    /**
+     * The message id assigned by the broker to the last delivery attempt.
+     */
+    private String msgId;
+
+    /**
+     * The consumer group that gave up on the message.
+     */
+    private String group;
+
+    /**
+     * The UTF-8 decoded message body.
+     */
+    private String body;
+
+    /**
+     * The number of times the message had been redelivered when it was parked.
+     */
+    private int reconsumeTimes;
+
+    /**
+     * When the message was parked, in epoch milliseconds.
+     */
+    private long parkedAt;
+
+    /**
+     * Why the message was parked.
+     */
+    private String reason;
+
+    /**
+     * Creates a dead letter from a message that a consumer could not process.
+     *
+     * @param msg    the message delivered to the consumer
+     * @param group  the consumer group that gave up on the message
+     * @param reason why the message is being parked
+     * @return a new dead letter
+     */
+    public static DeadLetter of(MessageExt msg, String group, String reason) {
+        DeadLetter deadLetter = new DeadLetter();
+        String retryTopic = msg.getProperty(MessageConst.PROPERTY_RETRY_TOPIC);
+        deadLetter.setTopic(retryTopic != null ? retryTopic : msg.getTopic());
+        deadLetter.setTags(msg.getTags());
+        deadLetter.setKeys(msg.getKeys());
+        deadLetter.setMsgId(msg.getMsgId());
+        deadLetter.setGroup(group);
+        deadLetter.setBody(new String(msg.getBody(), StandardCharsets.UTF_8));
+        deadLetter.setReconsumeTimes(msg.getReconsumeTimes());
+        deadLetter.setParkedAt(System.currentTimeMillis());
+        deadLetter.setReason(reason);
+        return deadLetter;
+    }
+
+    /**
+     * Creates a dead letter from a message that a producer could not send.
+     *
+     * @param msg    the message that was not sent
+     * @param group  the producer group that gave up on the message
+     * @param reason why the message is being parked
+     * @return a new dead letter
+     */
+    public static DeadLetter of(Message msg, String group, String reason) {
+        DeadLetter deadLetter = new DeadLetter();
+        deadLetter.setTopic(msg.getTopic());
+        deadLetter.setTags(msg.getTags());
+        deadLetter.setKeys(msg.getKeys());
+        deadLetter.setGroup(group);
+        deadLetter.setBody(new String(msg.getBody(), StandardCharsets.UTF_8));
+        deadLetter.setParkedAt(System.currentTimeMillis());
+        deadLetter.setReason(reason);
+        return deadLetter;
+    }
+
+    /**
+     * Rebuilds a fresh message addressed to the original topic, as used when replaying.
+     *
+     * @return a message carrying the original topic, tags, keys and body
+     */
+    public Message toMessage() {
+        return new Message(topic, tags, keys, body.getBytes(StandardCharsets.UTF_8));
+    }
+}
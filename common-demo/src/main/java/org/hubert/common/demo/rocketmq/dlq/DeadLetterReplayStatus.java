@@ -0,0 +1,57 @@
+package org.hubert.common.demo.rocketmq.dlq;
+
+import lombok.Data;
+
+import java.util.Set;
+
+/**
+ * The progress of a dead letter replay. Counters are only written by the replay thread.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/6 14:05
+ */
+@Data
+public class DeadLetterReplayStatus {
+    /**
+     * The state of the replay.
+     */
+    private volatile State state;
+
+    /**
+     * The message keys the replay is restricted to, empty if every parked letter is replayed.
+     */
+    private Set<String> keys;
+
+    /**
+     * The number of letters re-injected per second.
+     */
+    private int ratePerSecond;
+
+    /**
+     * The number of letters re-injected so far.
+     */
+    private volatile long replayed;
+
+    /**
+     * The number of selected letters that could not be re-injected and stay parked.
+     */
+    private volatile long failed;
+
+    /**
+     * When the replay started, in epoch milliseconds.
+     */
+    private long startedAt;
+
+    /**
+     * When the replay finished, in epoch milliseconds, or 0 while it is running.
+     */
+    private volatile long finishedAt;
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+}
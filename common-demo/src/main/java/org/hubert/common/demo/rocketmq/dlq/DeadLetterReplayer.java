@@ -0,0 +1,188 @@
+package org.hubert.common.demo.rocketmq.dlq;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.hubert.common.demo.enums.ResponseEnum;
+import org.hubert.common.demo.exceptions.CustomException;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.properties.DeadLetterProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Replays parked dead letters back onto their original topics at a bounded rate.
+ * <p>
+ * Only one replay runs at a time, on a dedicated thread, so a large backlog of dead letters cannot
+ * starve the consumers or flood the broker while the original failure is still being fixed.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/6 14:20
+ */
+@Component
+public class DeadLetterReplayer {
+    private static final Logger log = LoggerFactory.getLogger(DeadLetterReplayer.class);
+
+    private final DeadLetterStore deadLetterStore;
+    private final DefaultMQProducer producer;
+    private final DeadLetterProperties properties;
+    private final ExecutorService replayExecutor;
+    private final AtomicReference<DeadLetterReplayStatus> current = new AtomicReference<>();
+    private volatile boolean cancelled;
+
+    public DeadLetterReplayer(DeadLetterStore deadLetterStore,
+                              @Qualifier("packageBindOpProducer") DefaultMQProducer producer,
+                              DeadLetterProperties properties) {
+        this.deadLetterStore = deadLetterStore;
+        this.producer = producer;
+        this.properties = properties;
+        this.replayExecutor = ThreadPoolFactory.createThreadPool(1, 1, 1L, "dead-letter-replay",
+                TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Starts replaying the parked dead letters that carry any of the given keys.
+     *
+     * @param keys          the message keys to replay, or empty to replay every parked letter
+     * @param ratePerSecond the number of letters to re-inject per second, or null for the configured default
+     * @return the status of the started replay
+     * @throws CustomException            if a replay is already running
+     * @throws RejectedExecutionException if the replay thread refused the replay, for example during shutdown
+     */
+    public DeadLetterReplayStatus start(Set<String> keys, Integer ratePerSecond) {
+        DeadLetterReplayStatus status = new DeadLetterReplayStatus();
+        status.setState(DeadLetterReplayStatus.State.RUNNING);
+        status.setKeys(keys == null ? Collections.emptySet() : Set.copyOf(keys));
+        status.setRatePerSecond(ratePerSecond == null || ratePerSecond <= 0
+                ? properties.getReplayRatePerSecond() : ratePerSecond);
+        status.setStartedAt(System.currentTimeMillis());
+        DeadLetterReplayStatus previous = current.get();
+        if (previous != null && previous.getState() == DeadLetterReplayStatus.State.RUNNING
+                || !current.compareAndSet(previous, status)) {
+            throw new CustomException(ResponseEnum.DEAD_LETTER_REPLAY_RUNNING);
+        }
+        cancelled = false;
+        try {
+            replayExecutor.execute(() -> replay(status));
+        } catch (RejectedExecutionException e) {
+            // Otherwise the status would stay RUNNING and refuse every later replay
+            status.setState(DeadLetterReplayStatus.State.FAILED);
+            status.setFinishedAt(System.currentTimeMillis());
+            log.error("Dead letter replay could not be started, keys: {}", status.getKeys(), e);
+            throw e;
+        }
+        return snapshot(status);
+    }
+
+    /**
+     * Asks the running replay, if any, to stop. Letters not yet re-injected stay parked.
+     *
+     * @return the status of the last replay, or null if none was started
+     */
+    public DeadLetterReplayStatus cancel() {
+        cancelled = true;
+        return status();
+    }
+
+    /**
+     * Returns the status of the running or last finished replay.
+     *
+     * @return the status of the last replay, or null if none was started
+     */
+    public DeadLetterReplayStatus status() {
+        DeadLetterReplayStatus status = current.get();
+        return status == null ? null : snapshot(status);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        cancelled = true;
+        replayExecutor.shutdown();
+    }
+
+    private void replay(DeadLetterReplayStatus status) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / status.getRatePerSecond();
+        long[] nextSendAt = {System.nanoTime()};
+        Predicate<DeadLetter> filter = deadLetter -> matchesKeys(deadLetter, status.getKeys());
+        Predicate<DeadLetter> sink = deadLetter -> {
+            if (cancelled) {
+                return false;
+            }
+            long waitNanos = nextSendAt[0] - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            nextSendAt[0] = Math.max(nextSendAt[0], System.nanoTime() - intervalNanos) + intervalNanos;
+            if (reinject(deadLetter)) {
+                status.setReplayed(status.getReplayed() + 1);
+                return true;
+            }
+            status.setFailed(status.getFailed() + 1);
+            return false;
+        };
+        try {
+            deadLetterStore.replay(filter, sink);
+            status.setState(cancelled ? DeadLetterReplayStatus.State.CANCELLED : DeadLetterReplayStatus.State.COMPLETED);
+        } catch (Exception e) {
+            log.error("Failed to replay dead letters, keys: {}", status.getKeys(), e);
+            status.setState(DeadLetterReplayStatus.State.FAILED);
+        } finally {
+            status.setFinishedAt(System.currentTimeMillis());
+            log.info("Dead letter replay finished, state: {}, replayed: {}, failed: {}",
+                    status.getState(), status.getReplayed(), status.getFailed());
+        }
+    }
+
+    private boolean reinject(DeadLetter deadLetter) {
+        try {
+            SendResult sendResult = producer.send(deadLetter.toMessage());
+            return sendResult.getSendStatus() == SendStatus.SEND_OK;
+        } catch (Exception e) {
+            log.warn("Failed to re-inject dead letter, msgId: {}, keys: {}", deadLetter.getMsgId(), deadLetter.getKeys(), e);
+            return false;
+        }
+    }
+
+    private static boolean matchesKeys(DeadLetter deadLetter, Set<String> keys) {
+        if (keys.isEmpty()) {
+            return true;
+        }
+        if (deadLetter.getKeys() == null) {
+            return false;
+        }
+        for (String key : deadLetter.getKeys().split(MessageConst.KEY_SEPARATOR)) {
+            if (keys.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static DeadLetterReplayStatus snapshot(DeadLetterReplayStatus status) {
+        DeadLetterReplayStatus copy = new DeadLetterReplayStatus();
+        copy.setState(status.getState());
+        copy.setKeys(status.getKeys());
+        copy.setRatePerSecond(status.getRatePerSecond());
+        copy.setReplayed(status.getReplayed());
+        copy.setFailed(status.getFailed());
+        copy.setStartedAt(status.getStartedAt());
+        copy.setFinishedAt(status.getFinishedAt());
+        return copy;
+    }
+}
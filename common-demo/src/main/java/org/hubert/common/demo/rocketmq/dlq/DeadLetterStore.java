@@ -0,0 +1,41 @@
+package org.hubert.common.demo.rocketmq.dlq;
+
+import java.util.function.Predicate;
+
+/**
+ * Parks messages that exhausted their retry attempts and hands them back for replay.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/6 10:12
+ */
+public interface DeadLetterStore extends AutoCloseable {
+
+    /**
+     * Parks a dead letter. Implementations may buffer it and write it as part of a later batch.
+     *
+     * @param deadLetter the dead letter to park
+     */
+    void park(DeadLetter deadLetter);
+
+    /**
+     * Streams parked dead letters that match the filter to the sink, removing every letter the sink accepts.
+     * Letters that do not match, or that the sink refuses, stay parked.
+     *
+     * @param filter selects the dead letters to replay
+     * @param sink   receives each selected dead letter and returns true once it has been re-injected
+     * @return the number of dead letters accepted by the sink
+     */
+    long replay(Predicate<DeadLetter> filter, Predicate<DeadLetter> sink);
+
+    /**
+     * Writes any buffered dead letters.
+     */
+    void flush();
+
+    /**
+     * Flushes buffered dead letters and releases the resources held by the store.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,201 @@
+package org.hubert.common.demo.rocketmq.dlq;
+
+import com.alibaba.fastjson2.JSON;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * A dead letter store backed by append-only segment files in a local directory, one JSON document per line.
+ * <p>
+ * Letters are appended to an active segment which is sealed once it grows past the configured size.
+ * Replays seal the active segment and then stream the sealed segments one line at a time, so replaying
+ * millions of letters needs no more memory than a single letter. Letters that are not replayed are
+ * rewritten into a smaller segment that replaces the original.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/6 10:40
+ */
+public class FileDeadLetterStore extends AbstractBatchingDeadLetterStore {
+    private static final Logger log = LoggerFactory.getLogger(FileDeadLetterStore.class);
+
+    private static final String ACTIVE_SUFFIX = ".active";
+    private static final String SEALED_SUFFIX = ".log";
+    private static final String REWRITE_SUFFIX = ".rewrite";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+
+    private Path activeSegment;
+    private FileChannel activeChannel;
+    private BufferedWriter activeWriter;
+    private long segmentSequence;
+
+    public FileDeadLetterStore(String name, Path directory, long maxSegmentBytes,
+                               int bufferCapacity, int batchSize, long flushIntervalMs) {
+        super(name, bufferCapacity, batchSize, flushIntervalMs);
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        try {
+            Files.createDirectories(directory);
+            sealLeftoverSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare dead letter directory: " + directory, e);
+        }
+    }
+
+    @Override
+    protected void writeBatch(List<DeadLetter> batch) throws IOException {
+        if (activeWriter == null) {
+            openActiveSegment();
+        }
+        for (DeadLetter deadLetter : batch) {
+            activeWriter.write(JSON.toJSONString(deadLetter));
+            activeWriter.newLine();
+        }
+        activeWriter.flush();
+        activeChannel.force(false);
+        if (activeChannel.size() >= maxSegmentBytes) {
+            sealActiveSegment();
+        }
+    }
+
+    @Override
+    public long replay(Predicate<DeadLetter> filter, Predicate<DeadLetter> sink) {
+        flush();
+        synchronized (this) {
+            try {
+                sealActiveSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to seal active dead letter segment", e);
+            }
+        }
+        long replayed = 0;
+        for (Path segment : sealedSegments()) {
+            replayed += replaySegment(segment, filter, sink);
+        }
+        return replayed;
+    }
+
+    @Override
+    protected synchronized void closeStore() {
+        try {
+            sealActiveSegment();
+        } catch (IOException e) {
+            log.error("Failed to seal active dead letter segment: {}", activeSegment, e);
+        }
+    }
+
+    private long replaySegment(Path segment, Predicate<DeadLetter> filter, Predicate<DeadLetter> sink) {
+        Path rewrite = segment.resolveSibling(segment.getFileName() + REWRITE_SUFFIX);
+        long replayed = 0;
+        long retained = 0;
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(rewrite, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                DeadLetter deadLetter = JSON.parseObject(line, DeadLetter.class);
+                if (filter.test(deadLetter) && sink.test(deadLetter)) {
+                    replayed++;
+                } else {
+                    writer.write(line);
+                    writer.newLine();
+                    retained++;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to replay dead letter segment: {}", segment, e);
+            deleteQuietly(rewrite);
+            return replayed;
+        }
+        try {
+            if (retained > 0) {
+                Files.move(rewrite, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.delete(segment);
+                deleteQuietly(rewrite);
+            }
+        } catch (IOException e) {
+            log.error("Failed to compact dead letter segment: {}, replayed letters may be replayed again", segment, e);
+        }
+        return replayed;
+    }
+
+    private void openActiveSegment() throws IOException {
+        activeSegment = directory.resolve(String.format("dlq-%d-%06d%s",
+                System.currentTimeMillis(), segmentSequence++, ACTIVE_SUFFIX));
+        activeChannel = FileChannel.open(activeSegment,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeWriter = new BufferedWriter(Channels.newWriter(activeChannel, StandardCharsets.UTF_8));
+    }
+
+    private void sealActiveSegment() throws IOException {
+        if (activeWriter == null) {
+            return;
+        }
+        activeWriter.close();
+        seal(activeSegment);
+        activeWriter = null;
+        activeChannel = null;
+        activeSegment = null;
+    }
+
+    /**
+     * Seals active segments left behind by a previous run and drops unfinished rewrites,
+     * whose source segments are still intact.
+     */
+    private void sealLeftoverSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(ACTIVE_SUFFIX)) {
+                    seal(file);
+                } else if (fileName.endsWith(REWRITE_SUFFIX)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private void seal(Path segment) throws IOException {
+        String fileName = segment.getFileName().toString();
+        String sealedName = fileName.substring(0, fileName.length() - ACTIVE_SUFFIX.length()) + SEALED_SUFFIX;
+        Files.move(segment, segment.resolveSibling(sealedName), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<Path> sealedSegments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SEALED_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list dead letter segments in: " + directory, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete file: {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.hubert.common.demo.rocketmq.dlq;
+
+import com.alibaba.fastjson2.JSON;
+import org.apache.rocketmq.client.consumer.DefaultLitePullConsumer;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A dead letter store that parks letters on a dedicated RocketMQ topic, sending each buffered batch as a
+ * single batch message.
+ * <p>
+ * Replays drain the topic with a lite pull consumer up to the letters stored when the replay started.
+ * Letters that are not selected, or that could not be re-injected, are parked again so that they stay
+ * available to later replays without being picked up twice by the running one.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/6 11:10
+ */
+public class TopicDeadLetterStore extends AbstractBatchingDeadLetterStore {
+    private static final Logger log = LoggerFactory.getLogger(TopicDeadLetterStore.class);
+
+    /**
+     * The broker rejects batch messages larger than 4 MiB, leave room for message properties.
+     */
+    private static final int MAX_BATCH_BYTES = 1024 * 1024;
+
+    /**
+     * How long a replay waits for more letters before it considers the topic drained.
+     */
+    private static final long REPLAY_POLL_TIMEOUT_MS = 3000L;
+
+    private final DefaultMQProducer producer;
+    private final String topic;
+    private final String nameServer;
+    private final String replayGroup;
+
+    public TopicDeadLetterStore(String name, DefaultMQProducer producer, String topic, String nameServer,
+                                int bufferCapacity, int batchSize, long flushIntervalMs) {
+        super(name, bufferCapacity, batchSize, flushIntervalMs);
+        this.producer = producer;
+        this.topic = topic;
+        this.nameServer = nameServer;
+        this.replayGroup = name + "-dlq-replay";
+    }
+
+    @Override
+    protected void writeBatch(List<DeadLetter> batch) throws Exception {
+        List<Message> messages = new ArrayList<>(batch.size());
+        int batchBytes = 0;
+        for (DeadLetter deadLetter : batch) {
+            byte[] body = JSON.toJSONString(deadLetter).getBytes(StandardCharsets.UTF_8);
+            if (!messages.isEmpty() && batchBytes + body.length > MAX_BATCH_BYTES) {
+                producer.send(messages);
+                messages = new ArrayList<>(batch.size());
+                batchBytes = 0;
+            }
+            messages.add(new Message(topic, null, deadLetter.getKeys(), body));
+            batchBytes += body.length;
+        }
+        producer.send(messages);
+    }
+
+    @Override
+    public long replay(Predicate<DeadLetter> filter, Predicate<DeadLetter> sink) {
+        flush();
+        long replayStartedAt = System.currentTimeMillis();
+        DefaultLitePullConsumer pullConsumer = new DefaultLitePullConsumer(replayGroup);
+        pullConsumer.setNamesrvAddr(nameServer);
+        pullConsumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_FIRST_OFFSET);
+        pullConsumer.setAutoCommit(false);
+        Map<MessageQueue, Long> nextOffsets = new HashMap<>();
+        Set<MessageQueue> drainedQueues = new HashSet<>();
+        long replayed = 0;
+        try {
+            pullConsumer.subscribe(topic, "*");
+            pullConsumer.start();
+            List<MessageExt> polled;
+            while (!(polled = pullConsumer.poll(REPLAY_POLL_TIMEOUT_MS)).isEmpty()) {
+                for (MessageExt msg : polled) {
+                    MessageQueue mq = new MessageQueue(msg.getTopic(), msg.getBrokerName(), msg.getQueueId());
+                    if (drainedQueues.contains(mq)) {
+                        continue;
+                    }
+                    if (msg.getStoreTimestamp() >= replayStartedAt) {
+                        // Parked after this replay started, including letters re-parked by the replay itself
+                        drainedQueues.add(mq);
+                        pullConsumer.pause(Collections.singleton(mq));
+                        continue;
+                    }
+                    DeadLetter deadLetter = JSON.parseObject(new String(msg.getBody(), StandardCharsets.UTF_8), DeadLetter.class);
+                    if (filter.test(deadLetter) && sink.test(deadLetter)) {
+                        replayed++;
+                    } else {
+                        park(deadLetter);
+                    }
+                    nextOffsets.put(mq, msg.getQueueOffset() + 1);
+                }
+                flush();
+                pullConsumer.commit(new HashMap<>(nextOffsets), true);
+            }
+        } catch (Exception e) {
+            log.error("Failed to replay dead letters from topic: {}", topic, e);
+        } finally {
+            pullConsumer.shutdown();
+        }
+        return replayed;
+    }
+}
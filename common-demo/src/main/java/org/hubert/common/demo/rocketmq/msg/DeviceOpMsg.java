@@ -12,6 +12,11 @@ import lombok.Data;
  */
 @Data
 public class DeviceOpMsg {
+    /**
+     * The user property the app id is copied to, so consumers can find it without parsing the body.
+     */
+    public static final String APP_ID_PROPERTY = "appId";
+
     /**
      * App ID
      */
@@ -2,9 +2,16 @@ package org.hubert.common.demo.rocketmq.producer;
 
 import jakarta.annotation.PreDestroy;
 import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.hubert.common.demo.lifecycle.Drainable;
 import org.hubert.common.demo.properties.MQProducerOperationProperties;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetter;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * AbstractMessageProducerHandler is an abstract class that provides base functionality
@@ -15,21 +22,38 @@ import java.util.concurrent.ThreadPoolExecutor;
  * provides common implementations for retrieving the producer, properties,
  * and executor service. Additionally, it handles the graceful shutdown
  * of the producer and executor service upon destruction.
+ * <p>
+ * As a {@link Drainable}, the handler lets the queued asynchronous sends finish when the application shuts
+ * down, and spools the ones that did not finish in time to the dead letter store, if one is given, so they
+ * can be replayed. The producer is only shut down after its executor has drained.
  *
  * @author hubertwong
  * @version 1.0
  * @since 2024/9/20 14:55
  */
-public abstract class AbstractMessageProducerHandler implements MessageProducerHandler {
+public abstract class AbstractMessageProducerHandler implements MessageProducerHandler, Drainable {
+    private static final Logger log = LoggerFactory.getLogger(AbstractMessageProducerHandler.class);
+    /**
+     * How long the executor may take to drain when the handler is destroyed without a prior drain.
+     */
+    private static final long DESTROY_DRAIN_TIMEOUT_MS = 5000L;
+
     protected final DefaultMQProducer producer;
     protected final MQProducerOperationProperties properties;
     protected final ThreadPoolExecutor executorService;
+    private final DeadLetterStore spool;
 
     public AbstractMessageProducerHandler(DefaultMQProducer producer, MQProducerOperationProperties properties,
                                           ThreadPoolExecutor executorService) {
+        this(producer, properties, executorService, null);
+    }
+
+    public AbstractMessageProducerHandler(DefaultMQProducer producer, MQProducerOperationProperties properties,
+                                          ThreadPoolExecutor executorService, DeadLetterStore spool) {
         this.producer = producer;
         this.properties = properties;
         this.executorService = executorService;
+        this.spool = spool;
     }
 
     @Override
@@ -47,13 +71,68 @@ public abstract class AbstractMessageProducerHandler implements MessageProducerH
         return this.executorService;
     }
 
+    @Override
+    public String getDrainName() {
+        return "producer " + producer.getProducerGroup();
+    }
+
+    @Override
+    public void startDrain() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+
+    @Override
+    public boolean awaitDrained(long deadlineNanos) throws InterruptedException {
+        return executorService == null
+                || executorService.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int spoolLeftovers() {
+        if (executorService == null) {
+            return 0;
+        }
+        List<Runnable> leftovers = executorService.shutdownNow();
+        int spooled = 0;
+        for (Runnable leftover : leftovers) {
+            if (!(leftover instanceof PendingSend pendingSend)) {
+                continue;
+            }
+            if (spool == null) {
+                log.error("Dropped unsent message on shutdown, keys: {}", pendingSend.getMessage().getKeys());
+                continue;
+            }
+            try {
+                spool.park(DeadLetter.of(pendingSend.getMessage(), producer.getProducerGroup(), "Not sent before shutdown"));
+                spooled++;
+            } catch (Exception e) {
+                log.error("Failed to spool unsent message, keys: {}", pendingSend.getMessage().getKeys(), e);
+            }
+        }
+        return spooled;
+    }
+
     @PreDestroy
     public void shutDownProducer() {
+        if (executorService != null && !executorService.isTerminated()) {
+            startDrain();
+            boolean drained = false;
+            try {
+                drained = awaitDrained(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DESTROY_DRAIN_TIMEOUT_MS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!drained) {
+                spoolLeftovers();
+                if (spool != null) {
+                    spool.flush();
+                }
+            }
+        }
         if (producer != null) {
             producer.shutdown();
         }
-        if (executorService != null) {
-            executorService.shutdown();
-        }
     }
 }
@@ -5,6 +5,7 @@ import org.apache.rocketmq.client.producer.SendResult;
 import org.apache.rocketmq.common.message.Message;
 import org.hubert.common.demo.locks.DistributedLock;
 import org.hubert.common.demo.properties.MQProducerOperationProperties;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterStore;
 
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -29,21 +30,40 @@ public class DistributedLockMessageProducerHandler extends AbstractMessageProduc
                                                  ThreadPoolExecutor executorService,
                                                  DistributedLock distributedLock,
                                                  String lockKeyPrefix) {
-        super(producer, properties, executorService);
+        this(producer, properties, executorService, distributedLock, lockKeyPrefix, null);
+    }
+
+    public DistributedLockMessageProducerHandler(DefaultMQProducer producer,
+                                                 MQProducerOperationProperties properties,
+                                                 ThreadPoolExecutor executorService,
+                                                 DistributedLock distributedLock,
+                                                 String lockKeyPrefix,
+                                                 DeadLetterStore spool) {
+        super(producer, properties, executorService, spool);
         this.distributedLock = distributedLock;
         this.lockKeyPrefix = lockKeyPrefix;
     }
 
     @Override
     public SendResult sendMessageSync(String topic, String tags, String keys, byte[] body, int delayTimeLevel) {
-        Message message = createMessage(topic, tags, keys, body, delayTimeLevel);
+        return sendMessageSync(createMessage(topic, tags, keys, body, delayTimeLevel));
+    }
+
+    @Override
+    public void sendMessageAsync(String topic, String tags, String keys, byte[] body, int delayTimeLevel) {
+        sendMessageAsync(createMessage(topic, tags, keys, body, delayTimeLevel));
+    }
+
+    @Override
+    public SendResult sendMessageSync(Message message) {
+        String keys = message.getKeys();
         String lockKey = lockKeyPrefix + keys;
         return distributedLock.tryLock(lockKey, () -> sendMessageInternalSync(message, keys));
     }
 
     @Override
-    public void sendMessageAsync(String topic, String tags, String keys, byte[] body, int delayTimeLevel) {
-        Message message = createMessage(topic, tags, keys, body, delayTimeLevel);
+    public void sendMessageAsync(Message message) {
+        String keys = message.getKeys();
         String lockKey = lockKeyPrefix + keys;
         distributedLock.tryLock(lockKey, () -> {
             sendMessageInternalAsync(message, keys);
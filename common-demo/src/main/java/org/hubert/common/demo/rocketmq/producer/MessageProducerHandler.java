@@ -7,6 +7,7 @@ import org.hubert.common.demo.properties.MQProducerOperationProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
@@ -44,6 +45,21 @@ public interface MessageProducerHandler {
      */
     void sendMessageAsync(String topic, String tags, String keys, byte[] body, int delayTimeLevel);
 
+    /**
+     * Sends a message built by the caller synchronously, for messages that carry user properties.
+     *
+     * @param message the message to be sent, routed by its keys
+     * @return the result of the message send operation, represented by a {@code SendResult} object
+     */
+    SendResult sendMessageSync(Message message);
+
+    /**
+     * Sends a message built by the caller asynchronously, for messages that carry user properties.
+     *
+     * @param message the message to be sent, routed by its keys
+     */
+    void sendMessageAsync(Message message);
+
     /**
      * Retrieves the DefaultMQProducer instance used for producing messages.
      *
@@ -102,16 +118,23 @@ public interface MessageProducerHandler {
 
     /**
      * Sends a message asynchronously using the specified message and keys.
+     * <p>
+     * Once the executor is shut down the message is sent on the calling thread instead, so sends requested
+     * while the application drains are not lost.
      *
      * @param message the message to be sent
      * @param keys    the keys used to route the message
      */
     default void sendMessageInternalAsync(Message message, String keys) {
         ThreadPoolExecutor executorService = getExecutorService();
-        if (executorService != null) {
-            executorService.submit(() -> sendMessageInternalSync(message, keys));
-        } else {
-            sendMessageInternalSync(message, keys);
+        if (executorService != null && !executorService.isShutdown()) {
+            try {
+                executorService.execute(new PendingSend(this, message, keys));
+                return;
+            } catch (RejectedExecutionException e) {
+                logger.warn("Producer executor refused message, sending synchronously, keys: {}", keys);
+            }
         }
+        sendMessageInternalSync(message, keys);
     }
 }
\ No newline at end of file
@@ -4,12 +4,15 @@ import com.alibaba.fastjson2.JSON;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.producer.DefaultMQProducer;
 import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.common.message.Message;
 import org.hubert.common.demo.locks.DistributedLock;
 import org.hubert.common.demo.properties.PackageBindOpPropertiesProducer;
 import org.hubert.common.demo.properties.RedisKeyProperties;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterStore;
 import org.hubert.common.demo.rocketmq.msg.DeviceOpMsg;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -33,8 +36,10 @@ public class PackageBindOpProducerHandler extends DistributedLockMessageProducer
             PackageBindOpPropertiesProducer properties,
             @Qualifier("packageOpThreadPoolExecutor") ThreadPoolExecutor executorService,
             DistributedLock distributedLock,
-            RedisKeyProperties redisKeyProperties) {
-        super(packageBindOpProducer, properties, executorService, distributedLock, redisKeyProperties.getPackageChangeMsg());
+            RedisKeyProperties redisKeyProperties,
+            DeadLetterStore deadLetterStore) {
+        super(packageBindOpProducer, properties, executorService, distributedLock,
+                redisKeyProperties.getPackageChangeMsg(), deadLetterStore);
         this.properties = properties;
     }
 
@@ -45,9 +50,7 @@ public class PackageBindOpProducerHandler extends DistributedLockMessageProducer
      * @return the result of the send operation
      */
     public SendResult sendSync(DeviceOpMsg deviceOpMsg) {
-        byte[] body = JSON.toJSONString(deviceOpMsg).getBytes();
-        return sendMessageSync(properties.getTopic(), properties.getTag(),
-                deviceOpMsg.getUserCode() + deviceOpMsg.getPackageId(), body, 0);
+        return sendMessageSync(createMessage(deviceOpMsg));
     }
 
     /**
@@ -56,8 +59,20 @@ public class PackageBindOpProducerHandler extends DistributedLockMessageProducer
      * @param deviceOpMsg the user device operation message that needs to be sent
      */
     public void sendAsync(DeviceOpMsg deviceOpMsg) {
+        sendMessageAsync(createMessage(deviceOpMsg));
+    }
+
+    /**
+     * Builds the message for a user device operation, copying the app id to a user property so that the
+     * consumer can pick the bulkhead key without parsing the body.
+     */
+    private Message createMessage(DeviceOpMsg deviceOpMsg) {
         byte[] body = JSON.toJSONString(deviceOpMsg).getBytes();
-        sendMessageAsync(properties.getTopic(), properties.getTag(),
+        Message message = createMessage(properties.getTopic(), properties.getTag(),
                 deviceOpMsg.getUserCode() + deviceOpMsg.getPackageId(), body, 0);
+        if (StringUtils.hasText(deviceOpMsg.getAppId())) {
+            message.putUserProperty(DeviceOpMsg.APP_ID_PROPERTY, deviceOpMsg.getAppId());
+        }
+        return message;
     }
 }
\ No newline at end of file
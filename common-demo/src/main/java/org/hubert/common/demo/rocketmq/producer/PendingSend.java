@@ -0,0 +1,32 @@
+package org.hubert.common.demo.rocketmq.producer;
+
+import org.apache.rocketmq.common.message.Message;
+
+/**
+ * An asynchronous send waiting in a producer's executor, keeping the message so that it can be spooled if the
+ * send never runs.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/11 10:40
+ */
+final class PendingSend implements Runnable {
+    private final MessageProducerHandler handler;
+    private final Message message;
+    private final String keys;
+
+    PendingSend(MessageProducerHandler handler, Message message, String keys) {
+        this.handler = handler;
+        this.message = message;
+        this.keys = keys;
+    }
+
+    Message getMessage() {
+        return message;
+    }
+
+    @Override
+    public void run() {
+        handler.sendMessageInternalSync(message, keys);
+    }
+}
@@ -25,13 +25,21 @@ public class UnlockedMessageProducerHandler extends AbstractMessageProducerHandl
 
     @Override
     public SendResult sendMessageSync(String topic, String tags, String keys, byte[] body, int delayTimeLevel) {
-        Message message = createMessage(topic, tags, keys, body, delayTimeLevel);
-        return sendMessageInternalSync(message, keys);
+        return sendMessageSync(createMessage(topic, tags, keys, body, delayTimeLevel));
     }
 
     @Override
     public void sendMessageAsync(String topic, String tags, String keys, byte[] body, int delayTimeLevel) {
-        Message message = createMessage(topic, tags, keys, body, delayTimeLevel);
-        sendMessageInternalAsync(message, keys);
+        sendMessageAsync(createMessage(topic, tags, keys, body, delayTimeLevel));
+    }
+
+    @Override
+    public SendResult sendMessageSync(Message message) {
+        return sendMessageInternalSync(message, message.getKeys());
+    }
+
+    @Override
+    public void sendMessageAsync(Message message) {
+        sendMessageInternalAsync(message, message.getKeys());
     }
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+package org.hubert.common.demo.security;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.JwkSet;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.PublicJwk;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import lombok.extern.slf4j.Slf4j;
+import org.hubert.common.demo.properties.JwtSigningProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The keys JWTs are signed and verified with in the asymmetric modes of {@link JwtTokenProvider}.
+ * <p>
+ * New tokens are signed with the private key of {@code jwt.signing.key-id}, whose id is written to their
+ * {@code kid} header. Tokens are verified with the public key their {@code kid} names, so several keys can be
+ * active at once and a key can be rotated without invalidating the tokens signed with the previous one. The
+ * public keys are decoded once and looked up in an immutable map, so verification takes no lock.
+ * <p>
+ * Nodes that only verify tokens hold public keys only. They are either configured or fetched from the key set
+ * served by the signing nodes; a token naming an unknown key triggers a new fetch, at most once per
+ * {@code jwt.signing.jwks-refresh-interval-ms}, so a rotation reaches them without a restart.
+ * <p>
+ * When no key is configured on a signing node, an ephemeral key is generated at startup. Tokens signed with it
+ * are not accepted by other nodes and do not survive a restart, so it only suits local development.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 10:30
+ */
+@Slf4j
+@Component
+public class JwtKeySet extends LocatorAdapter<Key> {
+    private static final Duration JWKS_TIMEOUT = Duration.ofSeconds(5);
+
+    private final JwtSigningProperties properties;
+    private final SignatureAlgorithm signatureAlgorithm;
+    private final Map<String, PublicKey> configuredKeys;
+    private final String jwksJson;
+    private final HttpClient httpClient;
+    private String signingKeyId;
+    private PrivateKey signingKey;
+
+    /**
+     * The configured keys and the ones fetched from {@code jwt.signing.jwks-uri}, replaced as a whole on every
+     * fetch.
+     */
+    private volatile Map<String, PublicKey> publicKeys;
+    private long lastFetchNanos;
+
+    public JwtKeySet(JwtSigningProperties properties) {
+        this.properties = properties;
+        this.signatureAlgorithm = switch (properties.getAlgorithm()) {
+            case EdDSA -> Jwts.SIG.EdDSA;
+            case ES256 -> Jwts.SIG.ES256;
+            case HS512 -> null;
+        };
+        Map<String, PublicKey> keys = new LinkedHashMap<>();
+        if (signatureAlgorithm != null) {
+            loadConfiguredKeys(keys);
+        }
+        this.configuredKeys = Map.copyOf(keys);
+        this.publicKeys = configuredKeys;
+        this.jwksJson = toJwksJson(keys);
+        if (signatureAlgorithm != null && StringUtils.hasText(properties.getJwksUri())) {
+            this.httpClient = HttpClient.newBuilder().connectTimeout(JWKS_TIMEOUT).build();
+            refresh();
+        } else {
+            this.httpClient = null;
+        }
+    }
+
+    /**
+     * Signs the token with the current signing key and writes the key id to its {@code kid} header.
+     *
+     * @param builder the token to sign
+     * @return the builder
+     * @throws IllegalStateException if the node only verifies tokens
+     */
+    public JwtBuilder signWith(JwtBuilder builder) {
+        if (signingKey == null) {
+            throw new IllegalStateException("This node only verifies tokens and holds no signing key");
+        }
+        return builder.header().keyId(signingKeyId).and().signWith(signingKey, signatureAlgorithm);
+    }
+
+    /**
+     * Returns the public keys of this node as a JSON Web Key Set, for the nodes verifying its tokens.
+     *
+     * @return the key set JSON
+     */
+    public String toJson() {
+        return jwksJson;
+    }
+
+    /**
+     * Returns the public key the {@code kid} header of the token names, fetching the key set again if the key is
+     * unknown and the last fetch is old enough.
+     *
+     * @param header the header of the token
+     * @return the key to verify the token with
+     */
+    @Override
+    protected Key locate(JwsHeader header) {
+        String kid = header.getKeyId();
+        if (kid == null) {
+            throw new MalformedJwtException("The token has no key id");
+        }
+        PublicKey key = publicKeys.get(kid);
+        if (key == null && httpClient != null && refreshIfDue()) {
+            key = publicKeys.get(kid);
+        }
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown key id: " + kid);
+        }
+        return key;
+    }
+
+    private synchronized boolean refreshIfDue() {
+        if (System.nanoTime() - lastFetchNanos
+                < TimeUnit.MILLISECONDS.toNanos(properties.getJwksRefreshIntervalMs())) {
+            return false;
+        }
+        refresh();
+        return true;
+    }
+
+    /**
+     * Fetches the key set from {@code jwt.signing.jwks-uri}, keeping the keys known so far if the fetch fails.
+     */
+    private synchronized void refresh() {
+        lastFetchNanos = System.nanoTime();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(properties.getJwksUri()))
+                    .timeout(JWKS_TIMEOUT)
+                    .GET()
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                log.warn("Failed to fetch the JWT key set from {}, status: {}", properties.getJwksUri(),
+                        response.statusCode());
+                return;
+            }
+            JwkSet jwkSet = Jwks.setParser().build().parse(response.body());
+            Map<String, PublicKey> keys = new LinkedHashMap<>();
+            for (Jwk<?> jwk : jwkSet) {
+                if (jwk instanceof PublicJwk<?> publicJwk && jwk.getId() != null) {
+                    keys.put(jwk.getId(), publicJwk.toKey());
+                }
+            }
+            keys.putAll(configuredKeys);
+            publicKeys = Map.copyOf(keys);
+            log.info("Fetched the JWT key set from {}, key ids: {}", properties.getJwksUri(), keys.keySet());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while fetching the JWT key set from {}", properties.getJwksUri());
+        } catch (Exception e) {
+            log.warn("Failed to fetch the JWT key set from {}", properties.getJwksUri(), e);
+        }
+    }
+
+    private void loadConfiguredKeys(Map<String, PublicKey> keys) {
+        for (JwtSigningProperties.Key key : properties.getKeys()) {
+            if (!StringUtils.hasText(key.getKid()) || !StringUtils.hasText(key.getPublicKey())) {
+                throw new IllegalStateException("Every jwt.signing.keys entry needs a kid and a public-key");
+            }
+            keys.put(key.getKid(), decodePublicKey(key.getPublicKey()));
+            if (key.getKid().equals(properties.getKeyId()) && StringUtils.hasText(key.getPrivateKey())) {
+                signingKeyId = key.getKid();
+                signingKey = decodePrivateKey(key.getPrivateKey());
+            }
+        }
+        if (properties.isVerifyOnly()) {
+            signingKeyId = null;
+            signingKey = null;
+            return;
+        }
+        if (signingKey == null && keys.isEmpty() && !StringUtils.hasText(properties.getKeyId())) {
+            KeyPair keyPair = generateKeyPair();
+            signingKeyId = UUID.randomUUID().toString();
+            signingKey = keyPair.getPrivate();
+            keys.put(signingKeyId, keyPair.getPublic());
+            log.warn("No JWT signing key is configured, signing with the ephemeral key {}. Its tokens are only "
+                    + "accepted by this node until it restarts", signingKeyId);
+        }
+        if (signingKey == null) {
+            throw new IllegalStateException("jwt.signing.key-id must name a jwt.signing.keys entry with a "
+                    + "private-key, or jwt.signing.verify-only must be set");
+        }
+    }
+
+    private KeyPair generateKeyPair() {
+        return signatureAlgorithm == Jwts.SIG.EdDSA
+                ? Jwks.CRV.Ed25519.keyPair().build()
+                : signatureAlgorithm.keyPair().build();
+    }
+
+    private PublicKey decodePublicKey(String encoded) {
+        try {
+            return keyFactory().generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid JWT public key", e);
+        }
+    }
+
+    private PrivateKey decodePrivateKey(String encoded) {
+        try {
+            return keyFactory().generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid JWT private key", e);
+        }
+    }
+
+    private KeyFactory keyFactory() throws GeneralSecurityException {
+        return KeyFactory.getInstance(signatureAlgorithm == Jwts.SIG.EdDSA ? "Ed25519" : "EC");
+    }
+
+    private static String toJwksJson(Map<String, PublicKey> keys) {
+        StringJoiner joiner = new StringJoiner(",", "{\"keys\":[", "]}");
+        keys.forEach((kid, key) -> joiner.add(Jwks.json(Jwks.builder().key(key).id(kid).publicKeyUse("sig").build())));
+        return joiner.toString();
+    }
+}
@@ -1,10 +1,16 @@
 package org.hubert.common.demo.security;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
-import io.jsonwebtoken.security.SecureDigestAlgorithm;
 import lombok.Getter;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hubert.common.demo.properties.JwtSigningProperties;
 import org.hubert.common.demo.service.impl.UserDetailsImpl;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
@@ -16,22 +22,32 @@ import java.util.Date;
 
 /**
  * Provides utilities for generating, parsing, and validating JWT (JSON Web Tokens).
- * This component utilizes a secret key for token encryption and decryption.
+ * With {@code jwt.signing.algorithm} HS512 this component utilizes a secret key for token encryption and
+ * decryption. With EdDSA or ES256 tokens are signed with a private key and verified with the public keys of the
+ * {@link JwtKeySet}, so that nodes which only verify tokens do not need to hold the secret.
+ * <p>
+ * The keys are decoded and the parser built once at startup; both are immutable and shared by all threads.
  *
  * @author hubertwong
  * @version 1.0
  * @since 2024/10/29 23:11
  */
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class JwtTokenProvider {
+    /**
+     * The claim holding the version of the token, compared with the current version of its user by
+     * {@link org.hubert.common.demo.service.JwtTokenService}.
+     */
+    public static final String VERSION_CLAIM = "ver";
 
     /**
      * Secret key used for JWT (JSON Web Token) encryption and decryption.
      * This value is injected from the application properties using the key "jwt.secret".
      * Make sure that keys used with HMAC-SHA algorithms MUST have a size >= 512 bits
      */
-    @Value("${jwt.secret}")
+    @Value("${jwt.secret:}")
     private String jwtSecret;
 
     /**
@@ -43,48 +59,102 @@ public class JwtTokenProvider {
     private int jwtExpirationInMs;
 
     /**
-     * Decodes the JWT secret key from its Base64 encoded form and returns it as a SecretKey instance.
-     *
-     * @return a SecretKey object derived from the Base64 encoded JWT secret.
+     * The signature algorithm and the asymmetric keys.
+     */
+    private final JwtSigningProperties signingProperties;
+
+    /**
+     * The keys of the asymmetric algorithms, selected by the {@code kid} header of each token.
+     */
+    private final JwtKeySet jwtKeySet;
+
+    /**
+     * The signing key decoded from {@link #jwtSecret}, used by HS512 only.
      */
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = Base64.getDecoder().decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private SecretKey signingKey;
+
+    /**
+     * The parser verifying tokens with {@link #signingKey} or the keys of {@link #jwtKeySet}, thread-safe and
+     * reused for every token.
+     */
+    private JwtParser jwtParser;
+
+    /**
+     * Builds the parser verifying tokens, with the JWT secret key decoded from its Base64 encoded form for HS512
+     * or with the public keys of the key set otherwise.
+     */
+    @PostConstruct
+    public void init() {
+        if (signingProperties.getAlgorithm() == JwtSigningProperties.Algorithm.HS512) {
+            byte[] keyBytes = Base64.getDecoder().decode(jwtSecret);
+            signingKey = Keys.hmacShaKeyFor(keyBytes);
+            jwtParser = Jwts.parser().verifyWith(signingKey).build();
+        } else {
+            jwtParser = Jwts.parser().keyLocator(jwtKeySet).build();
+        }
     }
 
     /**
      * Generates a JWT (JSON Web Token) for the authenticated user.
      *
      * @param authentication the authentication object containing the user's authentication details.
+     * @param version        the token version of the user, from {@code JwtTokenService.rotate}.
      * @return a JWT token string.
+     * @throws IllegalStateException if the node only verifies tokens.
      */
-    public String generateToken(Authentication authentication) {
+    public String generateToken(Authentication authentication, long version) {
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
-        SecretKey key = getSigningKey();
-        SecureDigestAlgorithm<? super SecretKey, ?> alg = Jwts.SIG.HS512;
-        return Jwts.builder()
-                .subject(userPrincipal.getUsername())
-                .issuedAt(new Date())
-                .expiration(new Date((new Date()).getTime() + jwtExpirationInMs))
-                .signWith(key, alg)
-                .compact();
+        return generateTokenFromUsername(userPrincipal.getUsername(), version);
     }
 
     /**
      * Generates a JWT (JSON Web Token) using the provided username.
      *
      * @param username the username for which the token is to be generated.
+     * @param version  the token version of the user, from {@code JwtTokenService.rotate}.
      * @return a JWT token string associated with the given username.
+     * @throws IllegalStateException if the node only verifies tokens.
      */
-    public String generateTokenFromUsername(String username) {
-        SecretKey key = getSigningKey();
-        SecureDigestAlgorithm<? super SecretKey, ?> alg = Jwts.SIG.HS512;
-        return Jwts.builder()
+    public String generateTokenFromUsername(String username, long version) {
+        JwtBuilder builder = Jwts.builder()
                 .subject(username)
+                .claim(VERSION_CLAIM, version)
                 .issuedAt(new Date())
-                .expiration(new Date((new Date()).getTime() + jwtExpirationInMs))
-                .signWith(key, alg)
-                .compact();
+                .expiration(new Date((new Date()).getTime() + jwtExpirationInMs));
+        return sign(builder).compact();
+    }
+
+    private JwtBuilder sign(JwtBuilder builder) {
+        if (signingKey != null) {
+            return builder.signWith(signingKey, Jwts.SIG.HS512);
+        }
+        return jwtKeySet.signWith(builder);
+    }
+
+    /**
+     * Verifies the signature and expiration of the provided JWT token and returns its claims, so that callers
+     * needing both the validation and the claims verify the token only once.
+     *
+     * @param token the JWT token to be verified
+     * @return the claims of the token, or null if the token is invalid or expired
+     */
+    public Claims parseAndValidate(String token) {
+        try {
+            return jwtParser.parseSignedClaims(token).getPayload();
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Invalid JWT token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the version embedded in the claims of a token.
+     *
+     * @param claims the verified claims of the token
+     * @return the version, or null if the token has none
+     */
+    public static Long getVersion(Claims claims) {
+        return claims.get(VERSION_CLAIM, Long.class);
     }
 
     /**
@@ -94,10 +164,7 @@ public class JwtTokenProvider {
      * @return the username associated with the provided JWT token.
      */
     public String getUsernameFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
+        return jwtParser.parseSignedClaims(token)
                 .getPayload()
                 .getSubject();
     }
@@ -109,12 +176,7 @@ public class JwtTokenProvider {
      * @return true if the token is valid, false otherwise
      */
     public boolean validateJwtToken(String authToken) {
-        try {
-            Jwts.parser().verifyWith(getSigningKey()).build().parseSignedClaims(authToken);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return parseAndValidate(authToken) != null;
     }
 
 }
@@ -0,0 +1,90 @@
+package org.hubert.common.demo.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hubert.common.demo.enums.ResponseEnum;
+import org.hubert.common.demo.exceptions.CustomException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A password encoder that hashes and verifies passwords on a dedicated bounded pool instead of the calling
+ * request thread, so that a burst of logins or signups uses at most the threads of that pool and cannot take the
+ * CPU from every other endpoint.
+ * <p>
+ * The pool is expected to reject tasks when its queue is full. A caller whose task is rejected, or not done
+ * within the maximum wait, fails right away with {@link ResponseEnum#SERVICE_UNAVAILABLE} instead of adding to the
+ * backlog, and a task whose caller gave up is cancelled before it starts hashing. The time tasks wait in the
+ * queue is recorded by the pool.
+ * <p>
+ * {@link #upgradeEncoding} is answered by the delegate, so hashes made with a lower work factor than the
+ * configured one are rehashed on the next successful login.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/13 16:00
+ */
+@Slf4j
+public class OffloadedPasswordEncoder implements PasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final ExecutorService executor;
+    private final long maxWaitMs;
+
+    /**
+     * @param delegate  the encoder doing the hashing
+     * @param executor  the bounded pool running the delegate, rejecting tasks when it is full
+     * @param maxWaitMs how long, in milliseconds, a caller waits for its password to be hashed or verified
+     */
+    public OffloadedPasswordEncoder(PasswordEncoder delegate, ExecutorService executor, long maxWaitMs) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return call(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return call(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T call(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Password hashing pool is full, rejecting the request");
+            throw new CustomException(ResponseEnum.SERVICE_UNAVAILABLE);
+        }
+        try {
+            return future.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("Password hashing did not complete within {} ms, rejecting the request", maxWaitMs);
+            throw new CustomException(ResponseEnum.SERVICE_UNAVAILABLE);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CustomException(ResponseEnum.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.hubert.common.demo.security;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.properties.RedisKeyProperties;
+import org.hubert.common.demo.properties.UserDetailsCacheProperties;
+import org.hubert.common.demo.service.impl.UserDetailsImpl;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A two-level cache of loaded users: a size and TTL bounded local cache on each node in front of a copy in
+ * Redis shared by all nodes, so that the database is only queried for users no node has loaded recently.
+ * <p>
+ * The local cache loads each user at most once at a time, concurrent lookups of the same user wait for the
+ * load in progress instead of querying Redis and the database themselves. Users are stored in Redis as
+ * compact JSON. Redis failures fall back to the database and are never fatal.
+ * <p>
+ * Neither level holds the password hash: every node and client able to read Redis could otherwise read the
+ * hashes of all recently active users. The cached details serve the authorization of requests carrying a
+ * token, checking a password loads the user from the database instead.
+ * <p>
+ * When the roles or password of a user change, {@link #invalidate} deletes the Redis copy and publishes the
+ * username so that every node evicts its local copy, and the tokens verified with the previous details from
+ * its {@link VerifiedTokenCache}. A load that read the database just before the change can still write the
+ * previous details back, so the invalidation is repeated once after a short delay on the shared wheel timer.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/13 10:10
+ */
+@Slf4j
+@Component
+public class UserDetailsCache implements MessageListener {
+    /**
+     * The name the local cache metrics are published under.
+     */
+    public static final String CACHE_NAME = "user-details-cache";
+
+    private final UserDetailsCacheProperties properties;
+    private final RedisKeyProperties redisKeyProperties;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final HashedWheelTimer wheelTimer;
+    private final Cache<String, UserDetailsImpl> localCache;
+
+    public UserDetailsCache(UserDetailsCacheProperties properties,
+                            RedisKeyProperties redisKeyProperties,
+                            StringRedisTemplate stringRedisTemplate,
+                            ObjectMapper objectMapper,
+                            VerifiedTokenCache verifiedTokenCache,
+                            HashedWheelTimer wheelTimer,
+                            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.redisKeyProperties = redisKeyProperties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.wheelTimer = wheelTimer;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaximumSize())
+                .expireAfterWrite(properties.getLocalTtlMs(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, CACHE_NAME);
+    }
+
+    /**
+     * Returns a user from the local cache, then from Redis, and only then from the loader, caching it at both
+     * levels. The user is returned without its password hash.
+     *
+     * @param username the username
+     * @param loader   loads the user from the database, throwing if it does not exist
+     * @return the user, without its password hash
+     */
+    public UserDetailsImpl get(String username, Function<String, UserDetailsImpl> loader) {
+        if (!properties.isEnabled()) {
+            return withoutPassword(loader.apply(username));
+        }
+        return localCache.get(username, key -> loadShared(key, loader));
+    }
+
+    /**
+     * Drops a user from both levels on every node, to be called after its roles or password changed.
+     *
+     * @param username the username
+     */
+    public void invalidate(String username) {
+        invalidateEverywhere(username);
+        if (properties.isEnabled()) {
+            wheelTimer.newTimeout(() -> invalidateEverywhere(username),
+                    properties.getSecondInvalidationDelayMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Receives the username published on the invalidation channel.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String username = new String(message.getBody(), StandardCharsets.UTF_8);
+        log.debug("User details of {} changed, evicting the local copy", username);
+        evictLocal(username);
+    }
+
+    private UserDetailsImpl loadShared(String username, Function<String, UserDetailsImpl> loader) {
+        String key = redisKeyProperties.getUserDetailsKey() + username;
+        UserDetailsImpl shared = readShared(key);
+        if (shared != null) {
+            return shared;
+        }
+        UserDetailsImpl loaded = withoutPassword(loader.apply(username));
+        writeShared(key, loaded);
+        return loaded;
+    }
+
+    private UserDetailsImpl readShared(String key) {
+        try {
+            String json = stringRedisTemplate.opsForValue().get(key);
+            return json == null ? null : objectMapper.readValue(json, CachedUser.class).toUserDetails();
+        } catch (Exception e) {
+            log.warn("Failed to read cached user details {}, loading from the database", key, e);
+            return null;
+        }
+    }
+
+    private void writeShared(String key, UserDetailsImpl userDetails) {
+        try {
+            String json = objectMapper.writeValueAsString(CachedUser.of(userDetails));
+            stringRedisTemplate.opsForValue().set(key, json, properties.getRedisTtlMs(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("Failed to cache user details {}", key, e);
+        }
+    }
+
+    private void invalidateEverywhere(String username) {
+        evictLocal(username);
+        try {
+            stringRedisTemplate.delete(redisKeyProperties.getUserDetailsKey() + username);
+            stringRedisTemplate.convertAndSend(redisKeyProperties.getUserDetailsInvalidatedChannel(), username);
+        } catch (Exception e) {
+            log.error("Failed to invalidate the cached user details of {}", username, e);
+        }
+    }
+
+    private void evictLocal(String username) {
+        localCache.invalidate(username);
+        verifiedTokenCache.evictUser(username);
+    }
+
+    private static UserDetailsImpl withoutPassword(UserDetailsImpl userDetails) {
+        return new UserDetailsImpl(userDetails.getId(), userDetails.getUsername(), userDetails.getEmail(), null,
+                userDetails.getAuthorities());
+    }
+
+    /**
+     * The compact form of a user stored in Redis, deliberately without the password hash.
+     */
+    private record CachedUser(@JsonProperty("i") Long id,
+                              @JsonProperty("u") String username,
+                              @JsonProperty("e") String email,
+                              @JsonProperty("r") List<String> roles) {
+
+        private static CachedUser of(UserDetailsImpl userDetails) {
+            List<String> roles = userDetails.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .toList();
+            return new CachedUser(userDetails.getId(), userDetails.getUsername(), userDetails.getEmail(), roles);
+        }
+
+        private UserDetailsImpl toUserDetails() {
+            List<SimpleGrantedAuthority> authorities = roles.stream()
+                    .map(SimpleGrantedAuthority::new)
+                    .toList();
+            return new UserDetailsImpl(id, username, email, null, authorities);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.hubert.common.demo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.hubert.common.demo.properties.TokenCacheProperties;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded local cache of the JWTs that passed verification, holding the user they authenticate until the
+ * token expires, so that repeated requests with the same token skip the signature check, the Redis lookup of
+ * the current token and the database lookup of the user.
+ * <p>
+ * Tokens are keyed by their SHA-256 hash, so the cache never holds the tokens themselves. Each user has at most
+ * one cached token, the current one. When a token is rotated, {@link org.hubert.common.demo.service.JwtTokenService}
+ * publishes the username on the rotation channel and every node evicts the previous token of that user.
+ * <p>
+ * A request that verified a token concurrently with a rotation could otherwise cache the rotated token again.
+ * Callers therefore take the {@link #version()} before looking the token up in Redis and pass it to
+ * {@link #put}, which drops the entry if a rotation happened in between.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/12 16:10
+ */
+@Slf4j
+@Component
+public class VerifiedTokenCache implements MessageListener {
+    /**
+     * The name the cache metrics are published under.
+     */
+    public static final String CACHE_NAME = "jwt-token-cache";
+
+    private final boolean enabled;
+    private final Cache<String, CachedToken> cache;
+    private final ConcurrentHashMap<String, String> tokenHashByUser = new ConcurrentHashMap<>();
+    private final AtomicLong rotations = new AtomicLong();
+
+    public VerifiedTokenCache(TokenCacheProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        long maxTtlNanos = properties.getMaxTtlMs() > 0
+                ? TimeUnit.MILLISECONDS.toNanos(properties.getMaxTtlMs())
+                : Long.MAX_VALUE;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new TokenExpiry(maxTtlNanos))
+                // Removals are handled on the calling thread, so a late one cannot unmap a token cached again since
+                .executor(Runnable::run)
+                .removalListener((String tokenHash, CachedToken cached, RemovalCause cause) -> {
+                    if (cached != null && cause != RemovalCause.REPLACED) {
+                        tokenHashByUser.remove(cached.userDetails().getUsername(), tokenHash);
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the user authenticated by a token verified before.
+     *
+     * @param token the JWT
+     * @return the user, or null if the token is not cached or has expired
+     */
+    public UserDetails get(String token) {
+        if (!enabled) {
+            return null;
+        }
+        CachedToken cached = cache.getIfPresent(hash(token));
+        return cached == null ? null : cached.userDetails();
+    }
+
+    /**
+     * Returns the number of rotations seen so far, to be taken before the token is checked against Redis and
+     * passed to {@link #put}.
+     *
+     * @return the current version
+     */
+    public long version() {
+        return rotations.get();
+    }
+
+    /**
+     * Caches a verified token until it expires, replacing the previous token of the user.
+     *
+     * @param token       the JWT, verified and equal to the current token of the user
+     * @param expiration  the expiration of the token
+     * @param userDetails the user the token authenticates
+     * @param version     the {@link #version()} taken before the token was checked against Redis
+     */
+    public void put(String token, Date expiration, UserDetails userDetails, long version) {
+        if (!enabled || expiration == null) {
+            return;
+        }
+        String tokenHash = hash(token);
+        cache.put(tokenHash, new CachedToken(userDetails, expiration.getTime()));
+        String previous = tokenHashByUser.put(userDetails.getUsername(), tokenHash);
+        if (previous != null && !previous.equals(tokenHash)) {
+            cache.invalidate(previous);
+        }
+        if (rotations.get() != version) {
+            // A token was rotated while this one was being checked, it may have been this one
+            cache.invalidate(tokenHash);
+        }
+    }
+
+    /**
+     * Evicts the cached token of a user, whose token was rotated on this node or another one.
+     *
+     * @param username the user
+     */
+    public void evictUser(String username) {
+        rotations.incrementAndGet();
+        String tokenHash = tokenHashByUser.remove(username);
+        if (tokenHash != null) {
+            cache.invalidate(tokenHash);
+        }
+    }
+
+    /**
+     * Receives the username published on the rotation channel.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String username = new String(message.getBody(), StandardCharsets.UTF_8);
+        log.debug("JWT of {} rotated, evicting its cached token", username);
+        evictUser(username);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A verified token, with the user it authenticates and the time it expires at in epoch milliseconds.
+     */
+    private record CachedToken(UserDetails userDetails, long expiresAtMillis) {
+    }
+
+    /**
+     * Expires each token when the JWT itself expires, or after the maximum TTL if that comes first.
+     */
+    private record TokenExpiry(long maxTtlNanos) implements Expiry<String, CachedToken> {
+        @Override
+        public long expireAfterCreate(String key, CachedToken value, long currentTime) {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(value.expiresAtMillis() - System.currentTimeMillis());
+            return Math.max(0L, Math.min(remainingNanos, maxTtlNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
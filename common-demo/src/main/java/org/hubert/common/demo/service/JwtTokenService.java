@@ -1,29 +1,74 @@
 package org.hubert.common.demo.service;
 
-import lombok.RequiredArgsConstructor;
 import org.hubert.common.demo.properties.RedisKeyProperties;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.hubert.common.demo.properties.TokenVersionProperties;
+import org.hubert.common.demo.security.VerifiedTokenCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.TimeUnit;
+import java.util.List;
 
 /**
- * Service class for managing JWT tokens associated with users.
- * This service uses Redis as the underlying storage mechanism
- * to store and retrieve JWT tokens for users.
+ * Service class for managing the JWT tokens associated with users.
+ * Instead of the tokens themselves, Redis holds a version number per user, which is embedded in every token
+ * issued to the user and raised each time a new token is issued. A token is current only while its version
+ * is the latest, so issuing a token revokes the previous one.
+ * <p>
+ * The versions are fields of a fixed number of Redis hashes, picked by the hash code of the username. Small
+ * hashes are stored as compact listpacks, so a user takes a few dozen bytes instead of a key holding a whole
+ * token, and a check reads a number instead of the token.
+ * <p>
+ * A new version is the larger of the previous one plus one and the current time in milliseconds, so versions
+ * never repeat even if the hashes are lost, flushed or moved by a change of
+ * {@code jwt.token-version.buckets}: a missing version only signs the users out, it cannot make a revoked
+ * token current again. Since a version is never older than the token carrying it, a version older than the
+ * token lifetime only belongs to expired tokens; rotating prunes those from the hash, and a hash nobody rotated
+ * in for a token lifetime expires as a whole. Redis should still run with {@code maxmemory-policy noeviction},
+ * or evicted hashes sign their users out early.
+ * <p>
+ * Rotating the token of a user is published on the rotation channel, so every node evicts the previous token
+ * from its {@link VerifiedTokenCache}. The rotation, the pruning and the publish run as one script, in one
+ * round trip.
  *
  * @author hubertwong
  * @version 1.0
  * @since 2024/10/30 22:00
  */
 @Service
-@RequiredArgsConstructor
 public class JwtTokenService {
     /**
-     * An instance of RedisTemplate used to interact with Redis for storing
-     * and retrieving JWT tokens associated with users.
+     * Raises the version of ARGV[1] in the hash KEYS[1] to max(version + 1, ARGV[2]), removes the versions older
+     * than ARGV[2] - ARGV[3], lets the hash expire after ARGV[3] milliseconds without rotations, and publishes
+     * the username on the channel ARGV[4].
      */
-    private final RedisTemplate<String, Object> redisTemplate;
+    private static final RedisScript<Long> ROTATE_SCRIPT = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[2])
+            local staleBefore = now - tonumber(ARGV[3])
+            local fields = redis.call('HGETALL', KEYS[1])
+            local current = 0
+            for i = 1, #fields, 2 do
+                local version = tonumber(fields[i + 1])
+                if fields[i] == ARGV[1] then
+                    current = version
+                elseif version < staleBefore then
+                    redis.call('HDEL', KEYS[1], fields[i])
+                end
+            end
+            local version = math.max(current + 1, now)
+            redis.call('HSET', KEYS[1], ARGV[1], string.format('%d', version))
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            redis.call('PUBLISH', ARGV[4], ARGV[1])
+            return version
+            """, Long.class);
+
+    /**
+     * Reads and rotates the versions, and publishes the username on the rotation channel as a plain string,
+     * readable by every node.
+     */
+    private final StringRedisTemplate stringRedisTemplate;
 
     /**
      * Holds configuration properties for Redis key prefixes.
@@ -33,25 +78,61 @@ public class JwtTokenService {
     private final RedisKeyProperties redisKeyProperties;
 
     /**
-     * Updates the current JWT token for the specified user in Redis with an expiration time.
+     * The number of hashes the versions are spread over.
+     */
+    private final TokenVersionProperties tokenVersionProperties;
+
+    /**
+     * The local cache of verified tokens, evicted right away on this node.
+     */
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    /**
+     * The lifetime of a token, after which its version is no longer needed.
+     */
+    private final long jwtExpirationInMs;
+
+    public JwtTokenService(StringRedisTemplate stringRedisTemplate,
+                           RedisKeyProperties redisKeyProperties,
+                           TokenVersionProperties tokenVersionProperties,
+                           VerifiedTokenCache verifiedTokenCache,
+                           @Value("${jwt.expiration-in-ms}") long jwtExpirationInMs) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisKeyProperties = redisKeyProperties;
+        this.tokenVersionProperties = tokenVersionProperties;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.jwtExpirationInMs = jwtExpirationInMs;
+    }
+
+    /**
+     * Raises the token version of the specified user, which revokes the tokens issued so far, and evicts the
+     * previous token of the user from the verified token cache of every node.
      *
-     * @param username     the username for which the JWT should be updated
-     * @param token        the JWT token to be stored
-     * @param expireTimeMs the expiration time in milliseconds for the token
+     * @param username the username whose token is rotated
+     * @return the version to embed in the new token of the user
      */
-    public void updateCurrentJwt(String username, String token, long expireTimeMs) {
-        String key = redisKeyProperties.getUserJwtKey() + username;
-        redisTemplate.opsForValue().set(key, token, expireTimeMs, TimeUnit.MILLISECONDS);
+    public long rotate(String username) {
+        Long version = stringRedisTemplate.execute(ROTATE_SCRIPT, List.of(versionKey(username)), username,
+                String.valueOf(System.currentTimeMillis()), String.valueOf(jwtExpirationInMs),
+                redisKeyProperties.getJwtRotatedChannel());
+        verifiedTokenCache.evictUser(username);
+        return version;
     }
 
     /**
-     * Retrieves the current JWT token associated with the specified username from Redis.
+     * Checks whether a token with the given version is the current token of the specified user.
      *
-     * @param username the username for which the JWT token should be retrieved
-     * @return the JWT token associated with the specified username, or null if not found
+     * @param username the username the token was issued to
+     * @param version  the version embedded in the token
+     * @return true if no newer token was issued to the user since
      */
-    public String getCurrentJwt(String username) {
-        String key = redisKeyProperties.getUserJwtKey() + username;
-        return (String) redisTemplate.opsForValue().get(key);
+    public boolean isCurrent(String username, long version) {
+        Object current = stringRedisTemplate.opsForHash().get(versionKey(username), username);
+        return current != null && Long.parseLong(current.toString()) == version;
+    }
+
+    private String versionKey(String username) {
+        return redisKeyProperties.getUserJwtVersionKey()
+                + Math.floorMod(username.hashCode(), tokenVersionProperties.getBuckets());
     }
 }
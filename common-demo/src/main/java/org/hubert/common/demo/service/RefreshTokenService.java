@@ -1,22 +1,22 @@
 package org.hubert.common.demo.service;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.hubert.common.demo.entity.RefreshToken;
 import org.hubert.common.demo.entity.User;
 import org.hubert.common.demo.enums.ResponseEnum;
 import org.hubert.common.demo.exceptions.CustomException;
 import org.hubert.common.demo.exceptions.TokenRefreshException;
-import org.hubert.common.demo.locks.DistributedLock;
-import org.hubert.common.demo.properties.RedisKeyProperties;
 import org.hubert.common.demo.repository.RefreshTokenRepository;
+import org.hubert.common.demo.repository.RefreshTokenRepository.RefreshTokenView;
 import org.hubert.common.demo.repository.UserRepository;
+import org.hubert.common.demo.security.RefreshTokenGenerator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.Optional;
-import java.util.UUID;
 
 /**
  * Provides services related to the management of refresh tokens, such as creation, retrieval, and verification.
@@ -25,6 +25,7 @@ import java.util.UUID;
  * @version 1.0
  * @since 2024/10/29 23:26
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class RefreshTokenService {
@@ -39,71 +40,73 @@ public class RefreshTokenService {
 
     private final UserRepository userRepository;
 
-    private final DistributedLock distributedLock;
-
-    private final RedisKeyProperties redisKeyProperties;
-
     /**
      * Creates a new refresh token for the specified user.
      * <p>
-     * This method generates a unique refresh token for the given user ID and saves it in the repository.
-     * If a unique token cannot be generated after multiple attempts, a CustomException is thrown.
+     * This method generates a random 256-bit refresh token for the given user ID and saves its hash in the
+     * repository. The token itself is only set on the returned RefreshToken.
+     * The user is referenced by its ID without being loaded, as callers have just authenticated it.
+     * Uniqueness is enforced by the unique constraint on the token column rather than by a lock: a colliding
+     * insert is retried with a new token, and if a unique token cannot be saved after multiple attempts, a
+     * CustomException is thrown.
      *
-     * @param userId the ID of the user for whom the refresh token is to be created
+     * @param userId the ID of an existing user for whom the refresh token is to be created
      * @return the created RefreshToken
-     * @throws CustomException if the user is not found or if a unique refresh token cannot be created
+     * @throws CustomException if a unique refresh token cannot be created
      */
     public RefreshToken createRefreshToken(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new CustomException(ResponseEnum.USER_NOT_FOUND));
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setUser(user);
-        refreshToken.setExpireDate(Instant.now().plusMillis(refreshTokenDurationMs));
-        boolean tokenSaved = false;
+        User user = userRepository.getReferenceById(userId);
+        Instant expireDate = Instant.now().plusMillis(refreshTokenDurationMs);
         for (int retryCount = 0; retryCount < retryTime; retryCount++) {
-            String token = UUID.randomUUID().toString();
-            refreshToken.setToken(token);
-            String lockKey = redisKeyProperties.getRefreshTokenKey() + token;
-            tokenSaved = distributedLock.tryLock(lockKey, () -> {
-                try {
-                    refreshTokenRepository.save(refreshToken);
-                    return true;
-                } catch (DataIntegrityViolationException e) {
-                    return false;
-                }
-            });
-            if (tokenSaved) {
-                break;
+            RefreshToken refreshToken = new RefreshToken();
+            refreshToken.setUser(user);
+            refreshToken.setExpireDate(expireDate);
+            String token = RefreshTokenGenerator.generate();
+            refreshToken.setTokenHash(RefreshTokenGenerator.hash(token));
+            try {
+                RefreshToken saved = refreshTokenRepository.save(refreshToken);
+                saved.setToken(token);
+                return saved;
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Refresh token collided on insert, retrying, attempt: {}", retryCount + 1);
             }
         }
-        if (!tokenSaved) {
-            throw new CustomException(ResponseEnum.INTERNAL_SERVER_ERROR.getCode(),
-                    "Unable to create a unique refresh token after multiple attempts.");
-        }
-        return refreshToken;
+        throw new CustomException(ResponseEnum.INTERNAL_SERVER_ERROR.getCode(),
+                "Unable to create a unique refresh token after multiple attempts.");
+    }
+
+    /**
+     * Deletes a refresh token that was created but never handed out.
+     *
+     * @param refreshToken the RefreshToken to be deleted
+     */
+    public void deleteRefreshToken(RefreshToken refreshToken) {
+        refreshTokenRepository.deleteById(refreshToken.getId());
     }
 
     /**
-     * Finds and returns a RefreshToken based on the provided token string.
+     * Finds and returns a RefreshToken based on the provided token string, looked up by its hash.
      *
      * @param token the token string used to find the RefreshToken
-     * @return an Optional containing the found RefreshToken, or an empty Optional if no RefreshToken was found
+     * @return an Optional containing the id, expiry and username of the found RefreshToken, or an empty Optional
+     * if no RefreshToken was found
      */
-    public Optional<RefreshToken> findByToken(String token) {
-        return refreshTokenRepository.findByToken(token);
+    public Optional<RefreshTokenView> findByToken(String token) {
+        return refreshTokenRepository.findByTokenHash(RefreshTokenGenerator.hash(token));
     }
 
     /**
      * Verifies whether a given refresh token has expired and deletes it if it has.
      *
+     * @param token        the token string the RefreshToken was found by
      * @param refreshToken the RefreshToken to be verified
      * @return the provided RefreshToken if it has not expired
      * @throws TokenRefreshException if the refresh token has expired
      */
-    public RefreshToken verifyExpiration(RefreshToken refreshToken) {
+    public RefreshTokenView verifyExpiration(String token, RefreshTokenView refreshToken) {
         if (refreshToken.getExpireDate().isBefore(Instant.now())) {
-            refreshTokenRepository.delete(refreshToken);
-            throw new TokenRefreshException(refreshToken.getToken(),
+            refreshTokenRepository.deleteById(refreshToken.getId());
+            throw new TokenRefreshException(token,
                     "Refresh token was expired. Pleash make a new signin request");
         }
         return refreshToken;
@@ -0,0 +1,150 @@
+package org.hubert.common.demo.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.locks.DistributedLock;
+import org.hubert.common.demo.properties.RedisKeyProperties;
+import org.hubert.common.demo.properties.RefreshTokenSweepProperties;
+import org.hubert.common.demo.repository.RefreshTokenRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes expired refresh tokens in the background, so that the refresh token table and its indexes only hold
+ * the tokens that can still be used.
+ * <p>
+ * Each run deletes at most {@code jwt.refresh-token-sweep.chunk-size} tokens in one statement walking the expiry
+ * index. The shared {@code wheelTimer} only decides when a run happens; the run itself executes on the dedicated
+ * {@code refresh-token-sweep-thread-pool}, so the blocking statement never holds a thread of the
+ * {@code timer-task-thread-pool} that other timeouts depend on. While runs delete full chunks the next one
+ * follows right away; once the backlog is gone they happen every {@code jwt.refresh-token-sweep.interval-ms}.
+ * <p>
+ * Every node schedules runs, starting at a random point of the first interval so their runs are spread out. The
+ * statements of different nodes would walk the same index range and wait on each other's locks, so a run only
+ * deletes while holding the sweep lock, and is skipped on the nodes that find it taken.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 20:10
+ */
+@Slf4j
+@Component
+public class RefreshTokenSweeper {
+    /**
+     * Counter of the refresh tokens deleted by the sweeper.
+     */
+    public static final String SWEPT_METRIC = "auth.refresh-token.swept";
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenSweepProperties properties;
+    private final HashedWheelTimer wheelTimer;
+    private final Executor sweepExecutor;
+    private final DistributedLock distributedLock;
+    private final String lockKey;
+    private final LongAdder swept = new LongAdder();
+    private volatile HashedWheelTimer.Timeout next;
+    private volatile boolean stopped;
+
+    public RefreshTokenSweeper(RefreshTokenRepository refreshTokenRepository,
+                               RefreshTokenSweepProperties properties,
+                               HashedWheelTimer wheelTimer,
+                               @Qualifier("refreshTokenSweepThreadPoolExecutor") Executor sweepExecutor,
+                               DistributedLock distributedLock,
+                               RedisKeyProperties redisKeyProperties,
+                               MeterRegistry meterRegistry) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.properties = properties;
+        this.wheelTimer = wheelTimer;
+        this.sweepExecutor = sweepExecutor;
+        this.distributedLock = distributedLock;
+        this.lockKey = redisKeyProperties.getRefreshTokenSweepLockKey();
+        FunctionCounter.builder(SWEPT_METRIC, swept, LongAdder::sum)
+                .description("Expired refresh tokens deleted in the background")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts sweeping once the application is ready, at a random point of the first interval.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (properties.isEnabled()) {
+            schedule(ThreadLocalRandom.current().nextLong(Math.max(1L, properties.getIntervalMs())));
+        }
+    }
+
+    /**
+     * Stops sweeping. A run already in progress finishes its chunk.
+     */
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        HashedWheelTimer.Timeout timeout = next;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Deletes one chunk of expired refresh tokens.
+     *
+     * @return the number of deleted refresh tokens
+     */
+    public int sweep() {
+        int deleted = refreshTokenRepository.deleteExpired(Instant.now(), properties.getChunkSize());
+        swept.add(deleted);
+        if (deleted > 0) {
+            log.debug("Deleted {} expired refresh tokens", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Hands a run to the sweep pool, from the timer.
+     */
+    private void submit() {
+        try {
+            sweepExecutor.execute(this::run);
+        } catch (RejectedExecutionException e) {
+            log.debug("Sweep pool refused the run, retrying after the interval");
+            schedule(properties.getIntervalMs());
+        }
+    }
+
+    private void run() {
+        long delayMs = properties.getIntervalMs();
+        try {
+            // Null if another node holds the lock, or if the statement failed, which the lock logs
+            Integer deleted = distributedLock.tryLock(lockKey, 0, TimeUnit.MILLISECONDS, this::sweep);
+            if (deleted != null && deleted >= properties.getChunkSize()) {
+                delayMs = 0L;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to delete expired refresh tokens", e);
+        }
+        schedule(delayMs);
+    }
+
+    private void schedule(long delayMs) {
+        if (stopped) {
+            return;
+        }
+        try {
+            next = wheelTimer.newTimeout(this::submit, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Timer is stopped, no longer deleting expired refresh tokens");
+        }
+    }
+}
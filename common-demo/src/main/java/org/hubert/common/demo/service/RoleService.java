@@ -0,0 +1,88 @@
+package org.hubert.common.demo.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hubert.common.demo.entity.Role;
+import org.hubert.common.demo.enums.ResponseEnum;
+import org.hubert.common.demo.enums.RoleEnum;
+import org.hubert.common.demo.exceptions.CustomException;
+import org.hubert.common.demo.repository.RoleRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides the roles by name from an unmodifiable in-memory {@link EnumMap}, since roles almost never change,
+ * instead of a query per role.
+ * <p>
+ * The map is loaded once the application is ready, and reloaded when a role is missing from it, so that roles
+ * inserted after startup are still found. A miss reloads the map at most once per
+ * {@value #RELOAD_INTERVAL_SECONDS} seconds, so a role that does not exist is refused without querying the
+ * database on every call.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/13 14:00
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RoleService {
+
+    /**
+     * The minimum interval between two reloads caused by a missing role.
+     */
+    public static final long RELOAD_INTERVAL_SECONDS = 10L;
+
+    private final RoleRepository roleRepository;
+
+    private volatile Map<RoleEnum, Role> rolesByName = Map.of();
+
+    /**
+     * The {@link System#nanoTime()} before which a missing role does not reload the map.
+     */
+    private volatile long nextReloadNanos = System.nanoTime();
+
+    /**
+     * Loads all roles into the in-memory map.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRoles() {
+        Map<RoleEnum, Role> roles = new EnumMap<>(RoleEnum.class);
+        for (Role role : roleRepository.findAll()) {
+            roles.put(role.getName(), role);
+        }
+        rolesByName = Collections.unmodifiableMap(roles);
+        log.info("Loaded roles: {}", rolesByName.keySet());
+    }
+
+    /**
+     * Returns the role with the given name.
+     *
+     * @param name the role name
+     * @return the role
+     * @throws CustomException if the role does not exist
+     */
+    public Role getRole(RoleEnum name) {
+        Role role = rolesByName.get(name);
+        if (role == null && System.nanoTime() - nextReloadNanos >= 0) {
+            synchronized (this) {
+                role = rolesByName.get(name);
+                if (role == null && System.nanoTime() - nextReloadNanos >= 0) {
+                    loadRoles();
+                    nextReloadNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(RELOAD_INTERVAL_SECONDS);
+                    role = rolesByName.get(name);
+                }
+            }
+        }
+        if (role == null) {
+            throw new CustomException(ResponseEnum.ROLE_NOT_FOUND);
+        }
+        return role;
+    }
+}
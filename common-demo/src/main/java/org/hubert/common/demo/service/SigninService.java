@@ -0,0 +1,133 @@
+package org.hubert.common.demo.service;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hubert.common.demo.dto.request.LoginRequest;
+import org.hubert.common.demo.dto.response.JwtResponse;
+import org.hubert.common.demo.entity.RefreshToken;
+import org.hubert.common.demo.security.JwtTokenProvider;
+import org.hubert.common.demo.service.impl.UserDetailsImpl;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Signs users in: checks their password, then issues their JWT and refresh token.
+ * <p>
+ * Once the password is checked and the token version rotated, the refresh token is persisted on the
+ * {@code signin-thread-pool} while the request thread signs the JWT, so a signin takes about as long as the
+ * password check and the rotation plus the slower of the two. The refresh token is only persisted once the
+ * rotation succeeded, and is deleted again if the JWT cannot be signed, so a failed signin leaves no refresh token
+ * behind. If the pool is full, the refresh token is persisted on the request thread instead.
+ * <p>
+ * Every signin is observed as {@value #SIGNIN_OBSERVATION}, and each step as {@value #STEP_OBSERVATION} tagged
+ * with the step name, so the time spent per step is published as timers and, with a tracer on the classpath,
+ * as spans of the signin.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 16:00
+ */
+@Slf4j
+@Service
+public class SigninService {
+    /**
+     * The observation of a whole signin.
+     */
+    public static final String SIGNIN_OBSERVATION = "auth.signin";
+    /**
+     * The observation of a step of a signin, tagged with the step name.
+     */
+    public static final String STEP_OBSERVATION = "auth.signin.step";
+
+    private final AuthenticationManager authenticationManager;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final JwtTokenService jwtTokenService;
+    private final RefreshTokenService refreshTokenService;
+    private final Executor executor;
+    private final ObservationRegistry observationRegistry;
+
+    public SigninService(AuthenticationManager authenticationManager,
+                         JwtTokenProvider jwtTokenProvider,
+                         JwtTokenService jwtTokenService,
+                         RefreshTokenService refreshTokenService,
+                         @Qualifier("signinThreadPoolExecutor") Executor executor,
+                         ObservationRegistry observationRegistry) {
+        this.authenticationManager = authenticationManager;
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.jwtTokenService = jwtTokenService;
+        this.refreshTokenService = refreshTokenService;
+        this.executor = executor;
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Authenticates the user and issues a JWT and a refresh token.
+     *
+     * @param loginRequest the username and password of the user
+     * @return the JWT, the refresh token and their expiration
+     */
+    public JwtResponse signin(LoginRequest loginRequest) {
+        Observation signin = Observation.createNotStarted(SIGNIN_OBSERVATION, observationRegistry);
+        return signin.observe(() -> {
+            Authentication authentication = step(signin, "authenticate", () -> authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())));
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+            UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+
+            long version = step(signin, "rotate", () -> jwtTokenService.rotate(userDetails.getUsername()));
+            CompletableFuture<RefreshToken> refreshToken = createRefreshToken(signin, userDetails.getId());
+            String jwt;
+            try {
+                jwt = step(signin, "sign", () -> jwtTokenProvider.generateToken(authentication, version));
+            } catch (RuntimeException e) {
+                refreshToken.thenAccept(refreshTokenService::deleteRefreshToken);
+                throw e;
+            }
+            RefreshToken created = join(refreshToken);
+            return new JwtResponse(jwt, created.getToken(),
+                    created.getExpireDate().toEpochMilli(),
+                    (Instant.now().toEpochMilli() + jwtTokenProvider.getJwtExpirationInMs() - 500));
+        });
+    }
+
+    private CompletableFuture<RefreshToken> createRefreshToken(Observation signin, Long userId) {
+        Supplier<RefreshToken> task = () -> step(signin, "refresh-token",
+                () -> refreshTokenService.createRefreshToken(userId));
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            log.debug("Signin pool is full, creating the refresh token on the request thread");
+            return CompletableFuture.completedFuture(task.get());
+        }
+    }
+
+    private <T> T step(Observation signin, String name, Supplier<T> step) {
+        return Observation.createNotStarted(STEP_OBSERVATION, observationRegistry)
+                .parentObservation(signin)
+                .lowCardinalityKeyValue("step", name)
+                .observe(step);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
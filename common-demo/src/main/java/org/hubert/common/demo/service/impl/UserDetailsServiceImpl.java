@@ -1,12 +1,13 @@
 package org.hubert.common.demo.service.impl;
 
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.hubert.common.demo.entity.User;
 import org.hubert.common.demo.enums.ResponseEnum;
 import org.hubert.common.demo.exceptions.CustomException;
 import org.hubert.common.demo.repository.UserRepository;
+import org.hubert.common.demo.security.UserDetailsCache;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -16,6 +17,14 @@ import org.springframework.stereotype.Service;
  * This class implements the {@link UserDetailsService} interface,
  * and is annotated with {@link Service} to indicate that it is a Spring service component.
  * The required dependencies are automatically injected using the {@link RequiredArgsConstructor} annotation.
+ * <p>
+ * {@link #loadUserByUsername} reads the database, as it backs the password check on login and the cache never
+ * holds password hashes. The users authorizing requests that carry a token are served by {@link #loadUserForToken}
+ * from the two-level {@link UserDetailsCache}, the database is only queried on a miss of both levels. Call
+ * {@link #evictUser} after changing the roles of a user.
+ * <p>
+ * As a {@link UserDetailsPasswordService}, it stores the rehashed password when a user logs in with a hash made
+ * with a lower work factor than the configured one.
  *
  * @author hubertwong
  * @version 1.0
@@ -23,7 +32,7 @@ import org.springframework.stereotype.Service;
  */
 @Service
 @RequiredArgsConstructor
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     /**
      * The userRepository is an instance of {@link UserRepository}, used to interact with the
@@ -34,16 +43,62 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     private final UserRepository userRepository;
 
     /**
-     * Loads the user-specific data by the given username.
+     * The two-level cache of loaded users, shared with the other nodes through Redis.
+     */
+    private final UserDetailsCache userDetailsCache;
+
+    /**
+     * Loads the user-specific data by the given username, including the password hash, from the database.
      *
      * @param username the unique username to search for
      * @return the UserDetails object containing user-specific data
      * @throws UsernameNotFoundException if no user is found with the specified username
      */
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
+        return loadFromDatabase(username);
+    }
+
+    /**
+     * Loads the user a verified token was issued to from the cache, without its password hash.
+     *
+     * @param username the subject of the token
+     * @return the UserDetails object containing user-specific data, without the password hash
+     */
+    public UserDetails loadUserForToken(String username) {
+        return userDetailsCache.get(username, this::loadFromDatabase);
+    }
+
+    /**
+     * Drops the cached copies of a user on every node, so that its new roles apply right away.
+     *
+     * @param username the username whose roles changed
+     */
+    public void evictUser(String username) {
+        userDetailsCache.invalidate(username);
+    }
+
+    /**
+     * Stores the password rehashed with the current work factor after a successful login. The cached copies of
+     * the user hold no password hash, so they are left in place.
+     *
+     * @param user        the authenticated user
+     * @param newPassword the new password hash
+     * @return the user with the new password hash
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        UserDetailsImpl userDetails = (UserDetailsImpl) user;
+        return new UserDetailsImpl(userDetails.getId(), userDetails.getUsername(), userDetails.getEmail(),
+                newPassword, userDetails.getAuthorities());
+    }
+
+    /**
+     * Loads the user and its roles in a single query, so building the details touches no lazy association.
+     */
+    private UserDetailsImpl loadFromDatabase(String username) {
+        User user = userRepository.findWithRolesByUsername(username)
                 .orElseThrow(() -> new CustomException(ResponseEnum.USER_NOT_FOUND));
         return UserDetailsImpl.build(user);
     }
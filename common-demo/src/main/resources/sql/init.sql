@@ -19,10 +19,11 @@ CREATE TABLE t_refresh_token
     id          BIGINT AUTO_INCREMENT COMMENT 'The unique identifier for the RefreshToken entity'
         PRIMARY KEY,
     user_id     BIGINT       NOT NULL COMMENT 'Represents the associated User entity for this RefreshToken',
-    token       VARCHAR(255) NOT NULL COMMENT 'Represents the refresh token associated with a user',
+    token_hash  BINARY(32)   NOT NULL COMMENT 'The SHA-256 hash of the refresh token associated with a user',
     expire_date TIMESTAMP    NOT NULL COMMENT 'Represents the expiration date and time of the RefreshToken',
-    CONSTRAINT token
-        UNIQUE (token)
+    CONSTRAINT token_hash
+        UNIQUE (token_hash),
+    INDEX idx_expire_date (expire_date)
 )
     COMMENT 'Table for the RefreshToken entity';
 
@@ -0,0 +1,123 @@
+package org.hubert.common.demo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hubert.common.demo.executor.BulkheadExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 20:40
+ */
+public class BulkheadExecutorTests {
+    /**
+     * Tasks handed to the shared executor, run by the tests when they choose.
+     */
+    private final List<Runnable> submitted = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void testRejectPolicy() {
+        BulkheadExecutor bulkhead = bulkhead(BulkheadExecutor.OverflowPolicy.REJECT, Map.of(), 100);
+        bulkhead.execute("a", () -> {
+        });
+        assertThrows(RejectedExecutionException.class, () -> bulkhead.execute("a", () -> {
+        }));
+        // Other keys are not held up by the full one
+        bulkhead.execute("b", () -> {
+        });
+        assertEquals(2, submitted.size());
+        assertEquals(1.0, overflow("a"));
+
+        submitted.get(0).run();
+        assertEquals(0, bulkhead.getActive("a"));
+        bulkhead.execute("a", () -> {
+        });
+        assertEquals(3, submitted.size());
+    }
+
+    @Test
+    public void testCallerRunsPolicy() {
+        BulkheadExecutor bulkhead = bulkhead(BulkheadExecutor.OverflowPolicy.CALLER_RUNS, Map.of(), 100);
+        Thread caller = Thread.currentThread();
+        Thread[] ranOn = new Thread[1];
+        bulkhead.execute("a", () -> {
+        });
+        bulkhead.execute("a", () -> ranOn[0] = Thread.currentThread());
+        assertEquals(caller, ranOn[0]);
+        assertEquals(1, submitted.size());
+        assertEquals(1, bulkhead.getActive("a"));
+        assertEquals(1.0, overflow("a"));
+    }
+
+    @Test
+    public void testQueuePolicy() {
+        BulkheadExecutor bulkhead = bulkhead(BulkheadExecutor.OverflowPolicy.QUEUE, Map.of(), 100);
+        AtomicInteger ran = new AtomicInteger();
+        bulkhead.execute("a", () -> {
+            throw new IllegalStateException("Task failed");
+        });
+        bulkhead.execute("a", ran::incrementAndGet);
+        assertThrows(RejectedExecutionException.class, () -> bulkhead.execute("a", ran::incrementAndGet));
+        assertEquals(1, submitted.size());
+
+        // The failed task frees its slot and hands it to the queued one
+        assertThrows(IllegalStateException.class, () -> submitted.get(0).run());
+        assertEquals(2, submitted.size());
+        assertEquals(1, bulkhead.getActive("a"));
+        submitted.get(1).run();
+        assertEquals(1, ran.get());
+        assertEquals(0, bulkhead.getActive("a"));
+        assertTrue(bulkhead.drainQueued().isEmpty());
+    }
+
+    @Test
+    public void testPermitReleasedWhenSharedExecutorRefuses() {
+        BulkheadExecutor bulkhead = new BulkheadExecutor("test", task -> {
+            throw new RejectedExecutionException("Shared executor is full");
+        }, 1, Map.of(), BulkheadExecutor.OverflowPolicy.REJECT, 0, 100);
+        assertThrows(RejectedExecutionException.class, () -> bulkhead.execute("a", () -> {
+        }));
+        assertEquals(0, bulkhead.getActive("a"));
+    }
+
+    @Test
+    public void testKeysBeyondMaxKeysShareOneCompartment() {
+        BulkheadExecutor bulkhead = bulkhead(BulkheadExecutor.OverflowPolicy.REJECT, Map.of("vip", 2), 2);
+        for (String key : List.of("a", "b", "c", "vip", "vip")) {
+            bulkhead.execute(key, () -> {
+            });
+        }
+        assertEquals(1, bulkhead.getActive("a"));
+        assertEquals(1, bulkhead.getActive("b"));
+        assertEquals(2, bulkhead.getActive("vip"));
+        // c took the shared quota of 1, so d is refused rather than given a compartment of its own
+        assertEquals(0, bulkhead.getActive("c"));
+        assertEquals(1, bulkhead.getActive(BulkheadExecutor.OTHER_KEY));
+        assertThrows(RejectedExecutionException.class, () -> bulkhead.execute("d", () -> {
+        }));
+        assertNull(meterRegistry.find(BulkheadExecutor.ACTIVE_METRIC).tag("key", "d").gauge());
+        assertEquals(4, meterRegistry.find(BulkheadExecutor.ACTIVE_METRIC).gauges().size());
+    }
+
+    private BulkheadExecutor bulkhead(BulkheadExecutor.OverflowPolicy policy, Map<String, Integer> limits, int maxKeys) {
+        BulkheadExecutor bulkhead = new BulkheadExecutor("test", submitted::add, 1, limits, policy, 1, maxKeys);
+        bulkhead.bindTo(meterRegistry);
+        return bulkhead;
+    }
+
+    private double overflow(String key) {
+        return meterRegistry.get(BulkheadExecutor.OVERFLOW_METRIC).tag("key", key).functionCounter().count();
+    }
+}
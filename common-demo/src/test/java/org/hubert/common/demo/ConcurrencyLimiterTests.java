@@ -0,0 +1,112 @@
+package org.hubert.common.demo;
+
+import org.hubert.common.demo.limiter.ConcurrencyLimit;
+import org.hubert.common.demo.limiter.ConcurrencyLimiter;
+import org.hubert.common.demo.limiter.GradientConcurrencyLimit;
+import org.hubert.common.demo.properties.ConcurrencyLimitProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/7 11:10
+ */
+public class ConcurrencyLimiterTests {
+
+    private static ConcurrencyLimitProperties properties() {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setInitialLimit(10);
+        properties.setMinLimit(2);
+        properties.setMaxLimit(50);
+        properties.setWindowSize(10);
+        properties.setWindowMs(60000L);
+        return properties;
+    }
+
+    @Test
+    public void testLimitGrowsWhileLatencyIsStable() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(properties());
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), limit.getLimit(), false);
+        }
+        assertTrue(limit.getLimit() > 10, "limit should grow, was " + limit.getLimit());
+        assertTrue(limit.getLimit() <= 50);
+    }
+
+    @Test
+    public void testLimitShrinksWhenLatencyRises() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(properties());
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), limit.getLimit(), false);
+        }
+        int before = limit.getLimit();
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(100), limit.getLimit(), false);
+        }
+        assertTrue(limit.getLimit() < before, "limit should shrink from " + before + ", was " + limit.getLimit());
+    }
+
+    @Test
+    public void testLimitBacksOffOnFailures() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(properties());
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), limit.getLimit(), true);
+        }
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    public void testLimitIgnoresUnusedCapacity() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(properties());
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 1, false);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    public void testLimiterPermitsFollowTheLimit() throws InterruptedException {
+        ConcurrencyLimitProperties properties = properties();
+        properties.setMode(ConcurrencyLimitProperties.Mode.FIXED);
+        properties.setInitialLimit(2);
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.create(properties);
+        assertEquals(1, limiter.acquire());
+        assertEquals(2, limiter.tryAcquire());
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(1), 1, false);
+        assertEquals(2, limiter.tryAcquire());
+    }
+
+    @Test
+    public void testSampleCarriesInFlightAtStart() throws InterruptedException {
+        List<Integer> samples = new ArrayList<>();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(new ConcurrencyLimit() {
+            @Override
+            public int getLimit() {
+                return 10;
+            }
+
+            @Override
+            public void onSample(long rttNanos, int inFlight, boolean dropped) {
+                samples.add(inFlight);
+            }
+        });
+        int first = limiter.acquire();
+        int second = limiter.acquire();
+        int third = limiter.acquire();
+        // The operation that started alone reports 1 even though two others are still running
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(1), first, false);
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(1), third, false);
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(1), second, false);
+        assertEquals(List.of(1, 3, 2), samples);
+        assertEquals(0, limiter.getInFlight());
+    }
+}
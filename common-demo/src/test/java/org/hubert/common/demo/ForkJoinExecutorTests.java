@@ -0,0 +1,50 @@
+package org.hubert.common.demo;
+
+import org.hubert.common.demo.executor.ForkJoinExecutor;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 22:20
+ */
+public class ForkJoinExecutorTests {
+
+    @Test
+    public void testShutdownNowReturnsTasksNotStarted() throws Exception {
+        ForkJoinExecutor executor = ThreadPoolFactory.createForkJoinExecutor(1, "fork-join-test");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Runnable first = ran::incrementAndGet;
+        Runnable second = ran::incrementAndGet;
+        executor.execute(first);
+        executor.execute(second);
+
+        List<Runnable> notStarted = executor.shutdownNow();
+        release.countDown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        // The caller gets its own tasks back, and none of them runs after all
+        assertEquals(2, notStarted.size());
+        assertTrue(notStarted.containsAll(List.of(first, second)));
+        assertEquals(0, ran.get());
+    }
+}
@@ -0,0 +1,85 @@
+package org.hubert.common.demo;
+
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/12 11:00
+ */
+public class HashedWheelTimerTests {
+    private CustomThreadPoolExecutor executor;
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    public void setUp() {
+        executor = ThreadPoolFactory.createThreadPool(1, 1, 1L, "timer-test");
+        // A small wheel so that the timeouts below take more than one round
+        timer = ThreadPoolFactory.createWheelTimer("timer-test", 10, 4, executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        timer.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testTimeoutRunsOnExecutorAfterDelay() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicReference<String> thread = new AtomicReference<>();
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(() -> {
+            thread.set(Thread.currentThread().getName());
+            fired.countDown();
+        }, 100, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(thread.get().startsWith("timer-test-thread-"));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.getPendingTimeouts());
+    }
+
+    @Test
+    public void testCancelledTimeoutNeverRuns() throws Exception {
+        AtomicBoolean ran = new AtomicBoolean();
+        HashedWheelTimer.Timeout cancelled = timer.newTimeout(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+        CountDownLatch later = new CountDownLatch(1);
+        timer.newTimeout(later::countDown, 150, TimeUnit.MILLISECONDS);
+        assertTrue(cancelled.cancel());
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertFalse(ran.get());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(0, timer.getPendingTimeouts());
+    }
+
+    @Test
+    public void testStopReturnsPendingTimeouts() {
+        HashedWheelTimer.Timeout pending = timer.newTimeout(() -> {
+        }, 1, TimeUnit.HOURS);
+        timer.newTimeout(() -> {
+        }, 1, TimeUnit.HOURS).cancel();
+        List<HashedWheelTimer.Timeout> unprocessed = timer.stop();
+        assertEquals(List.of(pending), unprocessed);
+        assertThrows(RejectedExecutionException.class, () -> timer.newTimeout(() -> {
+        }, 1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,104 @@
+package org.hubert.common.demo;
+
+import com.sun.net.httpserver.HttpServer;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import org.hubert.common.demo.properties.JwtSigningProperties;
+import org.hubert.common.demo.security.JwtKeySet;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 11:30
+ */
+public class JwtKeySetTests {
+
+    @Test
+    public void testRotationKeepsPreviousKeyVerifying() {
+        KeyPair previous = Jwks.CRV.Ed25519.keyPair().build();
+        KeyPair current = Jwks.CRV.Ed25519.keyPair().build();
+        JwtKeySet signer = new JwtKeySet(properties("k2", false,
+                key("k1", null, previous), key("k2", current, current)));
+        JwtKeySet verifier = new JwtKeySet(properties(null, true,
+                key("k1", null, previous), key("k2", null, current)));
+        JwtParser parser = Jwts.parser().keyLocator(verifier).build();
+
+        String token = signer.signWith(Jwts.builder().subject("testUser")).compact();
+        assertEquals("k2", parser.parseSignedClaims(token).getHeader().getKeyId());
+        assertEquals("testUser", parser.parseSignedClaims(token).getPayload().getSubject());
+
+        // A token signed before the rotation is still accepted
+        String old = Jwts.builder().header().keyId("k1").and().subject("testUser")
+                .signWith(previous.getPrivate(), Jwts.SIG.EdDSA).compact();
+        assertEquals("testUser", parser.parseSignedClaims(old).getPayload().getSubject());
+
+        // Unknown key ids, and tokens signed with a key other than the one their kid names, are rejected
+        KeyPair other = Jwks.CRV.Ed25519.keyPair().build();
+        String forged = Jwts.builder().header().keyId("k2").and().subject("testUser")
+                .signWith(other.getPrivate(), Jwts.SIG.EdDSA).compact();
+        String unknown = Jwts.builder().header().keyId("k3").and().subject("testUser")
+                .signWith(other.getPrivate(), Jwts.SIG.EdDSA).compact();
+        assertThrows(JwtException.class, () -> parser.parseSignedClaims(forged));
+        assertThrows(JwtException.class, () -> parser.parseSignedClaims(unknown));
+
+        assertThrows(IllegalStateException.class, () -> verifier.signWith(Jwts.builder().subject("testUser")));
+    }
+
+    @Test
+    public void testVerifierFetchesKeySet() throws Exception {
+        JwtSigningProperties signerProperties = properties(null, false);
+        signerProperties.setAlgorithm(JwtSigningProperties.Algorithm.ES256);
+        JwtKeySet signer = new JwtKeySet(signerProperties);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/.well-known/jwks.json", exchange -> {
+            byte[] body = signer.toJson().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            JwtSigningProperties verifierProperties = properties(null, true);
+            verifierProperties.setAlgorithm(JwtSigningProperties.Algorithm.ES256);
+            verifierProperties.setJwksUri("http://127.0.0.1:" + server.getAddress().getPort() + "/.well-known/jwks.json");
+            JwtParser parser = Jwts.parser().keyLocator(new JwtKeySet(verifierProperties)).build();
+
+            String token = signer.signWith(Jwts.builder().subject("testUser")).compact();
+            assertEquals("testUser", parser.parseSignedClaims(token).getPayload().getSubject());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static JwtSigningProperties properties(String keyId, boolean verifyOnly, JwtSigningProperties.Key... keys) {
+        JwtSigningProperties properties = new JwtSigningProperties();
+        properties.setAlgorithm(JwtSigningProperties.Algorithm.EdDSA);
+        properties.setKeyId(keyId);
+        properties.setVerifyOnly(verifyOnly);
+        properties.setKeys(List.of(keys));
+        return properties;
+    }
+
+    private static JwtSigningProperties.Key key(String kid, KeyPair privateKey, KeyPair publicKey) {
+        JwtSigningProperties.Key key = new JwtSigningProperties.Key();
+        key.setKid(kid);
+        if (privateKey != null) {
+            key.setPrivateKey(Base64.getEncoder().encodeToString(privateKey.getPrivate().getEncoded()));
+        }
+        key.setPublicKey(Base64.getEncoder().encodeToString(publicKey.getPublic().getEncoded()));
+        return key;
+    }
+}
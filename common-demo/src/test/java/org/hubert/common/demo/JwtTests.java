@@ -16,6 +16,7 @@ import java.util.Base64;
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
@@ -45,7 +46,7 @@ public class JwtTests {
         when(userDetails.getUsername()).thenReturn("testUser");
         when(authentication.getPrincipal()).thenReturn(userDetails);
         // Generate token
-        String jwt = jwtTokenProvider.generateToken(authentication);
+        String jwt = jwtTokenProvider.generateToken(authentication, 1L);
         // 手动解析 JWT 的 payload 部分
         String[] parts = jwt.split("\\.");
         String payload = new String(Base64.getUrlDecoder().decode(parts[1]));
@@ -72,4 +73,18 @@ public class JwtTests {
         assertTrue(actualExpirationTime <= expectedExpirationTime + 1000); // Allowing 1 sec leeway
         assertTrue(actualExpirationTime >= expectedExpirationTime - 1000);
     }
+
+    @Test
+    public void testParseAndValidate() {
+        String jwt = jwtTokenProvider.generateTokenFromUsername("testUser", 7L);
+        Claims claims = jwtTokenProvider.parseAndValidate(jwt);
+        assertEquals("testUser", claims.getSubject());
+        assertEquals(7L, JwtTokenProvider.getVersion(claims));
+        assertTrue(jwtTokenProvider.validateJwtToken(jwt));
+
+        // A token whose signature does not match is rejected without throwing
+        String tampered = jwt.substring(0, jwt.length() - 4) + (jwt.endsWith("AAAA") ? "BBBB" : "AAAA");
+        assertNull(jwtTokenProvider.parseAndValidate(tampered));
+        assertNull(jwtTokenProvider.parseAndValidate("not.a.jwt"));
+    }
 }
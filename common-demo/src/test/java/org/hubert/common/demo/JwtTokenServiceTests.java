@@ -0,0 +1,111 @@
+package org.hubert.common.demo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hubert.common.demo.properties.RedisKeyProperties;
+import org.hubert.common.demo.properties.TokenCacheProperties;
+import org.hubert.common.demo.properties.TokenVersionProperties;
+import org.hubert.common.demo.security.VerifiedTokenCache;
+import org.hubert.common.demo.service.JwtTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 14:30
+ */
+public class JwtTokenServiceTests {
+    private final Map<String, Map<Object, Object>> redis = new ConcurrentHashMap<>();
+    private final List<String> published = new ArrayList<>();
+    private final RedisKeyProperties redisKeyProperties = new RedisKeyProperties();
+    private StringRedisTemplate redisTemplate;
+    private JwtTokenService jwtTokenService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        // Does what the rotation script does to the hashes
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            Map<Object, Object> hash = redis.computeIfAbsent(invocation.<List<String>>getArgument(1).get(0),
+                    key -> new ConcurrentHashMap<>());
+            String username = invocation.getArgument(2);
+            long now = Long.parseLong(invocation.getArgument(3));
+            long staleBefore = now - Long.parseLong(invocation.getArgument(4));
+            long current = Long.parseLong((String) hash.getOrDefault(username, "0"));
+            hash.entrySet().removeIf(field -> !field.getKey().equals(username)
+                    && Long.parseLong((String) field.getValue()) < staleBefore);
+            long version = Math.max(current + 1, now);
+            hash.put(username, String.valueOf(version));
+            published.add(invocation.getArgument(5) + ":" + username);
+            return version;
+        });
+        when(hashOperations.get(anyString(), any())).thenAnswer(invocation ->
+                redis.getOrDefault(invocation.getArgument(0), Map.of()).get(invocation.getArgument(1)));
+        TokenVersionProperties tokenVersionProperties = new TokenVersionProperties();
+        tokenVersionProperties.setBuckets(4);
+        jwtTokenService = new JwtTokenService(redisTemplate, redisKeyProperties, tokenVersionProperties,
+                new VerifiedTokenCache(new TokenCacheProperties(), new SimpleMeterRegistry()), 60000L);
+    }
+
+    @Test
+    public void testRotationRevokesPreviousVersion() {
+        assertFalse(jwtTokenService.isCurrent("testUser", 1L));
+
+        long first = jwtTokenService.rotate("testUser");
+        assertTrue(jwtTokenService.isCurrent("testUser", first));
+
+        long second = jwtTokenService.rotate("testUser");
+        assertTrue(second > first);
+        assertFalse(jwtTokenService.isCurrent("testUser", first));
+        assertTrue(jwtTokenService.isCurrent("testUser", second));
+        String rotated = redisKeyProperties.getJwtRotatedChannel() + ":testUser";
+        assertEquals(List.of(rotated, rotated), published);
+    }
+
+    @Test
+    public void testLostVersionsDoNotRestoreRevokedTokens() throws InterruptedException {
+        long revoked = jwtTokenService.rotate("testUser");
+        long current = jwtTokenService.rotate("testUser");
+        Thread.sleep(5);
+        // The hashes are flushed, evicted or lost in a failover: every token is refused
+        redis.clear();
+        assertFalse(jwtTokenService.isCurrent("testUser", revoked));
+        assertFalse(jwtTokenService.isCurrent("testUser", current));
+
+        // Versions start from the clock rather than from 1, so the revoked ones never come back
+        long next = jwtTokenService.rotate("testUser");
+        assertTrue(next > current);
+        assertFalse(jwtTokenService.isCurrent("testUser", revoked));
+        assertTrue(jwtTokenService.isCurrent("testUser", next));
+    }
+
+    @Test
+    public void testUsersShareBoundedNumberOfHashes() {
+        for (int i = 0; i < 100; i++) {
+            jwtTokenService.rotate("user" + i);
+        }
+        assertTrue(redis.size() <= 4);
+        assertEquals(100, redis.values().stream().mapToInt(Map::size).sum());
+        assertTrue(redis.keySet().stream().allMatch(key -> key.startsWith(redisKeyProperties.getUserJwtVersionKey())));
+    }
+}
@@ -0,0 +1,67 @@
+package org.hubert.common.demo;
+
+import org.hubert.common.demo.executor.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 21:50
+ */
+public class LatencyHistogramTests {
+
+    @Test
+    public void testSmallDurationsAreExact() {
+        for (long nanos = 0; nanos < 4; nanos++) {
+            assertEquals(nanos + 1, percentileOf(nanos));
+        }
+        // Negative durations count as zero
+        assertEquals(1L, percentileOf(-5L));
+    }
+
+    @Test
+    public void testBucketUpperBounds() {
+        // Each power of two is split into four buckets
+        assertEquals(5L, percentileOf(4L));
+        assertEquals(8L, percentileOf(7L));
+        assertEquals(10L, percentileOf(8L));
+        assertEquals(1024L, percentileOf(1000L));
+        assertEquals(1280L, percentileOf(1024L));
+        assertEquals(Long.MAX_VALUE, percentileOf(Long.MAX_VALUE));
+        for (long nanos = 4; nanos < 1_000_000_000L; nanos = nanos * 3 + 1) {
+            long upper = percentileOf(nanos);
+            assertTrue(upper > nanos && upper <= nanos + nanos / 4 + 1, "nanos " + nanos + " upper " + upper);
+        }
+    }
+
+    @Test
+    public void testPercentileOverInterval() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] empty = histogram.snapshot();
+        assertEquals(0L, LatencyHistogram.percentile(empty, histogram.snapshot(), 0.99d));
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000L);
+        }
+        histogram.record(1_000_000L);
+        long[] first = histogram.snapshot();
+        assertEquals(1024L, LatencyHistogram.percentile(empty, first, 0.5d));
+        assertEquals(1024L, LatencyHistogram.percentile(empty, first, 0.99d));
+        assertEquals(1_048_576L, LatencyHistogram.percentile(empty, first, 1d));
+
+        // Only the durations recorded since the earlier snapshot count
+        histogram.record(8L);
+        assertEquals(10L, LatencyHistogram.percentile(first, histogram.snapshot(), 0.99d));
+        assertEquals(0L, LatencyHistogram.percentile(first, first, 0.99d));
+    }
+
+    private static long percentileOf(long nanos) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] from = histogram.snapshot();
+        histogram.record(nanos);
+        return LatencyHistogram.percentile(from, histogram.snapshot(), 0.99d);
+    }
+}
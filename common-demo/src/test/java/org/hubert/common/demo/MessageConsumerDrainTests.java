@@ -0,0 +1,106 @@
+package org.hubert.common.demo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.hubert.common.demo.executor.BulkheadExecutor;
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.properties.MQConsumerOperationProperties;
+import org.hubert.common.demo.rocketmq.consumer.AbstractMessageConsumerHandler;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetter;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterStore;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 20:30
+ */
+public class MessageConsumerDrainTests {
+
+    @Test
+    public void testBulkheadLeftoversAreSpooled() throws Exception {
+        DefaultMQPushConsumer consumer = mock(DefaultMQPushConsumer.class);
+        when(consumer.getConsumerGroup()).thenReturn("test-group");
+        DeadLetterStore deadLetterStore = mock(DeadLetterStore.class);
+        MQConsumerOperationProperties properties = new MQConsumerOperationProperties();
+        properties.setLagRefreshIntervalMs(TimeUnit.HOURS.toMillis(1));
+        properties.getBulkhead().setEnabled(true);
+        properties.getBulkhead().setMaxConcurrentPerKey(2);
+        properties.getBulkhead().setOverflowPolicy(BulkheadExecutor.OverflowPolicy.QUEUE);
+        CustomThreadPoolExecutor executor = ThreadPoolFactory.createThreadPool(1, 1, 1L, "drain-test");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AbstractMessageConsumerHandler handler = new AbstractMessageConsumerHandler(consumer, executor, properties,
+                new SimpleMeterRegistry(), deadLetterStore, mock(HashedWheelTimer.class)) {
+            @Override
+            public boolean processMessage(String message) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+
+            @Override
+            protected String bulkheadKey(MessageExt msg) {
+                return "app";
+            }
+        };
+        try {
+            ArgumentCaptor<MessageListenerConcurrently> listener = ArgumentCaptor.forClass(MessageListenerConcurrently.class);
+            verify(consumer).registerMessageListener(listener.capture());
+            // The first message runs, the second waits in the executor and the third in the bulkhead
+            ConsumeConcurrentlyStatus status = listener.getValue().consumeMessage(
+                    List.of(message("m1"), message("m2"), message("m3")),
+                    new ConsumeConcurrentlyContext(new MessageQueue()));
+            assertEquals(ConsumeConcurrentlyStatus.CONSUME_SUCCESS, status);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            handler.startDrain();
+            assertFalse(handler.awaitDrained(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50)));
+            assertEquals(2, handler.spoolLeftovers());
+            ArgumentCaptor<DeadLetter> spooled = ArgumentCaptor.forClass(DeadLetter.class);
+            verify(deadLetterStore, times(2)).park(spooled.capture());
+            assertEquals(Set.of("m2", "m3"), spooled.getAllValues().stream()
+                    .map(DeadLetter::getKeys)
+                    .collect(Collectors.toSet()));
+        } finally {
+            release.countDown();
+            handler.shutDownConsumer();
+        }
+    }
+
+    private static MessageExt message(String keys) {
+        MessageExt msg = new MessageExt();
+        msg.setTopic("test-topic");
+        msg.setMsgId(keys);
+        msg.setKeys(keys);
+        msg.setBody(("{\"appId\":\"app\"}").getBytes(StandardCharsets.UTF_8));
+        return msg;
+    }
+}
@@ -0,0 +1,63 @@
+package org.hubert.common.demo;
+
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.exceptions.CustomException;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.security.OffloadedPasswordEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/13 16:40
+ */
+public class OffloadedPasswordEncoderTests {
+    private final CustomThreadPoolExecutor executor = ThreadPoolFactory.createBoundedThreadPool(1, 1, 1L, 1, "password-test");
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testHashesOnPoolAndRequestsRehashOfWeakerHashes() {
+        OffloadedPasswordEncoder encoder = new OffloadedPasswordEncoder(new BCryptPasswordEncoder(5), executor, 5000);
+        String hash = encoder.encode("secret");
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+    }
+
+    @Test
+    public void testRejectsWhenPoolIsFull() throws Exception {
+        OffloadedPasswordEncoder encoder = new OffloadedPasswordEncoder(new BCryptPasswordEncoder(4), executor, 50);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        try {
+            // Fills the queue, then gives up after the maximum wait
+            assertThrows(CustomException.class, () -> encoder.encode("secret"));
+            // The cancelled task still occupies the queue, so this one is refused outright
+            assertThrows(CustomException.class, () -> encoder.encode("secret"));
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.hubert.common.demo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hubert.common.demo.config.ThreadPoolConfig;
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.executor.PrioritizedCallable;
+import org.hubert.common.demo.executor.PrioritizedRunnable;
+import org.hubert.common.demo.executor.PriorityDeadlineBlockingQueue;
+import org.hubert.common.demo.executor.ThreadPoolRegistry;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.properties.ThreadPoolProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/10 11:30
+ */
+public class PriorityThreadPoolTests {
+
+    @Test
+    public void testQueueOrdersByPriorityThenDeadlineThenArrival() {
+        PriorityDeadlineBlockingQueue queue = new PriorityDeadlineBlockingQueue(10);
+        Runnable plain = () -> {
+        };
+        Runnable low = PrioritizedRunnable.of(() -> {
+        }, -1);
+        Runnable urgent = PrioritizedRunnable.of(() -> {
+        }, 0, Duration.ofMinutes(1));
+        Runnable high = PrioritizedRunnable.of(() -> {
+        }, 5);
+        queue.offer(low);
+        queue.offer(plain);
+        queue.offer(urgent);
+        queue.offer(high);
+        assertSame(high, queue.poll());
+        assertSame(urgent, queue.poll());
+        assertSame(plain, queue.poll());
+        assertSame(low, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testFullQueueEvictsLowestValueTask() {
+        PriorityDeadlineBlockingQueue queue = new PriorityDeadlineBlockingQueue(2);
+        Runnable low = PrioritizedRunnable.of(() -> {
+        }, 1);
+        Runnable mid = PrioritizedRunnable.of(() -> {
+        }, 2);
+        Runnable high = PrioritizedRunnable.of(() -> {
+        }, 3);
+        Runnable lowest = PrioritizedRunnable.of(() -> {
+        }, 0);
+        assertNull(queue.offerEvictingLowest(low));
+        assertNull(queue.offerEvictingLowest(mid));
+        assertSame(low, queue.offerEvictingLowest(high));
+        assertSame(lowest, queue.offerEvictingLowest(lowest));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testPoolShedsExpiredTasksAndRunsByPriority() throws Exception {
+        CustomThreadPoolExecutor executor = ThreadPoolFactory.createPriorityThreadPool(1, 1, 1L, 10, "priority-test");
+        try {
+            CountDownLatch blocker = new CountDownLatch(1);
+            executor.execute(() -> {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            List<Integer> order = new CopyOnWriteArrayList<>();
+            Future<Integer> expired = executor.submit(PrioritizedCallable.of(() -> 0, 9, Duration.ofMillis(1)));
+            executor.execute(PrioritizedRunnable.of(() -> order.add(1), 1));
+            executor.execute(PrioritizedRunnable.of(() -> order.add(2), 2));
+            TimeUnit.MILLISECONDS.sleep(20);
+            blocker.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertTrue(expired.isCancelled());
+            assertEquals(List.of(2, 1), order);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPriorityQueueRefusedForPoolsRejectingWhenFull() {
+        ThreadPoolProperties.Pool pool = new ThreadPoolProperties.Pool();
+        pool.setQueueType(ThreadPoolProperties.QueueType.PRIORITY);
+        ThreadPoolProperties properties = new ThreadPoolProperties();
+        properties.getPools().put("signin-thread-pool", pool);
+        ThreadPoolConfig config = new ThreadPoolConfig(
+                new ThreadPoolRegistry(new SimpleMeterRegistry(), new MockEnvironment()), properties);
+
+        assertThrows(IllegalStateException.class, config::signinThreadPoolExecutor);
+    }
+}
@@ -0,0 +1,169 @@
+package org.hubert.common.demo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hubert.common.demo.entity.RefreshToken;
+import org.hubert.common.demo.entity.User;
+import org.hubert.common.demo.exceptions.CustomException;
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.locks.DistributedLock;
+import org.hubert.common.demo.properties.RedisKeyProperties;
+import org.hubert.common.demo.properties.RefreshTokenSweepProperties;
+import org.hubert.common.demo.repository.RefreshTokenRepository;
+import org.hubert.common.demo.repository.UserRepository;
+import org.hubert.common.demo.security.RefreshTokenGenerator;
+import org.hubert.common.demo.service.RefreshTokenService;
+import org.hubert.common.demo.service.RefreshTokenSweeper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 19:00
+ */
+public class RefreshTokenServiceTests {
+    private static final long SWEEP_INTERVAL_MS = 300L;
+    private final List<String> attempts = new CopyOnWriteArrayList<>();
+    private final RefreshTokenRepository refreshTokenRepository = mock(RefreshTokenRepository.class);
+    private final DistributedLock distributedLock = mock(DistributedLock.class);
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    public void setUp() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.getReferenceById(1L)).thenReturn(new User());
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, userRepository);
+        ReflectionTestUtils.setField(refreshTokenService, "refreshTokenDurationMs", 60000L);
+        ReflectionTestUtils.setField(refreshTokenService, "retryTime", 3);
+    }
+
+    @Test
+    public void testTokensAreRandomAndUrlSafe() {
+        Set<String> tokens = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            String token = RefreshTokenGenerator.generate();
+            assertEquals(43, token.length());
+            assertTrue(token.matches("[A-Za-z0-9_-]+"));
+            tokens.add(token);
+        }
+        assertEquals(10000, tokens.size());
+    }
+
+    @Test
+    public void testCollisionRetriedWithNewToken() {
+        when(refreshTokenRepository.save(any())).thenAnswer(invocation -> {
+            RefreshToken refreshToken = invocation.getArgument(0);
+            assertNull(refreshToken.getToken());
+            attempts.add(Base64.getEncoder().encodeToString(refreshToken.getTokenHash()));
+            if (attempts.size() == 1) {
+                throw new DataIntegrityViolationException("Duplicate entry for key 'token'");
+            }
+            return refreshToken;
+        });
+
+        RefreshToken refreshToken = refreshTokenService.createRefreshToken(1L);
+        assertEquals(2, attempts.size());
+        assertNotEquals(attempts.get(0), attempts.get(1));
+        // Only the hash is stored, the token is handed back to the caller
+        assertEquals(attempts.get(1), Base64.getEncoder().encodeToString(RefreshTokenGenerator.hash(refreshToken.getToken())));
+
+        // Gives up once every attempt collided
+        attempts.clear();
+        doThrow(new DataIntegrityViolationException("Duplicate entry")).when(refreshTokenRepository).save(any());
+        assertThrows(CustomException.class, () -> refreshTokenService.createRefreshToken(1L));
+    }
+
+    @Test
+    public void testSweeperDeletesBacklogInChunksOffTheTimerPool() throws Exception {
+        Queue<Integer> backlog = new ConcurrentLinkedQueue<>(List.of(1000, 1000, 3));
+        List<Long> calledAt = new CopyOnWriteArrayList<>();
+        List<String> calledOn = new CopyOnWriteArrayList<>();
+        CountDownLatch drained = new CountDownLatch(3);
+        when(refreshTokenRepository.deleteExpired(any(), eq(1000))).thenAnswer(invocation -> {
+            calledAt.add(System.nanoTime());
+            calledOn.add(Thread.currentThread().getName());
+            drained.countDown();
+            Integer deleted = backlog.poll();
+            return deleted == null ? 0 : deleted;
+        });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        withSweeper(true, meterRegistry, sweeper -> {
+            sweeper.start();
+            assertTrue(drained.await(5, TimeUnit.SECONDS));
+            // Full chunks are followed right away, the partial one waits for the interval
+            assertTrue(calledAt.get(2) - calledAt.get(0) < TimeUnit.MILLISECONDS.toNanos(SWEEP_INTERVAL_MS));
+            assertTrue(calledOn.stream().allMatch(name -> name.startsWith("sweep-test")), calledOn.toString());
+            assertEquals(2003.0, meterRegistry.get(RefreshTokenSweeper.SWEPT_METRIC).functionCounter().count());
+        });
+    }
+
+    @Test
+    public void testSweepSkippedWhileAnotherNodeHoldsTheLock() throws Exception {
+        CountDownLatch attempted = new CountDownLatch(2);
+        withSweeper(false, new SimpleMeterRegistry(), sweeper -> {
+            when(distributedLock.tryLock(any(), anyInt(), any(TimeUnit.class), any(Supplier.class))).thenAnswer(invocation -> {
+                attempted.countDown();
+                return null;
+            });
+            sweeper.start();
+            assertTrue(attempted.await(5, TimeUnit.SECONDS));
+            verify(refreshTokenRepository, never()).deleteExpired(any(), anyInt());
+        });
+    }
+
+    private void withSweeper(boolean lockFree, SimpleMeterRegistry meterRegistry, SweeperTest test) throws Exception {
+        RefreshTokenSweepProperties properties = new RefreshTokenSweepProperties();
+        properties.setChunkSize(1000);
+        properties.setIntervalMs(SWEEP_INTERVAL_MS);
+        if (lockFree) {
+            when(distributedLock.tryLock(any(), anyInt(), any(TimeUnit.class), any(Supplier.class)))
+                    .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+        }
+        CustomThreadPoolExecutor timerExecutor = ThreadPoolFactory.createThreadPool(1, 1, 1L, "timer-test");
+        CustomThreadPoolExecutor sweepExecutor = ThreadPoolFactory.createBoundedThreadPool(1, 1, 1L, 1, "sweep-test");
+        HashedWheelTimer wheelTimer = ThreadPoolFactory.createWheelTimer("sweeper-test", 10, 8, timerExecutor);
+        RefreshTokenSweeper sweeper = new RefreshTokenSweeper(refreshTokenRepository, properties, wheelTimer,
+                sweepExecutor, distributedLock, new RedisKeyProperties(), meterRegistry);
+        try {
+            test.run(sweeper);
+        } finally {
+            sweeper.stop();
+            wheelTimer.stop();
+            timerExecutor.shutdownNow();
+            sweepExecutor.shutdownNow();
+        }
+    }
+
+    private interface SweeperTest {
+        void run(RefreshTokenSweeper sweeper) throws Exception;
+    }
+}
@@ -0,0 +1,69 @@
+package org.hubert.common.demo;
+
+import org.hubert.common.demo.executor.ResizableArrayBlockingQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/8 15:40
+ */
+public class ResizableArrayBlockingQueueTests {
+
+    @Test
+    public void testShrinkingKeepsQueuedElements() {
+        ResizableArrayBlockingQueue<Integer> queue = new ResizableArrayBlockingQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        queue.setCapacity(2);
+        assertEquals(4, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+        assertFalse(queue.offer(4));
+        queue.poll();
+        queue.poll();
+        queue.poll();
+        assertTrue(queue.offer(4));
+        assertFalse(queue.offer(5));
+    }
+
+    @Test
+    public void testGrowingWakesUpWaitingProducer() throws InterruptedException {
+        ResizableArrayBlockingQueue<Integer> queue = new ResizableArrayBlockingQueue<>(1);
+        queue.put(0);
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+        queue.setCapacity(2);
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(producer.isAlive());
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testDrainKeepsOrder() {
+        ResizableArrayBlockingQueue<Integer> queue = new ResizableArrayBlockingQueue<>(10);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(i);
+        }
+        assertTrue(queue.remove(2));
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, queue.drainTo(drained));
+        assertEquals(List.of(0, 1, 3, 4), drained);
+    }
+}
@@ -0,0 +1,54 @@
+package org.hubert.common.demo;
+
+import org.hubert.common.demo.entity.Role;
+import org.hubert.common.demo.enums.RoleEnum;
+import org.hubert.common.demo.exceptions.CustomException;
+import org.hubert.common.demo.repository.RoleRepository;
+import org.hubert.common.demo.service.RoleService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/13 14:30
+ */
+public class RoleServiceTests {
+
+    @Test
+    public void testRolesAreServedFromMemoryAndReloadedOnMiss() {
+        Role user = role(RoleEnum.ROLE_USER);
+        Role admin = role(RoleEnum.ROLE_ADMIN);
+        RoleRepository roleRepository = mock(RoleRepository.class);
+        when(roleRepository.findAll()).thenReturn(List.of(user), List.of(user, admin), List.of(user, admin));
+        RoleService roleService = new RoleService(roleRepository);
+        roleService.loadRoles();
+
+        assertSame(user, roleService.getRole(RoleEnum.ROLE_USER));
+        assertSame(user, roleService.getRole(RoleEnum.ROLE_USER));
+        verify(roleRepository, times(1)).findAll();
+
+        // A role inserted after startup is found by reloading once
+        assertSame(admin, roleService.getRole(RoleEnum.ROLE_ADMIN));
+        verify(roleRepository, times(2)).findAll();
+
+        // A missing role does not reload again until the reload interval has passed
+        assertThrows(CustomException.class, () -> roleService.getRole(RoleEnum.ROLE_MODERATOR));
+        assertThrows(CustomException.class, () -> roleService.getRole(RoleEnum.ROLE_MODERATOR));
+        verify(roleRepository, times(2)).findAll();
+    }
+
+    private static Role role(RoleEnum name) {
+        Role role = new Role();
+        role.setName(name);
+        return role;
+    }
+}
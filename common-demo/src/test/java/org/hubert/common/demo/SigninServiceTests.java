@@ -0,0 +1,156 @@
+package org.hubert.common.demo;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.hubert.common.demo.dto.request.LoginRequest;
+import org.hubert.common.demo.dto.response.JwtResponse;
+import org.hubert.common.demo.entity.RefreshToken;
+import org.hubert.common.demo.enums.ResponseEnum;
+import org.hubert.common.demo.exceptions.CustomException;
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.security.JwtTokenProvider;
+import org.hubert.common.demo.service.JwtTokenService;
+import org.hubert.common.demo.service.RefreshTokenService;
+import org.hubert.common.demo.service.SigninService;
+import org.hubert.common.demo.service.impl.UserDetailsImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 16:30
+ */
+public class SigninServiceTests {
+    private final List<String> steps = new CopyOnWriteArrayList<>();
+    private final JwtTokenService jwtTokenService = mock(JwtTokenService.class);
+    private final RefreshTokenService refreshTokenService = mock(RefreshTokenService.class);
+    private final JwtTokenProvider jwtTokenProvider = mock(JwtTokenProvider.class);
+    private CustomThreadPoolExecutor executor;
+    private SigninService signinService;
+
+    @BeforeEach
+    public void setUp() {
+        UserDetailsImpl user = new UserDetailsImpl(1L, "testUser", "test@example.com", "hash", List.of());
+        AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+        when(authenticationManager.authenticate(any())).thenReturn(
+                new UsernamePasswordAuthenticationToken(user, null, List.of()));
+
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public void onStop(Observation.Context context) {
+                if (SigninService.STEP_OBSERVATION.equals(context.getName())) {
+                    assertEquals(SigninService.SIGNIN_OBSERVATION, context.getParentObservation().getContextView().getName());
+                    steps.add(context.getLowCardinalityKeyValue("step").getValue());
+                }
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+        executor = ThreadPoolFactory.createBoundedThreadPool(1, 1, 1L, 1, "signin-test");
+        signinService = new SigninService(authenticationManager, jwtTokenProvider, jwtTokenService,
+                refreshTokenService, executor, observationRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testRefreshTokenCreatedWhileJwtIssued() {
+        // The JWT can only be signed once the refresh token is being created, which fails unless both run at once
+        CountDownLatch creating = new CountDownLatch(1);
+        when(jwtTokenService.rotate("testUser")).thenReturn(3L);
+        when(refreshTokenService.createRefreshToken(1L)).thenAnswer(invocation -> {
+            creating.countDown();
+            return refreshToken("refresh");
+        });
+        when(jwtTokenProvider.generateToken(any(), anyLong())).thenAnswer(invocation -> {
+            if (!creating.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Refresh token was not created concurrently");
+            }
+            return "jwt-" + invocation.getArgument(1);
+        });
+
+        JwtResponse response = signinService.signin(loginRequest());
+        assertEquals("jwt-3", response.getToken());
+        assertEquals("refresh", response.getRefreshToken());
+        assertEquals(Set.of("authenticate", "refresh-token", "rotate", "sign"), Set.copyOf(steps));
+        assertEquals(4, steps.size());
+    }
+
+    @Test
+    public void testNoRefreshTokenCreatedWhenRotationFails() {
+        CustomException failure = new CustomException(ResponseEnum.INTERNAL_SERVER_ERROR);
+        when(jwtTokenService.rotate("testUser")).thenThrow(failure);
+
+        assertSame(failure, assertThrows(CustomException.class, () -> signinService.signin(loginRequest())));
+        verify(refreshTokenService, never()).createRefreshToken(anyLong());
+    }
+
+    @Test
+    public void testRefreshTokenDeletedWhenSigningFails() {
+        IllegalStateException failure = new IllegalStateException("signing failed");
+        RefreshToken created = refreshToken("refresh");
+        when(jwtTokenService.rotate("testUser")).thenReturn(1L);
+        when(refreshTokenService.createRefreshToken(1L)).thenReturn(created);
+        when(jwtTokenProvider.generateToken(any(), anyLong())).thenThrow(failure);
+
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> signinService.signin(loginRequest())));
+        verify(refreshTokenService, timeout(5000)).deleteRefreshToken(created);
+    }
+
+    @Test
+    public void testRefreshTokenFailureIsRethrown() {
+        CustomException failure = new CustomException(ResponseEnum.INTERNAL_SERVER_ERROR);
+        when(jwtTokenService.rotate("testUser")).thenReturn(1L);
+        when(refreshTokenService.createRefreshToken(1L)).thenThrow(failure);
+        when(jwtTokenProvider.generateToken(any(), anyLong())).thenReturn("jwt");
+
+        assertSame(failure, assertThrows(CustomException.class, () -> signinService.signin(loginRequest())));
+    }
+
+    private static LoginRequest loginRequest() {
+        LoginRequest request = new LoginRequest();
+        request.setUsername("testUser");
+        request.setPassword("password");
+        return request;
+    }
+
+    private static RefreshToken refreshToken(String token) {
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setToken(token);
+        refreshToken.setExpireDate(Instant.now().plusSeconds(60));
+        return refreshToken;
+    }
+}
@@ -0,0 +1,51 @@
+package org.hubert.common.demo;
+
+import org.hubert.common.demo.executor.StripedExecutor;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 20:50
+ */
+public class StripedExecutorTests {
+
+    @Test
+    public void testFullStripeRefusesKeyedTaskInsteadOfDroppingQueuedOnes() throws Exception {
+        StripedExecutor executor = ThreadPoolFactory.createStripedExecutor(1, 2, "striped-test");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> ran = new CopyOnWriteArrayList<>();
+        try {
+            executor.execute("key", () -> {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                ran.add(0);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            executor.execute("key", () -> ran.add(1));
+            executor.execute("key", () -> ran.add(2));
+            assertThrows(RejectedExecutionException.class, () -> executor.execute("key", () -> ran.add(3)));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 1, 2), ran);
+    }
+}
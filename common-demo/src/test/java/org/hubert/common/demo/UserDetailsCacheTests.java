@@ -0,0 +1,136 @@
+package org.hubert.common.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.properties.RedisKeyProperties;
+import org.hubert.common.demo.properties.TokenCacheProperties;
+import org.hubert.common.demo.properties.UserDetailsCacheProperties;
+import org.hubert.common.demo.security.UserDetailsCache;
+import org.hubert.common.demo.security.VerifiedTokenCache;
+import org.hubert.common.demo.service.impl.UserDetailsImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/13 10:40
+ */
+public class UserDetailsCacheTests {
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger databaseLoads = new AtomicInteger();
+    private final RedisKeyProperties redisKeyProperties = new RedisKeyProperties();
+    private StringRedisTemplate redisTemplate;
+    private CustomThreadPoolExecutor timerExecutor;
+    private HashedWheelTimer wheelTimer;
+    private UserDetailsCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        when(redisTemplate.delete(anyString())).thenAnswer(invocation -> redis.remove(invocation.<String>getArgument(0)) != null);
+
+        timerExecutor = ThreadPoolFactory.createThreadPool(1, 1, 1L, "user-cache-test");
+        wheelTimer = ThreadPoolFactory.createWheelTimer("user-cache-test", 10, 8, timerExecutor);
+        cache = new UserDetailsCache(new UserDetailsCacheProperties(), redisKeyProperties, redisTemplate,
+                new ObjectMapper(), new VerifiedTokenCache(new TokenCacheProperties(), new SimpleMeterRegistry()),
+                wheelTimer, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        wheelTimer.stop();
+        timerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentLookupsLoadOnce() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<UserDetailsImpl>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> cache.get("alice", username -> {
+                    try {
+                        loading.await(1, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return load(username);
+                })));
+            }
+            loading.countDown();
+            for (Future<UserDetailsImpl> result : results) {
+                assertEquals("alice", result.get(5, TimeUnit.SECONDS).getUsername());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, databaseLoads.get());
+    }
+
+    @Test
+    public void testRedisCopyIsSharedAndInvalidated() {
+        assertNull(cache.get("alice", this::load).getPassword());
+        assertEquals(1, redis.size());
+        // The password hash never reaches Redis
+        assertFalse(redis.values().iterator().next().contains("hash"));
+
+        // Another node finds the user in Redis without querying the database
+        UserDetailsCache otherNode = new UserDetailsCache(new UserDetailsCacheProperties(), redisKeyProperties,
+                redisTemplate, new ObjectMapper(),
+                new VerifiedTokenCache(new TokenCacheProperties(), new SimpleMeterRegistry()), wheelTimer,
+                new SimpleMeterRegistry());
+        UserDetailsImpl shared = otherNode.get("alice", this::load);
+        assertEquals(1, databaseLoads.get());
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_ADMIN")), List.copyOf(shared.getAuthorities()));
+        assertNull(shared.getPassword());
+
+        cache.invalidate("alice");
+        assertEquals(0, redis.size());
+        verify(redisTemplate).convertAndSend(redisKeyProperties.getUserDetailsInvalidatedChannel(), "alice");
+        cache.get("alice", this::load);
+        assertEquals(2, databaseLoads.get());
+    }
+
+    private UserDetailsImpl load(String username) {
+        databaseLoads.incrementAndGet();
+        return new UserDetailsImpl(1L, username, username + "@example.com", "hash",
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN")));
+    }
+}
@@ -0,0 +1,61 @@
+package org.hubert.common.demo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hubert.common.demo.properties.TokenCacheProperties;
+import org.hubert.common.demo.security.VerifiedTokenCache;
+import org.hubert.common.demo.service.impl.UserDetailsImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/12 16:40
+ */
+public class VerifiedTokenCacheTests {
+    private final UserDetails alice = new UserDetailsImpl(1L, "alice", "alice@example.com", "", List.of());
+    private VerifiedTokenCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new VerifiedTokenCache(new TokenCacheProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testRotationEvictsPreviousToken() {
+        cache.put("token-1", inOneMinute(), alice, cache.version());
+        assertSame(alice, cache.get("token-1"));
+
+        cache.put("token-2", inOneMinute(), alice, cache.version());
+        assertNull(cache.get("token-1"));
+        assertSame(alice, cache.get("token-2"));
+
+        cache.evictUser("alice");
+        assertNull(cache.get("token-2"));
+    }
+
+    @Test
+    public void testTokenVerifiedDuringRotationIsNotCached() {
+        long version = cache.version();
+        cache.evictUser("alice");
+        cache.put("token-1", inOneMinute(), alice, version);
+        assertNull(cache.get("token-1"));
+    }
+
+    @Test
+    public void testExpiredTokenIsNotReturned() {
+        cache.put("token-1", new Date(System.currentTimeMillis() - 1000), alice, cache.version());
+        assertNull(cache.get("token-1"));
+    }
+
+    private static Date inOneMinute() {
+        return new Date(System.currentTimeMillis() + 60_000);
+    }
+}
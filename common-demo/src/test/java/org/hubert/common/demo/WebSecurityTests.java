@@ -0,0 +1,87 @@
+package org.hubert.common.demo;
+
+import org.hubert.common.demo.config.WebSecurityConfig;
+import org.hubert.common.demo.controller.DeadLetterController;
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.filter.JwtAuthenticationFilter;
+import org.hubert.common.demo.properties.PasswordHashProperties;
+import org.hubert.common.demo.rocketmq.dlq.DeadLetterReplayer;
+import org.hubert.common.demo.security.AuthEntryPointJwt;
+import org.hubert.common.demo.security.JwtTokenProvider;
+import org.hubert.common.demo.security.VerifiedTokenCache;
+import org.hubert.common.demo.service.JwtTokenService;
+import org.hubert.common.demo.service.impl.UserDetailsImpl;
+import org.hubert.common.demo.service.impl.UserDetailsServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 21:30
+ */
+@WebMvcTest(DeadLetterController.class)
+@Import({WebSecurityConfig.class, JwtAuthenticationFilter.class, AuthEntryPointJwt.class, PasswordHashProperties.class})
+public class WebSecurityTests {
+    private static final String USER_TOKEN = "user-token";
+    private static final String ADMIN_TOKEN = "admin-token";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @MockBean
+    private DeadLetterReplayer deadLetterReplayer;
+    @MockBean
+    private JwtTokenProvider jwtTokenProvider;
+    @MockBean
+    private JwtTokenService jwtTokenService;
+    @MockBean
+    private UserDetailsServiceImpl userDetailsService;
+    @MockBean
+    private VerifiedTokenCache verifiedTokenCache;
+    @MockBean(name = "passwordHashThreadPoolExecutor")
+    private CustomThreadPoolExecutor passwordHashThreadPoolExecutor;
+
+    @Test
+    public void testDeadLetterEndpointsRequireAdmin() throws Exception {
+        verifiedTokens();
+        mockMvc.perform(post("/rocketmq/dlq/replay").header(HttpHeaders.AUTHORIZATION, "Bearer " + USER_TOKEN))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/rocketmq/dlq/replay").header(HttpHeaders.AUTHORIZATION, "Bearer " + USER_TOKEN))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/rocketmq/dlq/replay").header(HttpHeaders.AUTHORIZATION, "Bearer " + USER_TOKEN))
+                .andExpect(status().isForbidden());
+        verify(deadLetterReplayer, never()).start(any(), any());
+        verify(deadLetterReplayer, never()).cancel();
+
+        mockMvc.perform(get("/rocketmq/dlq/replay").header(HttpHeaders.AUTHORIZATION, "Bearer " + ADMIN_TOKEN))
+                .andExpect(status().isOk());
+        verify(deadLetterReplayer).status();
+    }
+
+    private void verifiedTokens() {
+        when(verifiedTokenCache.get(USER_TOKEN)).thenReturn(user("alice", "ROLE_USER"));
+        when(verifiedTokenCache.get(ADMIN_TOKEN)).thenReturn(user("root", "ROLE_ADMIN"));
+    }
+
+    private static UserDetailsImpl user(String username, String role) {
+        return new UserDetailsImpl(1L, username, username + "@example.com", null,
+                List.of(new SimpleGrantedAuthority(role)));
+    }
+}
@@ -0,0 +1,165 @@
+package org.hubert.common.demo.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files in JSON format and reports the benchmarks that got worse by more than a
+ * threshold. Throughput results regress when they go down, time results when they go up. Sampled time results
+ * are also compared on their 99th percentile.
+ * <p>
+ * A score only counts as a regression when the change is both above the threshold and larger than the error
+ * margins of the two runs together, so noisy benchmarks do not fail the comparison on their own.
+ * <p>
+ * Usage: {@code BenchmarkComparator <baseline.json> <current.json> [thresholdPercent]}, the threshold defaults to
+ * {@value #DEFAULT_THRESHOLD_PERCENT}%. Exits with status 1 if anything regressed.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/12 14:40
+ */
+public final class BenchmarkComparator {
+    public static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+
+    private static final String P99 = "99.0";
+
+    private BenchmarkComparator() {
+    }
+
+    /**
+     * Compares the results of a run with the results of a baseline run.
+     *
+     * @param baseline         the JMH JSON results of the baseline run
+     * @param current          the JMH JSON results of the run to check
+     * @param thresholdPercent how much worse, in percent, a result may get before it counts as a regression
+     * @return the regressions, empty if there are none
+     * @throws IOException if a result file cannot be read
+     */
+    public static List<Regression> compare(Path baseline, Path current, double thresholdPercent) throws IOException {
+        Map<String, JsonNode> baselineResults = read(baseline);
+        Map<String, JsonNode> currentResults = read(current);
+        List<Regression> regressions = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> entry : currentResults.entrySet()) {
+            JsonNode before = baselineResults.get(entry.getKey());
+            if (before == null) {
+                System.out.println("No baseline for " + entry.getKey());
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+            JsonNode beforeMetric = before.path("primaryMetric");
+            JsonNode afterMetric = after.path("primaryMetric");
+            double beforeScore = beforeMetric.path("score").asDouble();
+            double afterScore = afterMetric.path("score").asDouble();
+            double margin = error(beforeMetric) + error(afterMetric);
+            double change = change(beforeScore, afterScore, higherIsBetter);
+            print(entry.getKey(), "score", beforeScore, afterScore, change, afterMetric.path("scoreUnit").asText());
+            if (change > thresholdPercent && Math.abs(afterScore - beforeScore) > margin) {
+                regressions.add(new Regression(entry.getKey(), "score", beforeScore, afterScore, change));
+            }
+            JsonNode beforeP99 = beforeMetric.path("scorePercentiles").path(P99);
+            JsonNode afterP99 = afterMetric.path("scorePercentiles").path(P99);
+            if ("sample".equals(after.path("mode").asText()) && beforeP99.isNumber() && afterP99.isNumber()) {
+                double p99Change = change(beforeP99.asDouble(), afterP99.asDouble(), false);
+                print(entry.getKey(), "p99", beforeP99.asDouble(), afterP99.asDouble(), p99Change,
+                        afterMetric.path("scoreUnit").asText());
+                if (p99Change > thresholdPercent) {
+                    regressions.add(new Regression(entry.getKey(), "p99", beforeP99.asDouble(), afterP99.asDouble(), p99Change));
+                }
+            }
+        }
+        return regressions;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparator <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        List<Regression> regressions = compare(Path.of(args[0]), Path.of(args[1]), threshold);
+        report(regressions, threshold);
+        if (!regressions.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints the regressions found by {@link #compare}.
+     *
+     * @param regressions      the regressions
+     * @param thresholdPercent the threshold they were found with
+     */
+    static void report(List<Regression> regressions, double thresholdPercent) {
+        if (regressions.isEmpty()) {
+            System.out.printf("No regression above %.1f%%%n", thresholdPercent);
+            return;
+        }
+        System.out.printf("%d regression(s) above %.1f%%:%n", regressions.size(), thresholdPercent);
+        for (Regression regression : regressions) {
+            System.out.printf("  %s %s: %.3f -> %.3f (%.1f%% worse)%n", regression.benchmark(), regression.metric(),
+                    regression.baseline(), regression.current(), regression.changePercent());
+        }
+    }
+
+    /**
+     * Reads a JMH result file, keyed by benchmark name and parameters.
+     */
+    private static Map<String, JsonNode> read(Path file) throws IOException {
+        JsonNode results = new ObjectMapper().readTree(Files.readAllBytes(file));
+        Map<String, JsonNode> byKey = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            Map<String, String> params = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                params.put(field.getKey(), field.getValue().asText());
+            }
+            String key = result.path("benchmark").asText() + (params.isEmpty() ? "" : " " + params);
+            byKey.put(key, result);
+        }
+        return byKey;
+    }
+
+    /**
+     * Returns how much worse the current value is than the baseline, in percent, negative if it is better.
+     */
+    private static double change(double baseline, double current, boolean higherIsBetter) {
+        if (baseline == 0) {
+            return 0;
+        }
+        double change = (current - baseline) / baseline * 100;
+        return higherIsBetter ? -change : change;
+    }
+
+    private static double error(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static void print(String key, String metric, double baseline, double current, double change, String unit) {
+        System.out.printf("%-100s %-5s %14.3f -> %14.3f %-8s %+7.1f%% worse%n", key, metric, baseline, current, unit, change);
+    }
+
+    /**
+     * A result that got worse than the threshold allows.
+     *
+     * @param benchmark     the benchmark name and parameters
+     * @param metric        {@code score} or {@code p99}
+     * @param baseline      the baseline value
+     * @param current       the current value
+     * @param changePercent how much worse the current value is, in percent
+     */
+    public record Regression(String benchmark, String metric, double baseline, double current, double changePercent) {
+    }
+}
@@ -0,0 +1,60 @@
+package org.hubert.common.demo.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Runs the benchmarks of this package, writes their results as JSON and, when a baseline is given, fails if
+ * any result regressed compared with it. This is what the {@code benchmark} Maven profile runs.
+ * <p>
+ * Usage: {@code BenchmarkSuite [includeRegex] [result.json] [baseline.json] [thresholdPercent]}. The include
+ * pattern defaults to every benchmark of this package, the result file to {@code target/jmh-result.json}. An
+ * empty or missing baseline skips the comparison, so the first run on a machine records the baseline to keep.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/12 15:10
+ */
+public final class BenchmarkSuite {
+    private static final String DEFAULT_INCLUDE = BenchmarkSuite.class.getPackageName() + "\\..*Benchmark";
+    private static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    private BenchmarkSuite() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String include = argument(args, 0, DEFAULT_INCLUDE);
+        Path result = Path.of(argument(args, 1, DEFAULT_RESULT));
+        String baseline = argument(args, 2, "");
+        double threshold = Double.parseDouble(argument(args, 3, String.valueOf(BenchmarkComparator.DEFAULT_THRESHOLD_PERCENT)));
+
+        if (result.getParent() != null) {
+            Files.createDirectories(result.getParent());
+        }
+        new Runner(new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString())
+                .build()).run();
+        System.out.println("Benchmark results written to " + result.toAbsolutePath());
+
+        if (baseline.isEmpty() || !Files.exists(Path.of(baseline))) {
+            System.out.println("No baseline to compare with, keep " + result + " as the baseline of later runs");
+            return;
+        }
+        List<BenchmarkComparator.Regression> regressions = BenchmarkComparator.compare(Path.of(baseline), result, threshold);
+        BenchmarkComparator.report(regressions, threshold);
+        if (!regressions.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    private static String argument(String[] args, int index, String defaultValue) {
+        return args.length > index && !args[index].isBlank() ? args[index] : defaultValue;
+    }
+}
@@ -0,0 +1,108 @@
+package org.hubert.common.demo.benchmark;
+
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.MDC;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the consumer's platform thread pool against virtual threads for an I/O-bound
+ * handler, simulated by sleeping for the duration of a database or Redis round trip.
+ * <p>
+ * Each invocation pushes a batch of messages through the executor behind a semaphore sized like the consumer's
+ * concurrency limit, the way {@code AbstractMessageConsumerHandler} does. The platform pool keeps at most its
+ * core size busy whatever the semaphore allows, while virtual threads let the semaphore alone decide.
+ * The virtual thread variants need Java 21 or newer and fail their setup on older JVMs.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/8 10:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ConsumerExecutorBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"platform", "virtual"})
+    private String executor;
+
+    @Param({"10", "200"})
+    private int concurrency;
+
+    @Param({"5"})
+    private long ioMillis;
+
+    private ExecutorService executorService;
+    private Semaphore semaphore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executorService = switch (executor) {
+            case "platform" -> ThreadPoolFactory.createThreadPool(10, 20, 1L, "benchmark-platform");
+            case "virtual" -> ThreadPoolFactory.createVirtualThreadExecutor("benchmark");
+            default -> throw new IllegalArgumentException("Unknown executor: " + executor);
+        };
+        semaphore = new Semaphore(concurrency);
+        MDC.put("traceId", "benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        MDC.clear();
+        executorService.shutdown();
+        executorService.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void consumeBatch() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            semaphore.acquire();
+            executorService.execute(() -> {
+                try {
+                    if (MDC.get("traceId") == null) {
+                        throw new IllegalStateException("MDC context was not propagated");
+                    }
+                    Thread.sleep(ioMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    semaphore.release();
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ConsumerExecutorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package org.hubert.common.demo.benchmark;
+
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the submit throughput of the single-queue thread pool, the work-stealing fork-join executor and
+ * the striped executor with 1, 8 and 32 producer threads.
+ * <p>
+ * Every executor runs 8 worker threads. Each producer submits a batch of tiny tasks and waits for its own
+ * batch to finish, so producers cannot outrun the workers and the bounded queues never discard work.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/9 15:30
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorSubmitBenchmark {
+    private static final int BATCH_SIZE = 100;
+    private static final int WORKERS = 8;
+
+    @State(Scope.Benchmark)
+    public static class ExecutorState {
+        @Param({"threadPool", "forkJoin", "striped"})
+        private String executor;
+
+        private ExecutorService executorService;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            executorService = switch (executor) {
+                case "threadPool" -> ThreadPoolFactory.createThreadPool(WORKERS, WORKERS, 1L, "benchmark-thread-pool");
+                case "forkJoin" -> ThreadPoolFactory.createForkJoinExecutor(WORKERS, "benchmark-fork-join");
+                case "striped" -> ThreadPoolFactory.createStripedExecutor(WORKERS,
+                        ThreadPoolFactory.DEFAULT_QUEUE_CAPACITY / WORKERS, "benchmark-striped");
+                default -> throw new IllegalArgumentException("Unknown executor: " + executor);
+            };
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            executorService.shutdown();
+            executorService.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void producers01(ExecutorState state) throws InterruptedException {
+        submitBatch(state.executorService);
+    }
+
+    @Benchmark
+    @Threads(8)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void producers08(ExecutorState state) throws InterruptedException {
+        submitBatch(state.executorService);
+    }
+
+    @Benchmark
+    @Threads(32)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void producers32(ExecutorState state) throws InterruptedException {
+        submitBatch(state.executorService);
+    }
+
+    private static void submitBatch(ExecutorService executorService) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            executorService.execute(done::countDown);
+        }
+        done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExecutorSubmitBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,95 @@
+package org.hubert.common.demo.benchmark;
+
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import org.hubert.common.demo.properties.JwtSigningProperties;
+import org.hubert.common.demo.security.JwtKeySet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compares signing and verifying a token with HS512, Ed25519 and ES256, the way {@code JwtTokenProvider} does
+ * in each mode, including the key lookup by {@code kid} of the asymmetric ones.
+ * <p>
+ * HMAC is the cheapest by far but needs the secret on every verifying node. Of the asymmetric algorithms,
+ * Ed25519 signs and verifies faster than ES256 and produces shorter keys, while ES256 is supported by more
+ * clients.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 12:00
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtSignatureBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class KeyState {
+        @Param({"HS512", "EdDSA", "ES256"})
+        private JwtSigningProperties.Algorithm algorithm;
+
+        private UnaryOperator<JwtBuilder> signer;
+        private JwtParser parser;
+        private String token;
+
+        @Setup
+        public void setUp() {
+            if (algorithm == JwtSigningProperties.Algorithm.HS512) {
+                SecretKey key = Jwts.SIG.HS512.key().build();
+                signer = builder -> builder.signWith(key, Jwts.SIG.HS512);
+                parser = Jwts.parser().verifyWith(key).build();
+            } else {
+                JwtSigningProperties properties = new JwtSigningProperties();
+                properties.setAlgorithm(algorithm);
+                JwtKeySet keySet = new JwtKeySet(properties);
+                signer = keySet::signWith;
+                parser = Jwts.parser().keyLocator(keySet).build();
+            }
+            token = signer.apply(newToken()).compact();
+        }
+    }
+
+    @Benchmark
+    public String sign(KeyState state) {
+        return state.signer.apply(newToken()).compact();
+    }
+
+    @Benchmark
+    public Object verify(KeyState state) {
+        return state.parser.parseSignedClaims(state.token).getPayload();
+    }
+
+    private static JwtBuilder newToken() {
+        return Jwts.builder()
+                .subject("benchmark-user")
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 900000L));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtSignatureBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,138 @@
+package org.hubert.common.demo.benchmark;
+
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.filter.CustomThreadPoolMDCFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the submit-to-run overhead of MDC propagation for tiny tasks, comparing the snapshot-based
+ * propagation of {@code CustomThreadPoolMDCFilter} against the previous copy-on-submit, copy-on-run approach
+ * on otherwise identical single-threaded pools. The {@code instrumented} variant adds the rest of
+ * {@code CustomThreadPoolExecutor}, the resizable queue and the task timing, to show the total cost per task.
+ * <p>
+ * Tasks do nothing but count down a latch, so the result is dominated by the hand-off and the MDC handling.
+ * Run with {@code -prof gc} to compare the allocation rate per task.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/9 10:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MDCPropagationBenchmark {
+    private static final int BATCH_SIZE = 10000;
+
+    @Param({"copy", "snapshot", "instrumented"})
+    private String propagation;
+
+    @Param({"0", "4"})
+    private int mdcEntries;
+
+    private ExecutorService executorService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executorService = switch (propagation) {
+            case "copy" -> new CopyingMDCThreadPoolExecutor();
+            case "snapshot" -> new SnapshotMDCThreadPoolExecutor();
+            case "instrumented" -> ThreadPoolFactory.createThreadPool(1, 1, 1L, BATCH_SIZE, "benchmark-instrumented");
+            default -> throw new IllegalArgumentException("Unknown propagation: " + propagation);
+        };
+        for (int i = 0; i < mdcEntries; i++) {
+            MDC.put("key" + i, "value" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        MDC.clear();
+        executorService.shutdown();
+        executorService.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void submitAndRun() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            executorService.execute(done::countDown);
+        }
+        done.await();
+    }
+
+    /**
+     * The propagation used before snapshots: copy the context on submit, copy it again into the worker's
+     * context and clear it afterwards.
+     */
+    private static class CopyingMDCThreadPoolExecutor extends ThreadPoolExecutor {
+        CopyingMDCThreadPoolExecutor() {
+            super(1, 1, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(BATCH_SIZE));
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            Map<String, String> context = MDC.getCopyOfContextMap();
+            super.execute(() -> {
+                if (context == null) {
+                    MDC.clear();
+                } else {
+                    MDC.setContextMap(context);
+                }
+                try {
+                    task.run();
+                } finally {
+                    MDC.clear();
+                }
+            });
+        }
+    }
+
+    /**
+     * The snapshot-based propagation of {@code CustomThreadPoolMDCFilter} without the rest of
+     * {@code CustomThreadPoolExecutor}.
+     */
+    private static class SnapshotMDCThreadPoolExecutor extends ThreadPoolExecutor {
+        SnapshotMDCThreadPoolExecutor() {
+            super(1, 1, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(BATCH_SIZE));
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            super.execute(CustomThreadPoolMDCFilter.wrap(task, CustomThreadPoolMDCFilter.capture()));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MDCPropagationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,92 @@
+package org.hubert.common.demo.benchmark;
+
+import org.hubert.common.demo.security.RefreshTokenGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the refresh token generation of {@code RefreshTokenService} before and after dropping the distributed
+ * lock: a {@link UUID#randomUUID()} token guarded by a Redis lock, against a 256-bit token from the per-thread
+ * DRBG of {@link RefreshTokenGenerator}.
+ * <p>
+ * The lock is not taken for real: its cost is simulated by parking for the two Redis round trips it takes,
+ * acquiring and releasing, of {@code redisRttMicros} each. The gain reported with a non-zero round trip is
+ * therefore the parked time put into the benchmark, not a measurement of Redis. Only the runs with a zero round
+ * trip measure anything, the cost of the random generators, where {@code UUID} contends on one shared
+ * {@link java.security.SecureRandom} once several cores generate at once. The round trip only parameterizes the
+ * locked benchmarks, so the DRBG ones run once. The database insert is the same on both paths and left out.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 18:30
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RefreshTokenGenerationBenchmark {
+    private static final int LOCK_ROUND_TRIPS = 2;
+
+    @State(Scope.Benchmark)
+    public static class LockState {
+        @Param({"0", "200"})
+        private long redisRttMicros;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String lockedUuid01(LockState lock) {
+        return lockedUuid(lock);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String lockedUuid08(LockState lock) {
+        return lockedUuid(lock);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String drbg01() {
+        return RefreshTokenGenerator.generate();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String drbg08() {
+        return RefreshTokenGenerator.generate();
+    }
+
+    private static String lockedUuid(LockState lock) {
+        String token = UUID.randomUUID().toString();
+        if (lock.redisRttMicros > 0) {
+            for (int i = 0; i < LOCK_ROUND_TRIPS; i++) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(lock.redisRttMicros));
+            }
+        }
+        return token;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RefreshTokenGenerationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,223 @@
+package org.hubert.common.demo.benchmark;
+
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.MDC;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stress and regression suite for the pools built by {@link ThreadPoolFactory}. Each run measures three
+ * things for 1, 4 and 16 submitting threads:
+ * <ul>
+ *     <li>{@code submitLatency}: the time a submitter spends in {@code execute}, sampled so the percentiles
+ *     are reported. Every submitter may have {@value #IN_FLIGHT_PER_SUBMITTER} tasks in flight and waits for one
+ *     to finish beyond that, as a caller blocked by a saturated pool would, so nothing is discarded.</li>
+ *     <li>{@code endToEndLatency}: the time from submitting a task until its result is available, sampled.</li>
+ *     <li>{@code throughput}: tasks completed per second by submitters each running batches of
+ *     {@value #BATCH_SIZE} tasks.</li>
+ * </ul>
+ * The pools run {@value #WORKERS} workers with either queue type, tasks burn {@code taskTokens} of CPU through
+ * {@link Blackhole#consumeCPU}, and submitters carry {@code mdcEntries} MDC entries, so the cost of the MDC
+ * wrapping and task timing of {@link CustomThreadPoolExecutor} is included.
+ * <p>
+ * Run through {@link BenchmarkSuite} or the {@code benchmark} Maven profile to get the results as JSON and
+ * compare them with a baseline.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/12 14:00
+ */
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ThreadPoolStressBenchmark {
+    private static final int WORKERS = 4;
+    private static final int BATCH_SIZE = 100;
+    private static final int IN_FLIGHT_PER_SUBMITTER = 64;
+
+    @State(Scope.Benchmark)
+    public static class PoolState {
+        @Param({"FIFO", "PRIORITY"})
+        private String queueType;
+
+        @Param({"0", "1000"})
+        private long taskTokens;
+
+        private CustomThreadPoolExecutor executor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            executor = "PRIORITY".equals(queueType)
+                    ? ThreadPoolFactory.createPriorityThreadPool(WORKERS, WORKERS, 1L,
+                    ThreadPoolFactory.DEFAULT_QUEUE_CAPACITY, "stress-priority")
+                    : ThreadPoolFactory.createThreadPool(WORKERS, WORKERS, 1L,
+                    ThreadPoolFactory.DEFAULT_QUEUE_CAPACITY, "stress-fifo");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SubmitterState {
+        @Param({"0", "8"})
+        private int mdcEntries;
+
+        private final Semaphore inFlight = new Semaphore(IN_FLIGHT_PER_SUBMITTER);
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            for (int i = 0; i < mdcEntries; i++) {
+                MDC.put("key" + i, "value" + i);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            // Let the tasks of this submitter finish before the pool is shut down
+            inFlight.acquire(IN_FLIGHT_PER_SUBMITTER);
+            inFlight.release(IN_FLIGHT_PER_SUBMITTER);
+            MDC.clear();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void submitLatency01(PoolState pool, SubmitterState submitter) throws InterruptedException {
+        submit(pool, submitter);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void submitLatency04(PoolState pool, SubmitterState submitter) throws InterruptedException {
+        submit(pool, submitter);
+    }
+
+    @Benchmark
+    @Threads(16)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void submitLatency16(PoolState pool, SubmitterState submitter) throws InterruptedException {
+        submit(pool, submitter);
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long endToEndLatency01(PoolState pool, SubmitterState submitter) throws Exception {
+        return roundTrip(pool);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long endToEndLatency04(PoolState pool, SubmitterState submitter) throws Exception {
+        return roundTrip(pool);
+    }
+
+    @Benchmark
+    @Threads(16)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long endToEndLatency16(PoolState pool, SubmitterState submitter) throws Exception {
+        return roundTrip(pool);
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void throughput01(PoolState pool, SubmitterState submitter) throws InterruptedException {
+        runBatch(pool);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void throughput04(PoolState pool, SubmitterState submitter) throws InterruptedException {
+        runBatch(pool);
+    }
+
+    @Benchmark
+    @Threads(16)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void throughput16(PoolState pool, SubmitterState submitter) throws InterruptedException {
+        runBatch(pool);
+    }
+
+    private static void submit(PoolState pool, SubmitterState submitter) throws InterruptedException {
+        Semaphore inFlight = submitter.inFlight;
+        long tokens = pool.taskTokens;
+        inFlight.acquire();
+        pool.executor.execute(() -> {
+            try {
+                Blackhole.consumeCPU(tokens);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private static long roundTrip(PoolState pool) throws InterruptedException, ExecutionException {
+        long tokens = pool.taskTokens;
+        return pool.executor.submit(() -> {
+            Blackhole.consumeCPU(tokens);
+            return tokens;
+        }).get();
+    }
+
+    private static void runBatch(PoolState pool) throws InterruptedException {
+        long tokens = pool.taskTokens;
+        CountDownLatch done = new CountDownLatch(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            pool.executor.execute(() -> {
+                Blackhole.consumeCPU(tokens);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ThreadPoolStressBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
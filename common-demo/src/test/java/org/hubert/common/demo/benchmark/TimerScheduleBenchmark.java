@@ -0,0 +1,125 @@
+package org.hubert.common.demo.benchmark;
+
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.executor.HashedWheelTimer;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scheduling and cancelling a timeout on the hashed wheel timer and on a
+ * {@link ScheduledThreadPoolExecutor} with cancelled tasks removed, while 10 thousand or 1 million other
+ * timeouts are pending.
+ * <p>
+ * Most retries, lock renewals and expiry timeouts are cancelled before they fire, so each operation schedules a
+ * timeout a random number of seconds away and cancels it, keeping the number of pending timeouts constant. The
+ * executor pays O(log n) for both on a heap shared under one lock, the wheel O(1) for both on lock-free queues.
+ * Run with {@code -prof gc} to compare the allocation per operation as well.
+ *
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/12 11:30
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TimerScheduleBenchmark {
+    private static final Runnable NOOP = () -> {
+    };
+
+    @State(Scope.Benchmark)
+    public static class TimerState {
+        @Param({"wheel", "scheduled"})
+        private String timer;
+
+        @Param({"10000", "1000000"})
+        private int pending;
+
+        private CustomThreadPoolExecutor taskExecutor;
+        private HashedWheelTimer wheelTimer;
+        private ScheduledThreadPoolExecutor scheduledExecutor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            if ("wheel".equals(timer)) {
+                taskExecutor = ThreadPoolFactory.createThreadPool(1, 1, 1L, "benchmark-timer-task");
+                wheelTimer = ThreadPoolFactory.createWheelTimer("benchmark-wheel-timer", 100, 512, taskExecutor);
+            } else {
+                scheduledExecutor = new ScheduledThreadPoolExecutor(1);
+                scheduledExecutor.setRemoveOnCancelPolicy(true);
+            }
+            for (int i = 0; i < pending; i++) {
+                schedule(TimeUnit.HOURS.toMillis(1) + i);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (wheelTimer != null) {
+                wheelTimer.stop();
+                taskExecutor.shutdownNow();
+            } else {
+                scheduledExecutor.shutdownNow();
+            }
+        }
+
+        private Object schedule(long delayMs) {
+            return wheelTimer != null
+                    ? wheelTimer.newTimeout(NOOP, delayMs, TimeUnit.MILLISECONDS)
+                    : scheduledExecutor.schedule(NOOP, delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        private void cancel(Object timeout) {
+            if (timeout instanceof HashedWheelTimer.Timeout wheelTimeout) {
+                wheelTimeout.cancel();
+            } else {
+                ((ScheduledFuture<?>) timeout).cancel(false);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void scheduleAndCancel01(TimerState state) {
+        scheduleAndCancel(state);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void scheduleAndCancel04(TimerState state) {
+        scheduleAndCancel(state);
+    }
+
+    private static void scheduleAndCancel(TimerState state) {
+        long delayMs = ThreadLocalRandom.current().nextLong(1_000L, 60_000L);
+        state.cancel(state.schedule(delayMs));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TimerScheduleBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,163 @@
+package org.hubert.common.demo.limiter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import org.hubert.common.demo.executor.CustomThreadPoolExecutor;
+import org.hubert.common.demo.factory.ThreadPoolFactory;
+import org.hubert.common.demo.filter.LoadSheddingFilter;
+import org.hubert.common.demo.properties.LoadSheddingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author hubertwong
+ * @version 1.0
+ * @since 2024/11/14 22:00
+ */
+public class SaturationMonitorTests {
+    private static final int QUEUE_CAPACITY = 10;
+    private static final long MIN_SHED_MS = 200L;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final LoadSheddingProperties properties = new LoadSheddingProperties();
+    private CustomThreadPoolExecutor executor;
+    private SaturationMonitor monitor;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        // The tests sample by hand, the background sampler never runs
+        properties.setSampleIntervalMs(TimeUnit.HOURS.toMillis(1));
+        properties.setMinShedMs(MIN_SHED_MS);
+        executor = ThreadPoolFactory.createThreadPool(1, 1, 1L, QUEUE_CAPACITY, "saturation-test");
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        monitor = new SaturationMonitor(executor, properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        monitor.close();
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testShedsOnQueueFillAndRecoversAfterMinimumDuration() throws InterruptedException {
+        monitor.sample();
+        assertFalse(monitor.tryShed());
+
+        queue(8);
+        recordWait(1L);
+        monitor.sample();
+        assertTrue(monitor.tryShed());
+
+        // Under the upper threshold but not the lower one
+        executor.getQueue().clear();
+        queue(6);
+        recordWait(1L);
+        monitor.sample();
+        assertTrue(monitor.isShedding());
+
+        // Both signals are low, but shedding has not lasted the minimum duration
+        executor.getQueue().clear();
+        monitor.sample();
+        assertTrue(monitor.isShedding());
+
+        Thread.sleep(MIN_SHED_MS + 50L);
+        monitor.sample();
+        assertFalse(monitor.isShedding());
+    }
+
+    @Test
+    public void testShedsOnQueueWaitAndRecoversOnlyWhenBothSignalsAreLow() throws InterruptedException {
+        recordWait(600L);
+        monitor.sample();
+        assertTrue(monitor.isShedding());
+        assertEquals(1, monitor.retryAfterSeconds());
+
+        Thread.sleep(MIN_SHED_MS + 50L);
+        // The queue is empty, but the waits are still above the lower threshold
+        recordWait(200L);
+        monitor.sample();
+        assertTrue(monitor.isShedding());
+
+        recordWait(50L);
+        monitor.sample();
+        assertFalse(monitor.isShedding());
+    }
+
+    @Test
+    public void testQueuedTasksWithoutDequeuesCountAsWaiting() {
+        // One queued task is far from the fill threshold, but nothing was dequeued for a whole interval
+        queue(1);
+        monitor.sample();
+        assertTrue(monitor.isShedding());
+        assertEquals(properties.getMaxRetryAfterSeconds(), monitor.retryAfterSeconds());
+    }
+
+    @Test
+    public void testFilterRefusesWithRetryAfter() throws Exception {
+        LoadSheddingFilter filter = new LoadSheddingFilter(monitor, List.of("/rocketmq/sendAsync"), new ObjectMapper());
+        FilterChain chain = mock(FilterChain.class);
+        MockHttpServletResponse accepted = new MockHttpServletResponse();
+        filter.doFilter(request("/rocketmq/sendAsync"), accepted, chain);
+        assertEquals(200, accepted.getStatus());
+
+        recordWait(1500L);
+        monitor.sample();
+        chain = mock(FilterChain.class);
+        MockHttpServletResponse refused = new MockHttpServletResponse();
+        filter.doFilter(request("/rocketmq/sendAsync"), refused, chain);
+        verify(chain, never()).doFilter(any(), any());
+        assertEquals(503, refused.getStatus());
+        assertEquals("2", refused.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(refused.getContentAsString().contains("503"));
+
+        // Other paths are not shed
+        MockHttpServletResponse other = new MockHttpServletResponse();
+        filter.doFilter(request("/rocketmq/sendSync"), other, chain);
+        assertEquals(200, other.getStatus());
+        verify(chain).doFilter(any(), any());
+    }
+
+    private void queue(int tasks) {
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+            });
+        }
+    }
+
+    private void recordWait(long millis) {
+        executor.getQueueWaitHistogram().record(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        return request;
+    }
+}